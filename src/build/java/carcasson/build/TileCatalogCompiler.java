@@ -0,0 +1,172 @@
+package carcasson.build;
+
+import carcasson.common.TileCatalogFormat;
+import carcasson.common.TileEdges;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+// Сборка каталога плиток: проверяет текстовый каталог и пишет его двоичный вид, который читает TileCatalog.
+// Инструмент сборки, в jar не попадает: Maven в фазе compile запускает этот файл как исходник поверх
+// target/classes (см. pom.xml); ошибка в каталоге останавливает сборку с номером строки.
+// Формат (TileCatalogFormat): MAGIC, VERSION, число видов, затем на вид - номер, число в колоде, стороны
+// без поворота (int, как TileEdges.packed(0)), маска дорог, тип (индекс типа), путь картинки (длина и UTF-8);
+// в конце CRC32
+public final class TileCatalogCompiler {
+    private static final String SIDES = "NSC";
+
+    private TileCatalogCompiler() {
+    }
+
+    private static final class Kind {
+        final int id;
+        final String imagePath;
+        final int count;
+        final TileEdges edges;
+
+        Kind(int id, String imagePath, int count, TileEdges edges) {
+            this.id = id;
+            this.imagePath = imagePath;
+            this.count = count;
+            this.edges = edges;
+        }
+    }
+
+    // Аргументы: текстовый каталог, каталог ресурсов с картинками, файл результата
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Ожидается: <каталог.txt> <ресурсы> <catalog.bin>");
+        }
+        Path source = Paths.get(args[0]);
+        Path resources = Paths.get(args[1]);
+        Path target = Paths.get(args[2]);
+
+        List<Kind> kinds = parse(source, resources);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Files.write(target, encode(kinds));
+
+        int bag = 0;
+        for (Kind kind : kinds) {
+            bag += kind.count;
+        }
+        System.out.println("Каталог плиток: " + kinds.size() + " видов, " + bag + " плиток в колоде -> " + target);
+    }
+
+    static List<Kind> parse(Path source, Path resources) throws IOException {
+        List<Kind> kinds = new ArrayList<>();
+        Set<String> images = new HashSet<>();
+        List<String> lines = Files.readAllLines(source, StandardCharsets.UTF_8);
+        for (int n = 1; n <= lines.size(); n++) {
+            String line = lines.get(n - 1).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] parts = line.split("\\s+", 4);
+            if (parts.length < 4) {
+                throw error(source, n, "ожидается: номер, картинка, число в колоде, стороны");
+            }
+
+            int id = number(source, n, parts[0], "номер");
+            if (id != kinds.size()) {
+                throw error(source, n, "номер " + id + " не по порядку, ожидается " + kinds.size());
+            }
+
+            String imagePath = parts[1];
+            if (!imagePath.startsWith("/")) {
+                throw error(source, n, "путь картинки должен начинаться с /: " + imagePath);
+            }
+            if (!images.add(imagePath)) {
+                throw error(source, n, "картинка уже есть в каталоге: " + imagePath);
+            }
+            if (!Files.isRegularFile(resources.resolve(imagePath.substring(1)))) {
+                throw error(source, n, "нет картинки " + imagePath + " в " + resources);
+            }
+
+            int count = number(source, n, parts[2], "число в колоде");
+            String features = parts[3].trim().replaceAll("\\s+", " ");
+            checkFeatures(source, n, features);
+            kinds.add(new Kind(id, imagePath, count, TileEdges.of(features)));
+        }
+
+        if (kinds.isEmpty()) {
+            throw error(source, lines.size(), "каталог пуст");
+        }
+        return kinds;
+    }
+
+    // Каждая сторона ровно один раз, ключи дорог и монастыря только со значениями 0 или 1
+    private static void checkFeatures(Path source, int n, String features) {
+        boolean[] seen = new boolean[4];
+        for (String part : features.split(" ")) {
+            int eq = part.indexOf('=');
+            if (eq < 0 || eq != part.length() - 2) {
+                throw error(source, n, "ожидается КЛЮЧ=значение: " + part);
+            }
+            String key = part.substring(0, eq);
+            char value = part.charAt(eq + 1);
+
+            int side = key.length() == 1 ? TileEdges.sideIndex(key.charAt(0)) : -1;
+            if (side >= 0) {
+                if (seen[side]) throw error(source, n, "сторона " + key + " указана дважды");
+                if (SIDES.indexOf(value) < 0) throw error(source, n, "сторона " + part + ": ожидается N, S или C");
+                seen[side] = true;
+                continue;
+            }
+
+            if (!key.equals("CL") && !TileEdges.isRoadKey(key)) throw error(source, n, "неизвестный ключ " + key);
+            if (value != '0' && value != '1') throw error(source, n, part + ": ожидается 0 или 1");
+        }
+
+        for (int i = 0; i < 4; i++) {
+            if (!seen[i]) throw error(source, n, "не указана сторона " + "NESW".charAt(i));
+        }
+    }
+
+    static byte[] encode(List<Kind> kinds) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(TileCatalogFormat.MAGIC);
+        out.writeShort(TileCatalogFormat.VERSION);
+        out.writeShort(kinds.size());
+        for (Kind kind : kinds) {
+            out.writeShort(kind.id);
+            out.writeShort(kind.count);
+            out.writeInt(kind.edges.packed(0));
+            out.writeByte(kind.edges.getRoadFlags());
+            out.writeByte(TileCatalogFormat.typeIndex(kind.edges.getType()));
+            byte[] path = kind.imagePath.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(path.length);
+            out.write(path);
+        }
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int number(Path source, int n, String text, String what) {
+        try {
+            int value = Integer.parseInt(text);
+            if (value < 0 || value > Short.MAX_VALUE) throw error(source, n, what + " вне диапазона: " + text);
+            return value;
+        } catch (NumberFormatException e) {
+            throw error(source, n, what + " не число: " + text);
+        }
+    }
+
+    private static IllegalArgumentException error(Path source, int n, String message) {
+        return new IllegalArgumentException(source + ":" + n + ": " + message);
+    }
+}
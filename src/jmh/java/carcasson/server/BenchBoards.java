@@ -0,0 +1,94 @@
+package carcasson.server;
+
+import carcasson.common.Player;
+import carcasson.common.Tile;
+import carcasson.common.TileCatalog;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Синтетические поля для бенчмарков: растим поле от стартовой плитки случайными плитками каталога,
+// пока не займем нужную долю клеток 15x15 или пока новые плитки перестанут подходить
+final class BenchBoards {
+    static final int SIZE = 15;
+    private static final int MAX_FAILED_ATTEMPTS = 5000;
+
+    private BenchBoards() {
+    }
+
+    // Движок без рассылок: события правил в бенчмарке не нужны
+    static GameEngine engine() {
+        GameEngine engine = new GameEngine(0, new GameEvents.Silent());
+        engine.putPlayer(new Player("red", "red", "RED"));
+        engine.putPlayer(new Player("blue", "blue", "BLUE"));
+        return engine;
+    }
+
+    static Tile tile(int kind, int rotation) {
+        Tile tile = new Tile(kind + 1, TileCatalog.get(kind));
+        tile.setRotation(rotation);
+        return tile;
+    }
+
+    // Возвращает размещенные плитки; примерно треть подходящих плиток получает мипла
+    static List<Tile> fill(GameEngine engine, int percent, long seed) {
+        Random random = new Random(seed);
+        boolean[][] occupied = new boolean[SIZE][SIZE];
+        List<Tile> placed = new ArrayList<>();
+
+        Tile start = tile(TileCatalog.ROAD_STRAIGHT.getId(), 0);
+        put(engine, start, 7, 7, occupied, placed);
+
+        int target = Math.max(1, SIZE * SIZE * percent / 100);
+        int failed = 0;
+        while (placed.size() < target && failed < MAX_FAILED_ATTEMPTS) {
+            Tile anchor = placed.get(random.nextInt(placed.size()));
+            int side = random.nextInt(4);
+            int x = anchor.getX() + (side == 1 ? 1 : side == 3 ? -1 : 0);
+            int y = anchor.getY() + (side == 2 ? 1 : side == 0 ? -1 : 0);
+
+            Tile candidate = tile(random.nextInt(TileCatalog.size()), random.nextInt(4));
+            if (x < 0 || x >= SIZE || y < 0 || y >= SIZE || occupied[x][y]
+                    || !engine.isValidPlacement(candidate, x, y)) {
+                failed++;
+                continue;
+            }
+
+            put(engine, candidate, x, y, occupied, placed);
+            if (candidate.canPlaceMeeple() && random.nextInt(3) == 0) {
+                engine.putMeeple(candidate, random.nextBoolean() ? "RED" : "BLUE");
+            }
+            failed = 0;
+        }
+        return placed;
+    }
+
+    // Пустые клетки рядом с поставленными плитками - там идут проверки размещения
+    static List<int[]> frontier(List<Tile> placed) {
+        boolean[][] seen = new boolean[SIZE][SIZE];
+        for (Tile tile : placed) {
+            seen[tile.getX()][tile.getY()] = true;
+        }
+
+        List<int[]> cells = new ArrayList<>();
+        int[][] directions = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        for (Tile tile : placed) {
+            for (int[] dir : directions) {
+                int x = tile.getX() + dir[0];
+                int y = tile.getY() + dir[1];
+                if (x < 0 || x >= SIZE || y < 0 || y >= SIZE || seen[x][y]) continue;
+                seen[x][y] = true;
+                cells.add(new int[]{x, y});
+            }
+        }
+        return cells;
+    }
+
+    private static void put(GameEngine engine, Tile tile, int x, int y, boolean[][] occupied, List<Tile> placed) {
+        tile.setX(x);
+        tile.setY(y);
+        engine.putTile(tile);
+        occupied[x][y] = true;
+        placed.add(tile);
+    }
+}
@@ -0,0 +1,96 @@
+package carcasson.server;
+
+import carcasson.common.Tile;
+import carcasson.common.TileCatalog;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Горячий путь хода: проверка размещения, стороны плиток и обходы дорог/городов.
+// fill - доля занятых клеток поля 15x15, от почти пустого до почти полного
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulesBenchmark {
+    private static final char[] SIDES = {'N', 'E', 'S', 'W'};
+
+    @Param({"5", "25", "50", "90"})
+    public int fill;
+
+    private GameEngine engine;
+    private List<Tile> placed;
+    private List<int[]> frontier;
+    private Tile[] hand;
+    private List<Tile> roadStarts;
+    private List<Tile> cityStarts;
+
+    @Setup
+    public void setUp() {
+        engine = BenchBoards.engine();
+        placed = BenchBoards.fill(engine, fill, 42);
+        frontier = BenchBoards.frontier(placed);
+
+        hand = new Tile[TileCatalog.size() * 4];
+        for (int kind = 0; kind < TileCatalog.size(); kind++) {
+            for (int rotation = 0; rotation < 4; rotation++) {
+                hand[kind * 4 + rotation] = BenchBoards.tile(kind, rotation);
+            }
+        }
+
+        roadStarts = new ArrayList<>();
+        cityStarts = new ArrayList<>();
+        for (Tile tile : placed) {
+            if (tile.isTileN()) {
+                cityStarts.add(tile);
+            } else if (tile.getType().equals("ROAD") && !tile.isTileL()) {
+                roadStarts.add(tile);
+            }
+        }
+    }
+
+    @Benchmark
+    public void getSide(Blackhole bh) {
+        for (Tile tile : placed) {
+            for (char side : SIDES) {
+                bh.consume(tile.getSide(side));
+            }
+        }
+    }
+
+    // Все вращения всех видов плиток на каждой клетке фронтира - как при поиске хода
+    @Benchmark
+    public void isValidPlacement(Blackhole bh) {
+        for (int[] cell : frontier) {
+            for (Tile tile : hand) {
+                bh.consume(engine.isValidPlacement(tile, cell[0], cell[1]));
+            }
+        }
+    }
+
+    // То же, что isValidPlacement по всем клеткам и поворотам, но через индекс фронтира
+    @Benchmark
+    public void findLegalPlacements(Blackhole bh) {
+        for (int kind = 0; kind < TileCatalog.size(); kind++) {
+            bh.consume(engine.findLegalPlacements(hand[kind * 4]));
+        }
+    }
+
+    @Benchmark
+    public void findCompleteRoadSegment(Blackhole bh) {
+        for (Tile tile : roadStarts) {
+            bh.consume(engine.findCompleteRoadSegment(tile.getX(), tile.getY()));
+        }
+    }
+
+    @Benchmark
+    public void findConnectedCity(Blackhole bh) {
+        for (Tile tile : cityStarts) {
+            bh.consume(engine.findConnectedCity(tile.getX(), tile.getY()));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package carcasson.server;
+
+import carcasson.common.Tile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Финальный подсчет очков: разбор на месте и на fork-join пуле (порог 1 - в пул уходит любое поле).
+// Разбор поля не меняет; endGameScoring применяет его и снимает миплов,
+// поэтому перед каждым вызовом они расставляются заново (Level.Invocation)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+
+    @Param({"5", "25", "50", "90"})
+    public int fill;
+
+    private final ScoringEngine inline = new ForkJoinScoring(ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+    private final ScoringEngine forkJoin = new ForkJoinScoring(ForkJoinPool.commonPool(), 1);
+
+    private GameEngine engine;
+    private List<Tile> meepleTiles;
+    private List<String> meepleOwners;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = BenchBoards.engine();
+        List<Tile> placed = BenchBoards.fill(engine, fill, 42);
+
+        meepleTiles = new ArrayList<>();
+        meepleOwners = new ArrayList<>();
+        for (Tile tile : placed) {
+            if (tile.hasMeeple()) {
+                meepleTiles.add(tile);
+                meepleOwners.add(tile.getMeepleOwner());
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void restoreMeeples() {
+        for (int i = 0; i < meepleTiles.size(); i++) {
+            Tile tile = meepleTiles.get(i);
+            engine.putMeeple(tile, meepleOwners.get(i));
+        }
+    }
+
+    @Benchmark
+    public ScoreBreakdown scoreInline() {
+        return inline.score(engine.getBoard(), engine.getRegions());
+    }
+
+    @Benchmark
+    public ScoreBreakdown scoreForkJoin() {
+        return forkJoin.score(engine.getBoard(), engine.getRegions());
+    }
+
+    @Benchmark
+    public void endGameScoring() {
+        engine.calculateFinalScores();
+    }
+}
@@ -1,26 +1,41 @@
 package carcasson.client;
 
 import carcasson.controller.AppController;
+import carcasson.common.Board;
+import carcasson.common.BoardDelta;
+import carcasson.common.BoardSnapshot;
+import carcasson.common.LegalPlacements;
 import carcasson.common.Tile;
+import carcasson.common.TileCatalog;
+import carcasson.common.ZobristHash;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
-import java.util.Map;
 
 public class BoardPanel extends JPanel {
     private AppController controller;
     private Image background;
-    private Map<String, Tile> placedTiles = new HashMap<>(); // Ключ: "x,y"
+    private Board placedTiles = new Board();
+    private long boardVersion = -1;
+    // Хеш Зобриста локального поля, ведется вместе с ним и сверяется с хешем из каждой дельты
+    private long boardHash = 0;
     private final int TILE_SIZE = 80;
-    private final int GRID_SIZE = 15;
+    // Поле не ограничено: видимая сетка - рамка плиток плюс клетка запаса, но не меньше 15x15
+    private final int MIN_GRID_SIZE = 15;
     private final int CENTER_X = 7;
     private final int CENTER_Y = 7;
+    private int viewMinX = 0;
+    private int viewMinY = 0;
+    private int columns = MIN_GRID_SIZE;
+    private int rows = MIN_GRID_SIZE;
+    // Допустимые ходы вытянутой плитки: подсвечиваются клетки для её текущего поворота
+    private LegalPlacements legalPlacements;
+    private int currentRotation = 0;
 
     public BoardPanel(AppController controller) {
         this.controller = controller;
-        setPreferredSize(new Dimension(TILE_SIZE * GRID_SIZE, TILE_SIZE * GRID_SIZE));
+        setPreferredSize(new Dimension(TILE_SIZE * columns, TILE_SIZE * rows));
 
         try {
             background = new ImageIcon(getClass().getResource("/background.jpg")).getImage();
@@ -31,11 +46,11 @@ public class BoardPanel extends JPanel {
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                int gridX = e.getX() / TILE_SIZE;
-                int gridY = e.getY() / TILE_SIZE;
+                int column = e.getX() / TILE_SIZE;
+                int row = e.getY() / TILE_SIZE;
 
-                if (gridX >= 0 && gridX < GRID_SIZE && gridY >= 0 && gridY < GRID_SIZE) {
-                    controller.sendTilePlaced(gridX, gridY);
+                if (column >= 0 && column < columns && row >= 0 && row < rows) {
+                    controller.sendTilePlaced(viewMinX + column, viewMinY + row);
                 }
             }
         });
@@ -43,9 +58,12 @@ public class BoardPanel extends JPanel {
 
     public void initialize() {
         placedTiles.clear();
+        boardHash = 0;
+        legalPlacements = null;
+        // Локальное поле сброшено: следующая дельта не совпадет по версии и вызовет RESYNC
+        boardVersion = -1;
         // Добавляем новую стартовую плитку
-        Tile startTile = new Tile(0, "/tiles/tile-q.png",
-                "N=S S=S W=N E=N NS=1 NE=0 NW=0 WE=0 SE=0 SW=0");
+        Tile startTile = new Tile(0, TileCatalog.ROAD_STRAIGHT);
         startTile.setX(CENTER_X);
         startTile.setY(CENTER_Y);
         placeTile(startTile);
@@ -54,8 +72,8 @@ public class BoardPanel extends JPanel {
 
 
     private void drawTile(Graphics g, Tile tile) {
-        int screenX = tile.getX() * TILE_SIZE;
-        int screenY = tile.getY() * TILE_SIZE;
+        int screenX = (tile.getX() - viewMinX) * TILE_SIZE;
+        int screenY = (tile.getY() - viewMinY) * TILE_SIZE;
 
         System.out.println("Рисуем плитку " + tile.getId() +
                 " в координатах (" + tile.getX() + "," + tile.getY() + ")" +
@@ -158,13 +176,17 @@ public class BoardPanel extends JPanel {
         }
 
         g.setColor(new Color(150, 150, 150, 100));
-        for (int i = 0; i <= GRID_SIZE; i++) {
-            g.drawLine(i * TILE_SIZE, 0, i * TILE_SIZE, GRID_SIZE * TILE_SIZE);
-            g.drawLine(0, i * TILE_SIZE, GRID_SIZE * TILE_SIZE, i * TILE_SIZE);
+        for (int i = 0; i <= columns; i++) {
+            g.drawLine(i * TILE_SIZE, 0, i * TILE_SIZE, rows * TILE_SIZE);
         }
+        for (int i = 0; i <= rows; i++) {
+            g.drawLine(0, i * TILE_SIZE, columns * TILE_SIZE, i * TILE_SIZE);
+        }
+
+        drawLegalPlacements(g);
 
         System.out.println("Рисуем " + placedTiles.size() + " плиток на поле");
-        for (Tile tile : placedTiles.values()) {
+        for (Tile tile : placedTiles.tiles()) {
             System.out.println("  Рисуем плитку в (" + tile.getX() + "," + tile.getY() +
                     ") - " + tile.getFileName());
             drawTile(g, tile);
@@ -172,9 +194,11 @@ public class BoardPanel extends JPanel {
 
         // Отмечаем стартовую позицию
         g.setColor(Color.RED);
-        g.drawRect(CENTER_X * TILE_SIZE, CENTER_Y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+        int startX = (CENTER_X - viewMinX) * TILE_SIZE;
+        int startY = (CENTER_Y - viewMinY) * TILE_SIZE;
+        g.drawRect(startX, startY, TILE_SIZE, TILE_SIZE);
         g.setFont(new Font("Arial", Font.BOLD, 12));
-        g.drawString("Старт", CENTER_X * TILE_SIZE + 5, CENTER_Y * TILE_SIZE + 15);
+        g.drawString("Старт", startX + 5, startY + 15);
 
         // Отображаем информацию о количестве плиток
         g.setColor(Color.BLACK);
@@ -183,6 +207,28 @@ public class BoardPanel extends JPanel {
         System.out.println("paintComponent() завершен");
     }
 
+    private void drawLegalPlacements(Graphics g) {
+        if (legalPlacements == null) return;
+
+        g.setColor(new Color(60, 200, 60, 90));
+        for (int i = 0; i < legalPlacements.size(); i++) {
+            int x = legalPlacements.getX(i);
+            int y = legalPlacements.getY(i);
+            if (legalPlacements.getRotation(i) != currentRotation || placedTiles.isOccupied(x, y)) continue;
+            g.fillRect((x - viewMinX) * TILE_SIZE, (y - viewMinY) * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+        }
+    }
+
+    public void setLegalPlacements(LegalPlacements placements) {
+        legalPlacements = placements;
+        repaint();
+    }
+
+    public void setCurrentRotation(int rotation) {
+        currentRotation = rotation;
+        repaint();
+    }
+
     private Image rotateImage(Image image, double angle) {
         double rads = Math.toRadians(angle);
         double sin = Math.abs(Math.sin(rads));
@@ -205,97 +251,96 @@ public class BoardPanel extends JPanel {
         return rotated;
     }
 
-    public void updateBoard(Object gameState) {
-        System.out.println("BoardPanel.updateBoard() вызван ");
-        System.out.println("Тип gameState: " + (gameState != null ? gameState.getClass().getName() : "null"));
-
-        if (gameState instanceof Tile[][]) {
-            Tile[][] board = (Tile[][]) gameState;
-            System.out.println("Получен двумерный массив " + board.length + "x" +
-                    (board.length > 0 ? board[0].length : 0));
-
-            // Выводим всю структуру массива для отладки
-            System.out.println("Содержимое board массива:");
-            for (int i = 0; i < board.length; i++) {
-                for (int j = 0; j < board[i].length; j++) {
-                    if (board[i][j] != null) {
-                        Tile t = board[i][j];
-                        System.out.println("  board[" + i + "][" + j + "] -> Tile id=" + t.getId() +
-                                ", x=" + t.getX() + ", y=" + t.getY() +
-                                ", file=" + t.getFileName());
-                    }
-                }
-            }
+    public void updateBoard(BoardSnapshot snapshot) {
+        System.out.println("BoardPanel.updateBoard() вызван, версия " + snapshot.getVersion());
 
-            placedTiles.clear();
-            int count = 0;
-
-            for (int i = 0; i < board.length; i++) {
-                for (int j = 0; j < board[i].length; j++) {
-                    Tile tile = board[i][j];
-                    if (tile != null) {
-                        count++;
-
-                        // Используем координаты из плитки
-                        int x = tile.getX();
-                        int y = tile.getY();
-
-                        System.out.println("  Обработка плитки " + count + ": board[" + i + "][" + j + "] -> " +
-                                "координаты (" + x + "," + y +
-                                "), файл: " + tile.getFileName());
-
-                        // Проверяем валидность координат
-                        if (x < 0 || x >= GRID_SIZE || y < 0 || y >= GRID_SIZE) {
-                            System.out.println("    Координаты невалидны, используем индексы массива");
-                            x = i;
-                            y = j;
-                            tile.setX(x);
-                            tile.setY(y);
-                        }
-
-                        String key = x + "," + y;
-
-                        // Проверяем уникальность ключа
-                        if (placedTiles.containsKey(key)) {
-                            System.out.println("    ОШИБКА: Дублирование ключа " + key);
-                            System.out.println("    Существующая плитка: " + placedTiles.get(key).getFileName());
-                            System.out.println("    Новая плитка: " + tile.getFileName());
-                        }
-
-                        placedTiles.put(key, tile);
-                        System.out.println("    Добавлена в placedTiles с ключом: " + key);
-                    }
-                }
-            }
+        placedTiles.clear();
+        boardHash = 0;
+        for (Tile tile : snapshot.getTiles()) {
+            putTile(tile);
+        }
+        boardVersion = snapshot.getVersion();
+        if (boardHash != snapshot.getHash()) {
+            System.out.println("Хеш снимка не совпал с его плитками, версия " + snapshot.getVersion());
+        }
+        updateView();
+
+        System.out.println("Всего плиток добавлено в placedTiles: " + placedTiles.size());
+        repaint();
+    }
 
-            System.out.println("Всего плиток добавлено в placedTiles: " + placedTiles.size());
-            System.out.println("Ключи в placedTiles: " + placedTiles.keySet());
+    // false, если дельта не продолжает нашу версию поля или поле после неё разошлось с серверным,
+    // и нужен полный снимок
+    public boolean applyDelta(BoardDelta delta) {
+        if (delta.getBaseVersion() != boardVersion) {
+            System.out.println("Дельта " + delta.getBaseVersion() + "->" + delta.getVersion() +
+                    " не подходит к версии " + boardVersion);
+            return false;
+        }
 
-            System.out.println("Проверка отрисовки:");
-            for (Map.Entry<String, Tile> entry : placedTiles.entrySet()) {
-                Tile t = entry.getValue();
-                int screenX = t.getX() * TILE_SIZE;
-                int screenY = t.getY() * TILE_SIZE;
-                System.out.println("  Ключ: " + entry.getKey() +
-                        " -> экранные координаты: (" + screenX + "," + screenY + ")");
+        for (Tile tile : delta.getChangedTiles()) {
+            putTile(tile);
+            // Наша плитка легла на поле - подсказка больше не нужна
+            if (legalPlacements != null && tile.getId() == legalPlacements.getTileId()) {
+                legalPlacements = null;
             }
+        }
+
+        if (boardHash != delta.getHash()) {
+            System.out.println("Поле версии " + delta.getVersion() + " разошлось с серверным: хеш " +
+                    Long.toHexString(boardHash) + " вместо " + Long.toHexString(delta.getHash()));
+            // До снимка следующие дельты не применяются
+            boardVersion = -1;
+            updateView();
             repaint();
-            System.out.println("Вызван repaint()");
-
-        } else {
-            System.out.println("ОШИБКА: gameState не является Tile[][]");
-            if (gameState != null) {
-                System.out.println("Фактический тип: " + gameState.getClass().getName());
-                if (gameState instanceof Object[]) {
-                    System.out.println("Это массив объектов длины: " + ((Object[])gameState).length);
-                }
-            }
+            return false;
         }
+        boardVersion = delta.getVersion();
+        updateView();
+        repaint();
+        return true;
     }
 
     public void placeTile(Tile tile) {
-        String key = tile.getX() + "," + tile.getY();
-        placedTiles.put(key, tile);
+        putTile(tile);
+        updateView();
         repaint();
     }
+
+    // Плитка заменяет прежнюю в той же клетке: вклад прежней уходит из хеша
+    private void putTile(Tile tile) {
+        Tile previous = placedTiles.get(tile.getX(), tile.getY());
+        if (previous != null) {
+            boardHash ^= ZobristHash.of(previous);
+        }
+        boardHash ^= ZobristHash.of(tile);
+        placedTiles.put(tile);
+    }
+
+    // Подгоняет видимую сетку под рамку плиток; меняет размер панели, только если рамка выросла
+    private void updateView() {
+        int minX = 0;
+        int minY = 0;
+        int maxX = MIN_GRID_SIZE - 1;
+        int maxY = MIN_GRID_SIZE - 1;
+        if (!placedTiles.isEmpty()) {
+            minX = Math.min(minX, placedTiles.getMinX() - 1);
+            minY = Math.min(minY, placedTiles.getMinY() - 1);
+            maxX = Math.max(maxX, placedTiles.getMaxX() + 1);
+            maxY = Math.max(maxY, placedTiles.getMaxY() + 1);
+        }
+
+        int newColumns = maxX - minX + 1;
+        int newRows = maxY - minY + 1;
+        boolean resized = newColumns != columns || newRows != rows;
+        viewMinX = minX;
+        viewMinY = minY;
+        columns = newColumns;
+        rows = newRows;
+
+        if (resized) {
+            setPreferredSize(new Dimension(TILE_SIZE * columns, TILE_SIZE * rows));
+            revalidate();
+        }
+    }
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package carcasson.client;
 
 import carcasson.controller.AppController;
+import carcasson.common.BoardDelta;
+import carcasson.common.BoardSnapshot;
+import carcasson.common.LegalPlacements;
 import carcasson.common.Tile;
 import carcasson.common.Player;
 import javax.swing.*;
@@ -36,7 +39,8 @@ public class GamePanel extends JPanel {
         rightPanel.add(chatPanel, BorderLayout.CENTER);
 
         JPanel leftPanel = new JPanel(new BorderLayout());
-        leftPanel.add(boardPanel, BorderLayout.CENTER);
+        // Поле растет во все стороны, поэтому прокручивается
+        leftPanel.add(new JScrollPane(boardPanel), BorderLayout.CENTER);
         leftPanel.add(playerPanel, BorderLayout.SOUTH);
 
         add(leftPanel, BorderLayout.CENTER);
@@ -63,18 +67,30 @@ public class GamePanel extends JPanel {
 
     public void setCurrentTile(Tile tile) {
         tilePanel.setTile(tile);
+        boardPanel.setCurrentRotation(tile.getRotation());
+    }
+
+    public void setLegalPlacements(LegalPlacements placements) {
+        boardPanel.setLegalPlacements(placements);
     }
 
     public void setPlayerTurn(String playerName) {
         playerPanel.setCurrentTurn(playerName);
         boolean ourTurn = playerName.equals(controller.getUsername());
+        if (!ourTurn) {
+            boardPanel.setLegalPlacements(null);
+        }
         tilePanel.setEnabled(ourTurn);
         controlPanel.setEnabled(ourTurn);
     }
 
-    public void updateGameState(Object gameState) {
+    public void updateGameState(BoardSnapshot snapshot) {
         System.out.println("GamePanel.updateGameState() вызван");
-        boardPanel.updateBoard(gameState);
+        boardPanel.updateBoard(snapshot);
+    }
+
+    public boolean applyGameStateDelta(BoardDelta delta) {
+        return boardPanel.applyDelta(delta);
     }
 
     public void appendChatMessage(String message) {
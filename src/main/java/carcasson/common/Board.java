@@ -0,0 +1,225 @@
+package carcasson.common;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Разреженное поле без границ: клетка (x, y) упакована в int (по 16 бит на координату),
+// плитки лежат в открытой адресации с линейным пробированием. В партии плитки с поля не снимаются;
+// снять можно только последнюю - так поиск бота откатывает ходы. Дополнительно хранится порядок
+// добавления и рамка занятых клеток
+public class Board {
+    public static final int MIN_COORD = Short.MIN_VALUE;
+    public static final int MAX_COORD = Short.MAX_VALUE;
+
+    // Порядок обхода прежнего поля Tile[15][15]: по x, затем по y
+    private static final Comparator<Tile> SCAN_ORDER =
+            Comparator.comparingInt(Tile::getX).thenComparingInt(Tile::getY);
+
+    private int[] keys;
+    private Tile[] slots;
+    // Индекс плитки слота в массиве tiles
+    private int[] positions;
+    private Tile[] tiles;
+    private int size;
+
+    private int minX;
+    private int maxX;
+    private int minY;
+    private int maxY;
+
+    public Board() {
+        this(64);
+    }
+
+    public Board(int expectedTiles) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedTiles * 2 - 1)) << 1;
+        keys = new int[capacity];
+        slots = new Tile[capacity];
+        positions = new int[capacity];
+        tiles = new Tile[Math.max(16, expectedTiles)];
+        resetBounds();
+    }
+
+    public static boolean inRange(int x, int y) {
+        return x >= MIN_COORD && x <= MAX_COORD && y >= MIN_COORD && y <= MAX_COORD;
+    }
+
+    public static int key(int x, int y) {
+        return (x << 16) | (y & 0xFFFF);
+    }
+
+    public Tile get(int x, int y) {
+        if (!inRange(x, y)) return null;
+        int key = key(x, y);
+        int mask = slots.length - 1;
+        for (int i = slot(key, mask); slots[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) return slots[i];
+        }
+        return null;
+    }
+
+    public boolean isOccupied(int x, int y) {
+        return get(x, y) != null;
+    }
+
+    // Порядковый номер плитки клетки (индекс для tileAt) или -1 для пустой клетки
+    public int indexOf(int x, int y) {
+        if (!inRange(x, y)) return -1;
+        int key = key(x, y);
+        int mask = slots.length - 1;
+        for (int i = slot(key, mask); slots[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) return positions[i];
+        }
+        return -1;
+    }
+
+    // Ставит плитку в её клетку (tile.getX/getY); плитка в той же клетке заменяется
+    public void put(Tile tile) {
+        int x = tile.getX();
+        int y = tile.getY();
+        if (!inRange(x, y)) {
+            throw new IllegalArgumentException("Клетка вне поля: (" + x + "," + y + ")");
+        }
+
+        int key = key(x, y);
+        int mask = slots.length - 1;
+        int i = slot(key, mask);
+        while (slots[i] != null) {
+            if (keys[i] == key) {
+                slots[i] = tile;
+                tiles[positions[i]] = tile;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        slots[i] = tile;
+        positions[i] = size;
+        if (size == tiles.length) {
+            tiles = Arrays.copyOf(tiles, size * 2);
+        }
+        tiles[size++] = tile;
+
+        minX = Math.min(minX, x);
+        maxX = Math.max(maxX, x);
+        minY = Math.min(minY, y);
+        maxY = Math.max(maxY, y);
+
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+    }
+
+    // Снимает плитку, добавленную последней (откат хода в поиске бота). Ячейка освобождается
+    // обратным сдвигом цепочки, поэтому пробирование остальных ключей не рвется
+    public Tile removeLast() {
+        if (size == 0) return null;
+        Tile tile = tiles[--size];
+        tiles[size] = null;
+
+        int mask = slots.length - 1;
+        int hole = slot(key(tile.getX(), tile.getY()), mask);
+        while (slots[hole] != tile) {
+            hole = (hole + 1) & mask;
+        }
+        slots[hole] = null;
+
+        for (int i = (hole + 1) & mask; slots[i] != null; i = (i + 1) & mask) {
+            int home = slot(keys[i], mask);
+            // Ключ остается на месте, если его домашняя ячейка лежит циклически в (hole, i]
+            boolean stays = hole <= i ? (home > hole && home <= i) : (home > hole || home <= i);
+            if (stays) continue;
+
+            keys[hole] = keys[i];
+            slots[hole] = slots[i];
+            positions[hole] = positions[i];
+            slots[i] = null;
+            hole = i;
+        }
+
+        if (tile.getX() == minX || tile.getX() == maxX || tile.getY() == minY || tile.getY() == maxY) {
+            resetBounds();
+            for (int i = 0; i < size; i++) {
+                minX = Math.min(minX, tiles[i].getX());
+                maxX = Math.max(maxX, tiles[i].getX());
+                minY = Math.min(minY, tiles[i].getY());
+                maxY = Math.max(maxY, tiles[i].getY());
+            }
+        }
+        return tile;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Tile tileAt(int index) {
+        return tiles[index];
+    }
+
+    // Плитки в порядке добавления, без копирования
+    public Iterable<Tile> tiles() {
+        return () -> Arrays.asList(tiles).subList(0, size).iterator();
+    }
+
+    public Tile[] toArray() {
+        return Arrays.copyOf(tiles, size);
+    }
+
+    // Плитки в порядке прежнего обхода x = 0..14, y = 0..14. Сортируются только занятые клетки
+    public Tile[] inScanOrder() {
+        Tile[] sorted = toArray();
+        Arrays.sort(sorted, SCAN_ORDER);
+        return sorted;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, null);
+        Arrays.fill(tiles, 0, size, null);
+        size = 0;
+        resetBounds();
+    }
+
+    // Рамка занятых клеток; у пустого поля min > max
+    public int getMinX() { return minX; }
+    public int getMaxX() { return maxX; }
+    public int getMinY() { return minY; }
+    public int getMaxY() { return maxY; }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Tile[] oldSlots = slots;
+        int[] oldPositions = positions;
+        keys = new int[capacity];
+        slots = new Tile[capacity];
+        positions = new int[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldSlots.length; j++) {
+            if (oldSlots[j] == null) continue;
+            int i = slot(oldKeys[j], mask);
+            while (slots[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            slots[i] = oldSlots[j];
+            positions[i] = oldPositions[j];
+        }
+    }
+
+    private void resetBounds() {
+        minX = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxY = Integer.MIN_VALUE;
+    }
+
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,22 @@
+package carcasson.common;
+
+// Изменения поля между двумя версиями: новые плитки и клетки, где поставили или сняли мипла.
+// hash - хеш Зобриста поля после изменений: клиент сверяет с ним своё поле
+public class BoardDelta {
+    private long baseVersion;
+    private long version;
+    private Tile[] changedTiles;
+    private long hash;
+
+    public BoardDelta(long baseVersion, long version, Tile[] changedTiles, long hash) {
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.changedTiles = changedTiles;
+        this.hash = hash;
+    }
+
+    public long getBaseVersion() { return baseVersion; }
+    public long getVersion() { return version; }
+    public Tile[] getChangedTiles() { return changedTiles; }
+    public long getHash() { return hash; }
+}
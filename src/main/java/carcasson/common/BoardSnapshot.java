@@ -0,0 +1,18 @@
+package carcasson.common;
+
+// Полный снимок поля: отправляется при входе в игру и по запросу RESYNC
+public class BoardSnapshot {
+    private long version;
+    private Tile[] tiles;
+    private long hash;
+
+    public BoardSnapshot(long version, Tile[] tiles, long hash) {
+        this.version = version;
+        this.tiles = tiles;
+        this.hash = hash;
+    }
+
+    public long getVersion() { return version; }
+    public Tile[] getTiles() { return tiles; }
+    public long getHash() { return hash; }
+}
@@ -1,8 +1,6 @@
 package carcasson.common;
 
-import java.io.Serializable;
-
-public class GameMessage implements Serializable {
+public class GameMessage {
     private String type;
     private String sender;
     private Object data;
@@ -0,0 +1,39 @@
+package carcasson.common;
+
+// Все допустимые ходы для вытянутой плитки: тройки (x, y, поворот) подряд в одном массиве
+public class LegalPlacements {
+    private int tileId;
+    private int[] placements;
+
+    public LegalPlacements(int tileId, int[] placements) {
+        if (placements.length % 3 != 0) {
+            throw new IllegalArgumentException("Длина массива ходов не кратна трем: " + placements.length);
+        }
+        this.tileId = tileId;
+        this.placements = placements;
+    }
+
+    public int getTileId() { return tileId; }
+    public int[] getPlacements() { return placements; }
+
+    public int size() {
+        return placements.length / 3;
+    }
+
+    public boolean isEmpty() {
+        return placements.length == 0;
+    }
+
+    public int getX(int index) { return placements[index * 3]; }
+    public int getY(int index) { return placements[index * 3 + 1]; }
+    public int getRotation(int index) { return placements[index * 3 + 2]; }
+
+    public boolean contains(int x, int y, int rotation) {
+        for (int i = 0; i < placements.length; i += 3) {
+            if (placements[i] == x && placements[i + 1] == y && placements[i + 2] == rotation) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
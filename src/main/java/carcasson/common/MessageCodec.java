@@ -0,0 +1,293 @@
+package carcasson.common;
+
+import java.io.*;
+import java.util.Arrays;
+
+// Кадр на проводе: 4 байта длины + тело сообщения.
+// Тело: код MessageType (1 байт), отправитель, тег данных и сами данные
+public final class MessageCodec {
+    public static final int HEADER_SIZE = 4;
+    public static final int MAX_FRAME_SIZE = 1 << 20;
+
+    private static final String SERVER = "SERVER";
+
+    private static final byte SENDER_NONE = 0;
+    private static final byte SENDER_SERVER = 1;
+    private static final byte SENDER_NAME = 2;
+
+    private static final byte DATA_NULL = 0;
+    private static final byte DATA_STRING = 1;
+    private static final byte DATA_PLAYER = 2;
+    private static final byte DATA_TILE = 3;
+    private static final byte DATA_COORDS = 4;
+    private static final byte DATA_SNAPSHOT = 5;
+    private static final byte DATA_DELTA = 6;
+    private static final byte DATA_PLACEMENTS = 7;
+
+    // Длины массивов координат и плиток идут беззнаковым short
+    private static final int MAX_ARRAY_LENGTH = 0xFFFF;
+
+    private MessageCodec() {
+    }
+
+    public static byte[] encodeFrame(GameMessage message) throws IOException {
+        FrameBuffer bytes = new FrameBuffer();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(MessageType.valueOf(message.getType()).opcode());
+        writeSender(out, message.getSender());
+        writeData(out, message.getData());
+        return bytes.toFrame();
+    }
+
+    public static GameMessage decode(byte[] payload, int offset, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, offset, length));
+        try {
+            MessageType type = MessageType.fromOpcode(in.readUnsignedByte());
+            String sender = readSender(in);
+            Object data = readData(in);
+            return new GameMessage(type.name(), sender, data);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Некорректное сообщение: " + e.getMessage(), e);
+        }
+    }
+
+    public static void writeFrame(DataOutputStream out, GameMessage message) throws IOException {
+        out.write(encodeFrame(message));
+        out.flush();
+    }
+
+    public static GameMessage readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        checkLength(length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return decode(payload, 0, length);
+    }
+
+    public static void checkLength(int length) throws IOException {
+        if (length <= 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Недопустимая длина кадра: " + length);
+        }
+    }
+
+    private static void writeSender(DataOutputStream out, String sender) throws IOException {
+        if (sender == null) {
+            out.writeByte(SENDER_NONE);
+        } else if (SERVER.equals(sender)) {
+            out.writeByte(SENDER_SERVER);
+        } else {
+            out.writeByte(SENDER_NAME);
+            out.writeUTF(sender);
+        }
+    }
+
+    private static String readSender(DataInputStream in) throws IOException {
+        int kind = in.readByte();
+        switch (kind) {
+            case SENDER_NONE: return null;
+            case SENDER_SERVER: return SERVER;
+            case SENDER_NAME: return in.readUTF();
+            default: throw new IOException("Неизвестный отправитель: " + kind);
+        }
+    }
+
+    private static void writeData(DataOutputStream out, Object data) throws IOException {
+        if (data == null) {
+            out.writeByte(DATA_NULL);
+        } else if (data instanceof String) {
+            out.writeByte(DATA_STRING);
+            out.writeUTF((String) data);
+        } else if (data instanceof Player) {
+            out.writeByte(DATA_PLAYER);
+            writePlayer(out, (Player) data);
+        } else if (data instanceof Tile) {
+            out.writeByte(DATA_TILE);
+            writeTile(out, (Tile) data);
+        } else if (data instanceof int[]) {
+            out.writeByte(DATA_COORDS);
+            writeCoords(out, (int[]) data);
+        } else if (data instanceof BoardSnapshot) {
+            out.writeByte(DATA_SNAPSHOT);
+            writeSnapshot(out, (BoardSnapshot) data);
+        } else if (data instanceof BoardDelta) {
+            out.writeByte(DATA_DELTA);
+            writeDelta(out, (BoardDelta) data);
+        } else if (data instanceof LegalPlacements) {
+            out.writeByte(DATA_PLACEMENTS);
+            writePlacements(out, (LegalPlacements) data);
+        } else {
+            throw new IOException("Тип данных не поддерживается протоколом: " + data.getClass().getName());
+        }
+    }
+
+    private static Object readData(DataInputStream in) throws IOException {
+        int tag = in.readByte();
+        switch (tag) {
+            case DATA_NULL: return null;
+            case DATA_STRING: return in.readUTF();
+            case DATA_PLAYER: return readPlayer(in);
+            case DATA_TILE: return readTile(in);
+            case DATA_COORDS: return readCoords(in);
+            case DATA_SNAPSHOT: return readSnapshot(in);
+            case DATA_DELTA: return readDelta(in);
+            case DATA_PLACEMENTS: return readPlacements(in);
+            default: throw new IOException("Неизвестный тег данных: " + tag);
+        }
+    }
+
+    private static void writePlayer(DataOutputStream out, Player player) throws IOException {
+        writeNullableString(out, player.getId());
+        out.writeUTF(player.getName());
+        out.writeUTF(player.getColor());
+        out.writeInt(player.getScore());
+        out.writeByte(player.getMeeplesLeft());
+    }
+
+    private static Player readPlayer(DataInputStream in) throws IOException {
+        String id = readNullableString(in);
+        String name = in.readUTF();
+        String color = in.readUTF();
+        int score = in.readInt();
+        int meeplesLeft = in.readByte();
+        return new Player(id, name, color, score, meeplesLeft);
+    }
+
+    // Плитка на проводе - номер вида из каталога, поворот, координаты и номер владельца мипла
+    private static void writeTile(DataOutputStream out, Tile tile) throws IOException {
+        out.writeShort(tile.getId());
+        out.writeShort(tile.getDefinition().getId());
+        out.writeByte(tile.getRotation());
+        out.writeShort(tile.getX());
+        out.writeShort(tile.getY());
+        out.writeByte(tile.getMeepleOwnerIndex());
+    }
+
+    private static Tile readTile(DataInputStream in) throws IOException {
+        int id = in.readShort();
+        Tile tile = new Tile(id, TileCatalog.get(in.readUnsignedShort()));
+        tile.setRotation(in.readByte());
+        tile.setX(in.readShort());
+        tile.setY(in.readShort());
+        tile.setMeepleOwnerIndex(in.readByte());
+        return tile;
+    }
+
+    private static void writeCoords(DataOutputStream out, int[] coords) throws IOException {
+        writeLength(out, coords.length, "координат");
+        for (int value : coords) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readCoords(DataInputStream in) throws IOException {
+        int[] coords = new int[in.readUnsignedShort()];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = in.readInt();
+        }
+        return coords;
+    }
+
+    private static void writeSnapshot(DataOutputStream out, BoardSnapshot snapshot) throws IOException {
+        out.writeLong(snapshot.getVersion());
+        out.writeLong(snapshot.getHash());
+        writeTiles(out, snapshot.getTiles());
+    }
+
+    private static BoardSnapshot readSnapshot(DataInputStream in) throws IOException {
+        long version = in.readLong();
+        long hash = in.readLong();
+        return new BoardSnapshot(version, readTiles(in), hash);
+    }
+
+    private static void writeDelta(DataOutputStream out, BoardDelta delta) throws IOException {
+        out.writeLong(delta.getBaseVersion());
+        out.writeLong(delta.getVersion());
+        out.writeLong(delta.getHash());
+        writeTiles(out, delta.getChangedTiles());
+    }
+
+    private static BoardDelta readDelta(DataInputStream in) throws IOException {
+        long baseVersion = in.readLong();
+        long version = in.readLong();
+        long hash = in.readLong();
+        return new BoardDelta(baseVersion, version, readTiles(in), hash);
+    }
+
+    // Ход на проводе: x и y по short (как у плитки) и поворот байтом
+    private static void writePlacements(DataOutputStream out, LegalPlacements placements) throws IOException {
+        out.writeShort(placements.getTileId());
+        out.writeInt(placements.size());
+        for (int i = 0; i < placements.size(); i++) {
+            out.writeShort(placements.getX(i));
+            out.writeShort(placements.getY(i));
+            out.writeByte(placements.getRotation(i));
+        }
+    }
+
+    private static LegalPlacements readPlacements(DataInputStream in) throws IOException {
+        int tileId = in.readShort();
+        int count = in.readInt();
+        if (count < 0 || count > MAX_FRAME_SIZE / 5) {
+            throw new IOException("Недопустимое число ходов: " + count);
+        }
+        int[] placements = new int[count * 3];
+        for (int i = 0; i < placements.length; i += 3) {
+            placements[i] = in.readShort();
+            placements[i + 1] = in.readShort();
+            placements[i + 2] = in.readByte();
+        }
+        return new LegalPlacements(tileId, placements);
+    }
+
+    private static void writeTiles(DataOutputStream out, Tile[] tiles) throws IOException {
+        writeLength(out, tiles.length, "плиток");
+        for (Tile tile : tiles) {
+            writeTile(out, tile);
+        }
+    }
+
+    private static Tile[] readTiles(DataInputStream in) throws IOException {
+        Tile[] tiles = new Tile[in.readUnsignedShort()];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = readTile(in);
+        }
+        return tiles;
+    }
+
+    // Длина, не влезающая в short, обрезалась бы молча, и получатель разобрал бы кадр со сдвигом
+    private static void writeLength(DataOutputStream out, int length, String what) throws IOException {
+        if (length > MAX_ARRAY_LENGTH) {
+            throw new IOException("Слишком много " + what + " в сообщении: " + length);
+        }
+        out.writeShort(length);
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // Буфер, который отдает готовый кадр с проставленной длиной без лишнего копирования
+    private static final class FrameBuffer extends ByteArrayOutputStream {
+        FrameBuffer() {
+            super(128);
+        }
+
+        byte[] toFrame() throws IOException {
+            int length = count - HEADER_SIZE;
+            checkLength(length);
+            buf[0] = (byte) (length >>> 24);
+            buf[1] = (byte) (length >>> 16);
+            buf[2] = (byte) (length >>> 8);
+            buf[3] = (byte) length;
+            return count == buf.length ? buf : Arrays.copyOf(buf, count);
+        }
+    }
+}
@@ -16,5 +16,23 @@ public enum MessageType {
     CHAT_MESSAGE,     // Сообщение в чат
     GAME_STATE,       // Полное состояние игры
     PLAYER_TURN,      // Чей ход
-    TILE_UPDATE       // Обновление текущей плитки
+    TILE_UPDATE,      // Обновление текущей плитки
+    END_GAME,         // Запрос на досрочное завершение
+    GAME_STATE_DELTA, // Изменения поля с прошлой версии
+    RESYNC,           // Клиент потерял версию поля и просит полный снимок
+    LEGAL_PLACEMENTS; // Допустимые ходы для вытянутой плитки
+
+    // Номер в перечислении - это однобайтовый код на проводе, новые типы добавлять только в конец
+    private static final MessageType[] BY_OPCODE = values();
+
+    public byte opcode() {
+        return (byte) ordinal();
+    }
+
+    public static MessageType fromOpcode(int opcode) {
+        if (opcode < 0 || opcode >= BY_OPCODE.length) {
+            throw new IllegalArgumentException("Неизвестный код сообщения: " + opcode);
+        }
+        return BY_OPCODE[opcode];
+    }
 }
\ No newline at end of file
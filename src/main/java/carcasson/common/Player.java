@@ -1,9 +1,8 @@
 package carcasson.common;
 
-import java.io.Serializable;
 import java.awt.Color;
 
-public class Player implements Serializable {
+public class Player {
     private String id;
     private String name;
     private String color;
@@ -18,16 +17,28 @@ public class Player implements Serializable {
         this.meeplesLeft = 4;
     }
 
+    public Player(String id, String name, String color, int score, int meeplesLeft) {
+        this.id = id;
+        this.name = name;
+        this.color = color;
+        this.score = score;
+        this.meeplesLeft = meeplesLeft;
+    }
+
+    public String getId() { return id; }
+
     public String getName() { return name; }
     public String getColor() { return color; }
     public int getScore() { return score; }
     public void addScore(int points) { this.score += points; }
+    public void setScore(int score) { this.score = score; }
 
     public int getMeeplesLeft() { return meeplesLeft; }
     public void useMeeple() {
         if (meeplesLeft > 0) meeplesLeft--;
     }
     public void returnMeeple() { meeplesLeft++; }
+    public void setMeeplesLeft(int meeplesLeft) { this.meeplesLeft = meeplesLeft; }
 
 
     @Override
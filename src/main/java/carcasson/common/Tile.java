@@ -1,45 +1,39 @@
 package carcasson.common;
 
-import java.io.Serializable;
-import java.util.HashSet;
-import java.util.Set;
-
-public class Tile implements Serializable {
-    private int id;
-    private String imagePath;
-    private String features;
-    private int rotation;
+// Плитка в руке или на поле: вид из каталога, поворот, координаты и владелец мипла.
+// Всё неизменное (картинка, стороны, тип) лежит в общем TileDefinition
+public class Tile {
+    // Номер владельца мипла - индекс цвета игрока; -1 - мипла нет
+    public static final String[] MEEPLE_COLORS = {"RED", "BLUE"};
+    private static final byte NO_MEEPLE = -1;
+
+    private final int id;
+    private final TileDefinition definition;
+    private byte rotation;
     private int x;
     private int y;
-    private boolean hasMeeple;
-    private String meepleOwner;
-    private String meepleType;
+    private byte meepleOwner = NO_MEEPLE;
 
-    private Set<String> occupiedFeatures = new HashSet<>();
-
-    public Tile(int id, String imagePath, String features) {
+    public Tile(int id, TileDefinition definition) {
         this.id = id;
-        this.imagePath = imagePath;
-        this.features = features;
-        this.rotation = 0;
+        this.definition = definition;
         this.x = -1;
         this.y = -1;
-        this.hasMeeple = false;
-        this.meepleType = null;
     }
 
     public int getId() { return id; }
-    public String getImagePath() { return imagePath; }
-    public String getFeatures() { return features; }
+    public TileDefinition getDefinition() { return definition; }
+    public String getImagePath() { return definition.getImagePath(); }
     public int getRotation() { return rotation; }
 
     public void setRotation(int rotation) {
-        this.rotation = rotation % 4;
-        if (this.rotation < 0) this.rotation += 4;
+        int normalized = rotation % 4;
+        if (normalized < 0) normalized += 4;
+        this.rotation = (byte) normalized;
     }
 
     public void rotate() {
-        rotation = (rotation + 1) % 4;
+        rotation = (byte) ((rotation + 1) % 4);
     }
 
     public int getX() { return x; }
@@ -47,110 +41,68 @@ public class Tile implements Serializable {
     public int getY() { return y; }
     public void setY(int y) { this.y = y; }
 
-    public boolean hasMeeple() { return hasMeeple; }
+    public boolean hasMeeple() { return meepleOwner != NO_MEEPLE; }
 
-    public void setMeeple(boolean hasMeeple, String owner, String type) {
-        this.hasMeeple = hasMeeple;
-        this.meepleOwner = owner;
-        this.meepleType = type;
-        if (hasMeeple && type != null) {
-            occupyFeature(type, owner);
-        }
+    // null снимает мипла
+    public void setMeeple(String ownerColor) {
+        meepleOwner = ownerColor == null ? NO_MEEPLE : (byte) ownerIndex(ownerColor);
     }
 
-    public String getMeepleOwner() { return meepleOwner; }
-    public String getMeepleType() { return meepleType; }
-
-    public char getSide(char side) {
-        char north = 'N';
-        char east = 'N';
-        char south = 'N';
-        char west = 'N';
-
-        String[] parts = features.split(" ");
-        for (String part : parts) {
-            if (part.startsWith("N=")) north = part.charAt(2);
-            else if (part.startsWith("E=")) east = part.charAt(2);
-            else if (part.startsWith("S=")) south = part.charAt(2);
-            else if (part.startsWith("W=")) west = part.charAt(2);
+    public void setMeepleOwnerIndex(int index) {
+        if (index != NO_MEEPLE && (index < 0 || index >= MEEPLE_COLORS.length)) {
+            throw new IllegalArgumentException("Неизвестный владелец мипла: " + index);
         }
+        meepleOwner = (byte) index;
+    }
 
-        char[] sides = {north, east, south, west};
-
-        // Определяем исходный индекс стороны
-        int originalIndex = -1;
-        switch(side) {
-            case 'N': originalIndex = 0; break;
-            case 'E': originalIndex = 1; break;
-            case 'S': originalIndex = 2; break;
-            case 'W': originalIndex = 3; break;
-        }
+    public int getMeepleOwnerIndex() { return meepleOwner; }
 
-        if (originalIndex == -1) return 'N';
+    public String getMeepleOwner() {
+        return hasMeeple() ? MEEPLE_COLORS[meepleOwner] : null;
+    }
 
-        // Учитываем вращение
-        int rotatedIndex = (originalIndex - rotation + 4) % 4;
-        if (rotatedIndex < 0) rotatedIndex += 4;
+    // Тип мипла не хранится: он однозначно следует из вида плитки
+    public String getMeepleType() {
+        return hasMeeple() ? definition.getMeepleType() : null;
+    }
 
-        return sides[rotatedIndex];
+    public char getSide(char side) {
+        int index = TileEdges.sideIndex(side);
+        if (index == -1) return 'N';
+        return definition.getEdges().side(index, rotation);
     }
 
     public String getType() {
-        // Проверяем сначала монастырь
-        if (features.contains("CL=1")) {
-            return "MONASTERY";
-        }
-
-        // Проверяем город
-        if (features.contains("C=")) {
-            return "CITY";
-        }
-
-        // Проверяем дорогу
-        if (features.contains("S=") ||
-                features.contains("NS=1") || features.contains("WE=1") ||
-                features.contains("NE=1") || features.contains("NW=1") ||
-                features.contains("SE=1") || features.contains("SW=1")) {
-            return "ROAD";
-        }
+        return definition.getType();
+    }
 
-        return "FIELD";
+    public TileEdges getEdges() {
+        return definition.getEdges();
     }
 
     public boolean isTileN() {
-        return "tile-n.png".equals(getFileName());
+        return definition.isTileN();
     }
 
     public boolean isTileL() {
-        return "tile-l.png".equals(getFileName());
+        return definition.isTileL();
     }
 
     public boolean canPlaceMeeple() {
-        String type = getType();
-
-        String fileName = getFileName();
-        if (fileName != null) {
-            if (fileName.equals("tile-l.png") || fileName.equals("tile-s.png")) {
-                return false;
-            }
-        }
-
-        return type.equals("CITY") || type.equals("ROAD") || type.equals("MONASTERY");
+        return definition.canPlaceMeeple();
     }
 
-
-
     public String getFileName() {
-        return imagePath.substring(imagePath.lastIndexOf("/") + 1);
+        return definition.getFileName();
     }
 
-
-
-    public void occupyFeature(String featureType, String playerColor) {
-        occupiedFeatures.add(featureType);
+    public static int ownerIndex(String color) {
+        for (int i = 0; i < MEEPLE_COLORS.length; i++) {
+            if (MEEPLE_COLORS[i].equals(color)) return i;
+        }
+        throw new IllegalArgumentException("Неизвестный цвет игрока: " + color);
     }
 
-
     @Override
     public String toString() {
         return "Tile{id=" + id + ", file='" + getFileName() + "', rotation=" + rotation +
@@ -158,4 +110,4 @@ public class Tile implements Serializable {
                 ", N=" + getSide('N') + ", E=" + getSide('E') +
                 ", S=" + getSide('S') + ", W=" + getSide('W') + "}";
     }
-}
\ No newline at end of file
+}
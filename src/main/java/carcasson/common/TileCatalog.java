@@ -0,0 +1,135 @@
+package carcasson.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Все виды плиток игры и состав колоды. Описание лежит в src/main/catalog/tiles.catalog и при сборке
+// компилируется в /tiles/catalog.bin (TileCatalogCompiler в src/build/java); здесь он читается одним
+// отображением файла в память при загрузке класса, без разбора строк. Номер вида - индекс в каталоге, он же уходит по сети
+// вместо картинки и строки сторон, поэтому новые виды добавляются только в конец
+public final class TileCatalog {
+    private static final String RESOURCE = "/tiles/catalog.bin";
+
+    private static final TileDefinition[] ALL;
+    // Сколько плиток каждого вида в колоде партии
+    private static final int[] COUNTS;
+
+    static {
+        ByteBuffer data = read();
+        check(data);
+        int kinds = data.getShort(6);
+        ALL = new TileDefinition[kinds];
+        COUNTS = new int[kinds];
+
+        data.position(8);
+        for (int i = 0; i < kinds; i++) {
+            int id = data.getShort();
+            COUNTS[i] = data.getShort();
+            int sides = data.getInt();
+            int roadFlags = data.get();
+            String type = TileCatalogFormat.type(data.get());
+            byte[] path = new byte[data.getShort()];
+            data.get(path);
+            ALL[i] = new TileDefinition(id, new String(path, StandardCharsets.UTF_8),
+                    TileEdges.compiled(sides, roadFlags, type));
+        }
+    }
+
+    public static final TileDefinition CITY_CAP = byFileName("tile-n.png");
+    public static final TileDefinition MONASTERY = byFileName("tile-monastery.png");
+    public static final TileDefinition FORK = byFileName("tile-l.png");
+    public static final TileDefinition ROAD_STRAIGHT = byFileName("tile-q.png");
+    public static final TileDefinition ROAD_CURVE = byFileName("tile-r.png");
+    public static final TileDefinition ROAD_CURVE_MIRROR = byFileName("tile-r-mirror.png");
+
+    private TileCatalog() {
+    }
+
+    public static TileDefinition get(int id) {
+        if (id < 0 || id >= ALL.length) {
+            throw new IllegalArgumentException("Неизвестный вид плитки: " + id);
+        }
+        return ALL[id];
+    }
+
+    public static List<TileDefinition> all() {
+        return Collections.unmodifiableList(Arrays.asList(ALL));
+    }
+
+    public static int size() {
+        return ALL.length;
+    }
+
+    public static int count(TileDefinition definition) {
+        return COUNTS[definition.getId()];
+    }
+
+    // Полная колода партии по каталогу, виды по порядку номеров; тасует её вызывающий
+    public static List<TileDefinition> bag() {
+        List<TileDefinition> bag = new ArrayList<>();
+        for (int i = 0; i < ALL.length; i++) {
+            for (int n = 0; n < COUNTS[i]; n++) {
+                bag.add(ALL[i]);
+            }
+        }
+        return bag;
+    }
+
+    private static TileDefinition byFileName(String fileName) {
+        for (TileDefinition definition : ALL) {
+            if (definition.getFileName().equals(fileName)) return definition;
+        }
+        throw new IllegalStateException("В каталоге плиток нет " + fileName);
+    }
+
+    // Из каталога классов файл отображается в память; из jar отображать нечего - читается поток
+    private static ByteBuffer read() {
+        URL url = TileCatalog.class.getResource(RESOURCE);
+        if (url == null) {
+            throw new IllegalStateException("Нет " + RESOURCE + ": каталог плиток собирается при mvn compile");
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            try (InputStream in = url.openStream()) {
+                return ByteBuffer.wrap(in.readAllBytes());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать " + RESOURCE, e);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Не удалось прочитать " + RESOURCE, e);
+        }
+    }
+
+    private static void check(ByteBuffer data) {
+        if (data.limit() < 12 || data.getInt(0) != TileCatalogFormat.MAGIC) {
+            throw new IllegalStateException(RESOURCE + " не каталог плиток");
+        }
+        if (data.getShort(4) != TileCatalogFormat.VERSION) {
+            throw new IllegalStateException(RESOURCE + ": версия " + data.getShort(4)
+                    + ", ожидается " + TileCatalogFormat.VERSION + " - пересоберите проект");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate().position(0).limit(data.limit() - 4));
+        if ((int) crc.getValue() != data.getInt(data.limit() - 4)) {
+            throw new IllegalStateException(RESOURCE + " поврежден: не сходится CRC32");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package carcasson.common;
+
+// Формат /tiles/catalog.bin: общий для сборки каталога (src/build/java) и TileCatalog. Отдельный класс,
+// потому что загрузка TileCatalog уже читает catalog.bin, которого при сборке еще нет
+public final class TileCatalogFormat {
+    public static final int MAGIC = 0x434C5431; // "CLT1"
+    public static final int VERSION = 1;
+
+    // Тип плитки хранится индексом в этом массиве
+    private static final String[] TYPES = {"FIELD", "ROAD", "CITY", "MONASTERY"};
+
+    private TileCatalogFormat() {
+    }
+
+    public static String type(int index) {
+        if (index < 0 || index >= TYPES.length) {
+            throw new IllegalArgumentException("Неизвестный индекс типа плитки: " + index);
+        }
+        return TYPES[index];
+    }
+
+    public static int typeIndex(String type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) return i;
+        }
+        throw new IllegalArgumentException("Неизвестный тип плитки: " + type);
+    }
+}
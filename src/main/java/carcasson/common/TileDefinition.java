@@ -0,0 +1,54 @@
+package carcasson.common;
+
+// Вид плитки: картинка, стороны и производные признаки. Один экземпляр на вид, общий для всех комнат;
+// плитка на поле (Tile) хранит только ссылку на него, поворот, координаты и мипла
+public final class TileDefinition {
+    private final int id;
+    private final String imagePath;
+    private final String fileName;
+    private final TileEdges edges;
+    private final boolean tileN;
+    private final boolean tileL;
+    private final boolean monastery;
+    private final boolean meepleAllowed;
+    private final String meepleType;
+
+    TileDefinition(int id, String imagePath, TileEdges edges) {
+        this.id = id;
+        this.imagePath = imagePath;
+        this.fileName = imagePath.substring(imagePath.lastIndexOf("/") + 1);
+        this.edges = edges;
+        this.tileN = "tile-n.png".equals(fileName);
+        this.tileL = "tile-l.png".equals(fileName);
+        this.monastery = "tile-monastery.png".equals(fileName);
+
+        String type = edges.getType();
+        this.meepleAllowed = !tileL && !"tile-s.png".equals(fileName)
+                && (type.equals("CITY") || type.equals("ROAD") || type.equals("MONASTERY"));
+
+        // Тип мипла определяется так же, как в GameRoom.placeMeeple: по имени файла, затем по сторонам
+        if (tileN) {
+            this.meepleType = "CITY";
+        } else if (monastery) {
+            this.meepleType = "MONASTERY";
+        } else {
+            this.meepleType = type;
+        }
+    }
+
+    public int getId() { return id; }
+    public String getImagePath() { return imagePath; }
+    public String getFileName() { return fileName; }
+    public TileEdges getEdges() { return edges; }
+    public String getType() { return edges.getType(); }
+    public boolean isTileN() { return tileN; }
+    public boolean isTileL() { return tileL; }
+    public boolean isMonastery() { return monastery; }
+    public boolean canPlaceMeeple() { return meepleAllowed; }
+    public String getMeepleType() { return meepleType; }
+
+    @Override
+    public String toString() {
+        return "TileDefinition{id=" + id + ", file='" + fileName + "', type=" + getType() + "}";
+    }
+}
@@ -0,0 +1,122 @@
+package carcasson.common;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Разобранная строка features: стороны для каждого из 4 поворотов упакованы в int (по байту на сторону N, E, S, W),
+// связи дорог - в битовую маску. Таблица неизменяема и одна на все плитки с одинаковой строкой.
+// Строку разбирает только сборка каталога (TileCatalogCompiler); в игре таблица поднимается из уже
+// упакованных сторон, маски и типа каталога
+public final class TileEdges {
+    public static final int ROAD_NS = 1;
+    public static final int ROAD_NE = 1 << 1;
+    public static final int ROAD_NW = 1 << 2;
+    public static final int ROAD_WE = 1 << 3;
+    public static final int ROAD_SE = 1 << 4;
+    public static final int ROAD_SW = 1 << 5;
+
+    private static final String[] ROAD_KEYS = {"NS", "NE", "NW", "WE", "SE", "SW"};
+    private static final ConcurrentHashMap<String, TileEdges> CACHE = new ConcurrentHashMap<>();
+
+    private final int[] packedByRotation = new int[4];
+    private final int roadFlags;
+    private final String type;
+
+    private TileEdges(int packedNorthUp, int roadFlags, String type) {
+        // Поворот на r по часовой: сторона i берется с исходной стороны (i - r)
+        for (int rotation = 0; rotation < 4; rotation++) {
+            int packed = 0;
+            for (int i = 0; i < 4; i++) {
+                packed |= ((packedNorthUp >>> (((i - rotation + 4) % 4) * 8)) & 0xFF) << (i * 8);
+            }
+            packedByRotation[rotation] = packed;
+        }
+        this.roadFlags = roadFlags;
+        this.type = type;
+    }
+
+    private static TileEdges parse(String features) {
+        char[] sides = {'N', 'N', 'N', 'N'};
+        int flags = 0;
+        for (String part : features.split(" ")) {
+            if (part.length() < 3 || part.indexOf('=') < 0) continue;
+            int index = part.charAt(1) == '=' ? sideIndex(part.charAt(0)) : -1;
+            if (index >= 0) {
+                sides[index] = part.charAt(2);
+                continue;
+            }
+            for (int i = 0; i < ROAD_KEYS.length; i++) {
+                if (part.equals(ROAD_KEYS[i] + "=1")) flags |= 1 << i;
+            }
+        }
+
+        int packed = 0;
+        for (int i = 0; i < 4; i++) {
+            packed |= (sides[i] & 0xFF) << (i * 8);
+        }
+        return new TileEdges(packed, flags, classify(features));
+    }
+
+    public static TileEdges of(String features) {
+        return CACHE.computeIfAbsent(features, TileEdges::parse);
+    }
+
+    // Таблица из собранного каталога: стороны без поворота (packed(0)), маска дорог и тип
+    static TileEdges compiled(int packedNorthUp, int roadFlags, String type) {
+        return new TileEdges(packedNorthUp, roadFlags, type);
+    }
+
+    // 0..3 для N, E, S, W; -1 для неизвестной стороны
+    public static int sideIndex(char side) {
+        switch (side) {
+            case 'N': return 0;
+            case 'E': return 1;
+            case 'S': return 2;
+            case 'W': return 3;
+            default: return -1;
+        }
+    }
+
+    // Ключ связи дорог из строки features: NS, NE, NW, WE, SE или SW
+    public static boolean isRoadKey(String key) {
+        for (String road : ROAD_KEYS) {
+            if (road.equals(key)) return true;
+        }
+        return false;
+    }
+
+    public char side(int index, int rotation) {
+        return (char) ((packedByRotation[rotation] >>> (index * 8)) & 0xFF);
+    }
+
+    public int packed(int rotation) {
+        return packedByRotation[rotation];
+    }
+
+    public int getRoadFlags() {
+        return roadFlags;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    // Та же классификация, что и раньше в Tile.getType: по подстрокам исходной строки
+    private static String classify(String features) {
+        if (features.contains("CL=1")) {
+            return "MONASTERY";
+        }
+
+        if (features.contains("C=")) {
+            return "CITY";
+        }
+
+        if (features.contains("S=") ||
+                features.contains("NS=1") || features.contains("WE=1") ||
+                features.contains("NE=1") || features.contains("NW=1") ||
+                features.contains("SE=1") || features.contains("SW=1")) {
+            return "ROAD";
+        }
+
+        return "FIELD";
+    }
+}
@@ -0,0 +1,46 @@
+package carcasson.common;
+
+// Хеш Зобриста позиции на поле: XOR случайных 64-битных чисел всех плиток и миплов.
+// Плитка или мипл меняют хеш одним XOR, поэтому сервер и клиент ведут его по ходу партии и сверяют
+// 8 байт вместо всего поля. Классическая таблица "число на каждую клетку" для поля без границ не подходит:
+// число для (вид, поворот, клетка) и для (клетка, владелец мипла) выводится перемешиванием SplitMix64.
+// Значения фиксированы, чтобы совпадать у сервера и клиента разных запусков
+public final class ZobristHash {
+    private static final long TILE_SALT = 0x6A09E667F3BCC908L;
+    private static final long MEEPLE_SALT = 0xBB67AE8584CAA73BL;
+
+    private ZobristHash() {
+    }
+
+    public static long tile(TileDefinition definition, int rotation, int x, int y) {
+        return mix(TILE_SALT ^ ((long) Board.key(x, y) << 16 | definition.getId() << 2 | rotation));
+    }
+
+    // owner - номер цвета из Tile.MEEPLE_COLORS; без мипла вклад нулевой
+    public static long meeple(int x, int y, int owner) {
+        if (owner < 0) return 0;
+        return mix(MEEPLE_SALT ^ ((long) Board.key(x, y) << 16 | owner));
+    }
+
+    // Вклад плитки поля вместе с её миплом
+    public static long of(Tile tile) {
+        return tile(tile.getDefinition(), tile.getRotation(), tile.getX(), tile.getY())
+                ^ meeple(tile.getX(), tile.getY(), tile.getMeepleOwnerIndex());
+    }
+
+    // Хеш с нуля - для снимка и проверок
+    public static long of(Tile[] tiles) {
+        long hash = 0;
+        for (Tile tile : tiles) {
+            hash ^= of(tile);
+        }
+        return hash;
+    }
+
+    // Финализатор SplitMix64: биективен, каждый бит входа влияет на все биты выхода
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,7 +1,10 @@
 package carcasson.controller;
 
 import carcasson.client.GameFrame;
+import carcasson.common.BoardDelta;
+import carcasson.common.BoardSnapshot;
 import carcasson.common.GameMessage;
+import carcasson.common.LegalPlacements;
 import carcasson.common.Tile;
 import carcasson.common.Player;
 import javax.swing.*;
@@ -68,6 +71,12 @@ public class AppController {
                     }
                     break;
 
+                case "LEGAL_PLACEMENTS":
+                    if (message.getData() instanceof LegalPlacements) {
+                        gameFrame.getGamePanel().setLegalPlacements((LegalPlacements) message.getData());
+                    }
+                    break;
+
                 case "PLAYER_TURN":
                     String currentPlayer = (String) message.getData();
                     gameFrame.getGamePanel().setPlayerTurn(currentPlayer);
@@ -80,28 +89,23 @@ public class AppController {
                     break;
 
                 case "GAME_STATE":
-                    System.out.println("AppController: получено GAME_STATE");
-                    System.out.println("Данные типа: " + (message.getData() != null ? message.getData().getClass().getName() : "null"));
-
-                    // Проверяем, что это массив
-                    if (message.getData() instanceof Tile[][]) {
-                        Tile[][] board = (Tile[][]) message.getData();
-                        System.out.println("Размер массива: " + board.length + "x" +
-                                (board.length > 0 ? board[0].length : 0));
-
-                        int tileCount = 0;
-                        for (int i = 0; i < board.length; i++) {
-                            for (int j = 0; j < board[i].length; j++) {
-                                if (board[i][j] != null) {
-                                    tileCount++;
-                                }
-                            }
-                        }
-                        System.out.println("Плиток в массиве: " + tileCount);
+                    if (message.getData() instanceof BoardSnapshot) {
+                        BoardSnapshot snapshot = (BoardSnapshot) message.getData();
+                        System.out.println("AppController: получено GAME_STATE, версия " + snapshot.getVersion() +
+                                ", плиток: " + snapshot.getTiles().length);
+                        gameFrame.getGamePanel().updateGameState(snapshot);
                     }
+                    break;
 
-                    // Обновляем игровое поле
-                    gameFrame.getGamePanel().updateGameState(message.getData());
+                case "GAME_STATE_DELTA":
+                    if (message.getData() instanceof BoardDelta) {
+                        BoardDelta delta = (BoardDelta) message.getData();
+                        // Пропущена версия или хеш поля не совпал - просим у сервера полный снимок
+                        if (!gameFrame.getGamePanel().applyGameStateDelta(delta)) {
+                            System.out.println("AppController: поле разошлось с сервером, запрашиваем RESYNC");
+                            networkController.sendMessage(new GameMessage("RESYNC", username, null));
+                        }
+                    }
                     break;
 
                 case "CHAT_MESSAGE":
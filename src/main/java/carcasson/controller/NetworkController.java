@@ -1,14 +1,17 @@
 package carcasson.controller;
 
 import carcasson.common.GameMessage;
+import carcasson.common.MessageCodec;
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class NetworkController {
     private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private DataOutputStream out;
+    private DataInputStream in;
     private AppController appController;
+    private final ReentrantLock sendLock = new ReentrantLock();
 
     public NetworkController(AppController appController) {
         this.appController = appController;
@@ -17,10 +20,11 @@ public class NetworkController {
     public void connect(InetAddress host, int port) {
         try {
             socket = new Socket(host, port);
-            out = new ObjectOutputStream(socket.getOutputStream());
-            in = new ObjectInputStream(socket.getInputStream());
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
 
-            new Thread(this::receiveMessages).start();
+            Thread.ofVirtual().name("network-reader").start(this::receiveMessages);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -29,21 +33,25 @@ public class NetworkController {
     private void receiveMessages() {
         try {
             while (!socket.isClosed()) {
-                GameMessage message = (GameMessage) in.readObject();
+                GameMessage message = MessageCodec.readFrame(in);
                 System.out.println("NetworkController получил сообщение типа: " + message.getType());
                 appController.handleMessage(message);
             }
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             System.out.println("Ошибка при получении сообщения: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
-    public synchronized void sendMessage(GameMessage message) {
+    public void sendMessage(GameMessage message) {
+        // ReentrantLock вместо synchronized: блокирующая запись не закрепляет поток-носитель
+        sendLock.lock();
         try {
-            out.writeObject(message);
+            MessageCodec.writeFrame(out, message);
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            sendLock.unlock();
         }
     }
 
@@ -0,0 +1,365 @@
+package carcasson.loadtest;
+
+import carcasson.common.Board;
+import carcasson.common.BoardDelta;
+import carcasson.common.BoardSnapshot;
+import carcasson.common.GameMessage;
+import carcasson.common.LegalPlacements;
+import carcasson.common.MessageCodec;
+import carcasson.common.Player;
+import carcasson.common.Tile;
+import carcasson.common.ZobristHash;
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Бот без интерфейса: говорит с сервером тем же протоколом, что и AppController.
+// Всё делает в одном виртуальном потоке: читает кадр, реагирует, при необходимости пишет ответ.
+// Когда игра заканчивается, переподключается и попадает в новую комнату
+public class BotClient implements Runnable {
+    private static final int LATENCY_BATCH = 256;
+
+    private enum Phase { WAITING, PLACING, PLACED, AWAIT_MEEPLE, TURN_DONE }
+
+    private final LoadGenerator.Config config;
+    private final LoadStats stats;
+    private final int index;
+    private final Random random;
+
+    private volatile Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private String username;
+    private int generation = 0;
+
+    private Player player;
+    private Tile hand;
+    private LegalPlacements legalPlacements;
+    private final Board board = new Board();
+    private long boardVersion = -1;
+    private long boardHash = 0;
+
+    private Phase phase = Phase.WAITING;
+    private final List<int[]> candidates = new ArrayList<>();
+    private int nextCandidate;
+    private int[] pendingCell;
+    private Tile placedTile;
+    private long placeSentAt;
+    private long turnEndSentAt;
+
+    private final List<Long> placementLatencies = new ArrayList<>();
+    private final List<Long> turnLatencies = new ArrayList<>();
+
+    BotClient(LoadGenerator.Config config, LoadStats stats, int index) {
+        this.config = config;
+        this.stats = stats;
+        this.index = index;
+        this.random = new Random(config.seed * 31 + index);
+    }
+
+    @Override
+    public void run() {
+        while (config.isRunning()) {
+            try {
+                play();
+            } catch (SocketTimeoutException e) {
+                stats.errors.incrementAndGet();
+                System.out.println(username + ": сервер молчит дольше " + config.timeoutMillis + " мс");
+            } catch (IOException e) {
+                if (config.isRunning()) {
+                    stats.errors.incrementAndGet();
+                    System.out.println(username + ": ошибка соединения: " + e.getMessage());
+                }
+            } finally {
+                close();
+            }
+        }
+        flushLatencies();
+    }
+
+    // Одна партия: подключение, игра до GAME_END, отключение
+    private void play() throws IOException {
+        username = "bot-" + index + "-" + generation++;
+        player = null;
+        hand = null;
+        legalPlacements = null;
+        board.clear();
+        boardVersion = -1;
+        boardHash = 0;
+        phase = Phase.WAITING;
+
+        socket = new Socket(config.host, config.port);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(config.timeoutMillis);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        stats.connected.incrementAndGet();
+        try {
+            send("CONNECT", null);
+            while (config.isRunning()) {
+                if (!handle(read())) return;
+            }
+        } finally {
+            stats.connected.decrementAndGet();
+        }
+    }
+
+    private GameMessage read() throws IOException {
+        int length = in.readInt();
+        MessageCodec.checkLength(length);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        stats.messagesReceived.incrementAndGet();
+        stats.bytesReceived.addAndGet(length + MessageCodec.HEADER_SIZE);
+        return MessageCodec.decode(payload, 0, length);
+    }
+
+    // false - партия окончена
+    private boolean handle(GameMessage message) throws IOException {
+        Object data = message.getData();
+        switch (message.getType()) {
+            case "CONNECT":
+                if (data instanceof Player) {
+                    player = (Player) data;
+                }
+                break;
+            case "TILE_DRAWN":
+                // Ответы на TILE_ROTATED приходят с опозданием; поворот своей плитки бот ведет сам
+                if (hand == null || hand.getId() != ((Tile) data).getId()) {
+                    hand = (Tile) data;
+                }
+                break;
+            case "LEGAL_PLACEMENTS":
+                legalPlacements = (LegalPlacements) data;
+                break;
+            case "PLAYER_TURN":
+                onPlayerTurn((String) data);
+                break;
+            case "SCORE_UPDATE":
+                if (data instanceof Player && username.equals(((Player) data).getName())) {
+                    player = (Player) data;
+                }
+                break;
+            case "GAME_STATE":
+                applySnapshot((BoardSnapshot) data);
+                break;
+            case "GAME_STATE_DELTA":
+                applyDelta((BoardDelta) data);
+                break;
+            case "CHAT_MESSAGE":
+                onChat((String) data);
+                break;
+            case "GAME_END":
+                // Партию считает только первый игрок комнаты, иначе каждая игра учтется дважды
+                if (player != null && "RED".equals(player.getColor())) {
+                    stats.gamesFinished.incrementAndGet();
+                }
+                return false;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    private void onPlayerTurn(String current) throws IOException {
+        if (phase == Phase.TURN_DONE || phase == Phase.AWAIT_MEEPLE) {
+            turnLatencies.add(System.nanoTime() - turnEndSentAt);
+            if (phase == Phase.AWAIT_MEEPLE) {
+                stats.meeplesPlaced.incrementAndGet();
+            }
+            flushLatenciesIfFull();
+        }
+        phase = Phase.WAITING;
+
+        if (!username.equals(current) || hand == null) return;
+
+        think();
+        if (random.nextDouble() < config.chatRate) {
+            send("CHAT_MESSAGE", "ход " + board.size());
+        }
+        if (random.nextDouble() < config.rotateRate) {
+            // Игрок крутит плитку, разглядывая варианты: полный оборот не меняет итог
+            for (int i = 0; i < 4; i++) {
+                send("TILE_ROTATED", null);
+            }
+        }
+
+        collectCandidates();
+        nextCandidate = 0;
+        phase = Phase.PLACING;
+        tryNextCandidate();
+    }
+
+    // Ходы берутся из списка сервера, пришедшего вместе с плиткой
+    private void collectCandidates() {
+        candidates.clear();
+        if (legalPlacements == null || legalPlacements.getTileId() != hand.getId()) return;
+
+        for (int i = 0; i < legalPlacements.size(); i++) {
+            candidates.add(new int[]{legalPlacements.getX(i), legalPlacements.getY(i), legalPlacements.getRotation(i)});
+        }
+        Collections.shuffle(candidates, random);
+    }
+
+    private void tryNextCandidate() throws IOException {
+        if (nextCandidate >= candidates.size()) {
+            // Некуда положить плитку - пропускаем ход, сервер выдаст следующему игроку новую
+            endTurn("TURN_SKIP");
+            return;
+        }
+
+        int[] candidate = candidates.get(nextCandidate++);
+        int turns = (candidate[2] - hand.getRotation() + 4) % 4;
+        for (int i = 0; i < turns; i++) {
+            send("TILE_ROTATED", null);
+        }
+        hand.setRotation(candidate[2]);
+
+        pendingCell = candidate;
+        placeSentAt = System.nanoTime();
+        send("TILE_PLACED", new int[]{candidate[0], candidate[1]});
+    }
+
+    // Плитка появилась на поле; мипла ставим после подсказки сервера, она идет следом за дельтой
+    private void onPlacementAccepted() {
+        placementLatencies.add(System.nanoTime() - placeSentAt);
+        stats.tilesPlaced.incrementAndGet();
+        placedTile = board.get(pendingCell[0], pendingCell[1]);
+        pendingCell = null;
+        hand = null;
+        phase = Phase.PLACED;
+    }
+
+    private void finishTurn() throws IOException {
+        think();
+        if (random.nextDouble() < config.meepleRate && placedTile.canPlaceMeeple()
+                && player != null && player.getMeeplesLeft() > 0) {
+            phase = Phase.AWAIT_MEEPLE;
+            turnEndSentAt = System.nanoTime();
+            send("MEEPLE_PLACED", null);
+        } else {
+            endTurn("TURN_SKIP");
+        }
+    }
+
+    private void endTurn(String type) throws IOException {
+        phase = Phase.TURN_DONE;
+        turnEndSentAt = System.nanoTime();
+        send(type, null);
+    }
+
+    // Ответы сервера на действия приходят только текстом чата, поэтому разбираем их по содержимому.
+    // Пока бот ждет ответа на мипла, другие игроки молчат: боты пишут в чат только в свой ход
+    private void onChat(String text) throws IOException {
+        if (text == null) return;
+
+        if (phase == Phase.PLACING && pendingCell != null && text.startsWith("Нельзя разместить плитку")) {
+            placementLatencies.add(System.nanoTime() - placeSentAt);
+            stats.placementsRejected.incrementAndGet();
+            pendingCell = null;
+            tryNextCandidate();
+        } else if (phase == Phase.PLACED && text.startsWith("Плитка размещена!")) {
+            // Завершенный город тоже пишет в чат до подсказки, поэтому ждем именно её
+            finishTurn();
+        } else if (phase == Phase.AWAIT_MEEPLE && !text.startsWith(username + " поставил мипла")) {
+            // Мипла не приняли, ход остался за ботом - завершаем его пропуском
+            stats.meeplesRejected.incrementAndGet();
+            endTurn("TURN_SKIP");
+        }
+    }
+
+    private void applySnapshot(BoardSnapshot snapshot) {
+        board.clear();
+        boardHash = 0;
+        for (Tile tile : snapshot.getTiles()) {
+            putTile(tile);
+        }
+        boardVersion = snapshot.getVersion();
+        checkPendingPlacement();
+    }
+
+    private void applyDelta(BoardDelta delta) throws IOException {
+        if (boardVersion < 0 || delta.getBaseVersion() != boardVersion) {
+            stats.errors.incrementAndGet();
+            send("RESYNC", null);
+            return;
+        }
+        for (Tile tile : delta.getChangedTiles()) {
+            putTile(tile);
+        }
+        // Поле разошлось с серверным - до снимка дельты не принимаются
+        if (boardHash != delta.getHash()) {
+            stats.boardMismatches.incrementAndGet();
+            boardVersion = -1;
+            send("RESYNC", null);
+            return;
+        }
+        boardVersion = delta.getVersion();
+        checkPendingPlacement();
+    }
+
+    private void putTile(Tile tile) {
+        Tile previous = board.get(tile.getX(), tile.getY());
+        if (previous != null) {
+            boardHash ^= ZobristHash.of(previous);
+        }
+        boardHash ^= ZobristHash.of(tile);
+        board.put(tile);
+    }
+
+    private void checkPendingPlacement() {
+        if (phase == Phase.PLACING && pendingCell != null
+                && board.isOccupied(pendingCell[0], pendingCell[1])) {
+            onPlacementAccepted();
+        }
+    }
+
+    private void think() {
+        if (config.thinkMillis <= 0) return;
+        try {
+            Thread.sleep(config.thinkMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(String type, Object data) throws IOException {
+        MessageCodec.writeFrame(out, new GameMessage(type, username, data));
+        stats.messagesSent.incrementAndGet();
+    }
+
+    private void flushLatenciesIfFull() {
+        if (placementLatencies.size() + turnLatencies.size() >= LATENCY_BATCH) {
+            flushLatencies();
+        }
+    }
+
+    private void flushLatencies() {
+        stats.addLatencies(placementLatencies, turnLatencies);
+        placementLatencies.clear();
+        turnLatencies.clear();
+    }
+
+    private void close() {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        socket = null;
+    }
+
+    // Закрыть сокет снаружи: разблокирует чтение при остановке теста
+    void shutdown() {
+        Socket current = socket;
+        if (current == null) return;
+        try {
+            current.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package carcasson.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Нагрузочный тест без интерфейса: поднимает тысячи ботов на виртуальных потоках,
+// раз в несколько секунд печатает прогресс, в конце - пропускную способность и задержки.
+// Пример: java -cp target/classes carcasson.loadtest.LoadGenerator --clients=2000 --duration=60 --think-ms=50
+public class LoadGenerator {
+
+    static class Config {
+        String host = "localhost";
+        int port = 8888;
+        int clients = 100;
+        int durationSeconds = 60;
+        // Сколько новых соединений в секунду открывать при разгоне
+        int rampPerSecond = 500;
+        long thinkMillis = 0;
+        double chatRate = 0.1;
+        double rotateRate = 0.2;
+        double meepleRate = 0.3;
+        int timeoutMillis = 30_000;
+        int reportSeconds = 5;
+        long seed = 42;
+
+        private volatile boolean running = true;
+
+        boolean isRunning() { return running; }
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (!arg.startsWith("--") || eq < 0) {
+                    throw new IllegalArgumentException("Ожидается --ключ=значение: " + arg);
+                }
+                String key = arg.substring(2, eq);
+                String value = arg.substring(eq + 1);
+                switch (key) {
+                    case "host": config.host = value; break;
+                    case "port": config.port = Integer.parseInt(value); break;
+                    case "clients": config.clients = Integer.parseInt(value); break;
+                    case "duration": config.durationSeconds = Integer.parseInt(value); break;
+                    case "ramp": config.rampPerSecond = Integer.parseInt(value); break;
+                    case "think-ms": config.thinkMillis = Long.parseLong(value); break;
+                    case "chat-rate": config.chatRate = Double.parseDouble(value); break;
+                    case "rotate-rate": config.rotateRate = Double.parseDouble(value); break;
+                    case "meeple-rate": config.meepleRate = Double.parseDouble(value); break;
+                    case "timeout-ms": config.timeoutMillis = Integer.parseInt(value); break;
+                    case "report": config.reportSeconds = Integer.parseInt(value); break;
+                    case "seed": config.seed = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("Неизвестный параметр: " + key);
+                }
+            }
+            return config;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Config config = Config.parse(args);
+        LoadStats stats = new LoadStats();
+
+        System.out.println("Нагрузочный тест: " + config.clients + " ботов -> " + config.host + ":" + config.port
+                + ", " + config.durationSeconds + " с");
+
+        List<BotClient> bots = new ArrayList<>(config.clients);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        long start = System.currentTimeMillis();
+        long deadline = start + config.durationSeconds * 1000L;
+        long rampPause = Math.max(1, 1000L / Math.max(1, config.rampPerSecond));
+
+        for (int i = 0; i < config.clients && System.currentTimeMillis() < deadline; i++) {
+            BotClient bot = new BotClient(config, stats, i);
+            bots.add(bot);
+            executor.execute(bot);
+            if (config.rampPerSecond < 1000) {
+                Thread.sleep(rampPause);
+            }
+        }
+
+        long lastReport = System.currentTimeMillis();
+        long lastSent = 0;
+        long lastReceived = 0;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(Math.min(config.reportSeconds * 1000L, Math.max(1, deadline - System.currentTimeMillis())));
+            long now = System.currentTimeMillis();
+            System.out.println(stats.progressLine(now - start, lastSent, lastReceived, now - lastReport));
+            lastReport = now;
+            lastSent = stats.messagesSent.get();
+            lastReceived = stats.messagesReceived.get();
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        config.running = false;
+        for (BotClient bot : bots) {
+            bot.shutdown();
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        System.out.println(stats.report(elapsed));
+    }
+}
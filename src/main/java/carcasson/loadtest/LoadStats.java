@@ -0,0 +1,85 @@
+package carcasson.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Общие счетчики нагрузочного теста. Задержки копятся в пачках у ботов и сливаются сюда
+public class LoadStats {
+    final AtomicLong connected = new AtomicLong();
+    final AtomicLong messagesSent = new AtomicLong();
+    final AtomicLong messagesReceived = new AtomicLong();
+    final AtomicLong bytesReceived = new AtomicLong();
+    final AtomicLong tilesPlaced = new AtomicLong();
+    final AtomicLong placementsRejected = new AtomicLong();
+    final AtomicLong meeplesPlaced = new AtomicLong();
+    final AtomicLong meeplesRejected = new AtomicLong();
+    final AtomicLong gamesFinished = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    // Дельты, после которых хеш поля бота не совпал с серверным
+    final AtomicLong boardMismatches = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<Long> placementLatencies = new ArrayList<>();
+    private final List<Long> turnLatencies = new ArrayList<>();
+
+    void addLatencies(List<Long> placement, List<Long> turn) {
+        lock.lock();
+        try {
+            placementLatencies.addAll(placement);
+            turnLatencies.addAll(turn);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    String progressLine(long elapsedMillis, long sentBefore, long receivedBefore, long intervalMillis) {
+        double seconds = Math.max(1, intervalMillis) / 1000.0;
+        return String.format("[%4ds] соединений: %d, отправлено/с: %.0f, получено/с: %.0f, плиток: %d, игр: %d, ошибок: %d",
+                elapsedMillis / 1000, connected.get(),
+                (messagesSent.get() - sentBefore) / seconds,
+                (messagesReceived.get() - receivedBefore) / seconds,
+                tilesPlaced.get(), gamesFinished.get(), errors.get());
+    }
+
+    String report(long elapsedMillis) {
+        double seconds = Math.max(1, elapsedMillis) / 1000.0;
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== ИТОГИ НАГРУЗОЧНОГО ТЕСТА ===\n");
+        sb.append(String.format("Длительность: %.1f с%n", seconds));
+        sb.append(String.format("Сообщений отправлено: %d (%.0f/с)%n", messagesSent.get(), messagesSent.get() / seconds));
+        sb.append(String.format("Сообщений получено: %d (%.0f/с, %.1f КБ/с)%n", messagesReceived.get(),
+                messagesReceived.get() / seconds, bytesReceived.get() / 1024.0 / seconds));
+        sb.append(String.format("Плиток размещено: %d (%.0f/с), отклонено: %d%n", tilesPlaced.get(),
+                tilesPlaced.get() / seconds, placementsRejected.get()));
+        sb.append(String.format("Миплов поставлено: %d, отклонено: %d%n", meeplesPlaced.get(), meeplesRejected.get()));
+        sb.append("Игр завершено: ").append(gamesFinished.get()).append('\n');
+        sb.append("Ошибок: ").append(errors.get()).append(", расхождений поля по хешу: ")
+                .append(boardMismatches.get()).append('\n');
+
+        lock.lock();
+        try {
+            sb.append("Задержка размещения плитки: ").append(percentiles(placementLatencies)).append('\n');
+            sb.append("Задержка передачи хода: ").append(percentiles(turnLatencies)).append('\n');
+        } finally {
+            lock.unlock();
+        }
+        return sb.toString();
+    }
+
+    private static String percentiles(List<Long> samplesNanos) {
+        if (samplesNanos.isEmpty()) return "нет данных";
+        List<Long> sorted = new ArrayList<>(samplesNanos);
+        Collections.sort(sorted);
+        return String.format("n=%d p50=%.2f мс p90=%.2f мс p99=%.2f мс p99.9=%.2f мс max=%.2f мс",
+                sorted.size(), millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99),
+                millis(sorted, 0.999), sorted.get(sorted.size() - 1) / 1_000_000.0);
+    }
+
+    private static double millis(List<Long> sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))) / 1_000_000.0;
+    }
+}
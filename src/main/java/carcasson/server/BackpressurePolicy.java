@@ -0,0 +1,40 @@
+package carcasson.server;
+
+// Пороги исходящей очереди одного соединения. Задаются системными свойствами:
+// -Dcarcasson.outbound.high=262144 -Dcarcasson.outbound.low=65536 -Dcarcasson.outbound.maxLagMillis=10000
+public class BackpressurePolicy {
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final long maxLagMillis;
+    private final int maxFrames;
+
+    public BackpressurePolicy(int highWatermark, int lowWatermark, long maxLagMillis, int maxFrames) {
+        if (lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Нижний порог больше верхнего: " + lowWatermark + " > " + highWatermark);
+        }
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.maxLagMillis = maxLagMillis;
+        this.maxFrames = maxFrames;
+    }
+
+    public static BackpressurePolicy fromSystemProperties() {
+        return new BackpressurePolicy(
+                Integer.getInteger("carcasson.outbound.high", 256 * 1024),
+                Integer.getInteger("carcasson.outbound.low", 64 * 1024),
+                Long.getLong("carcasson.outbound.maxLagMillis", 10_000),
+                Integer.getInteger("carcasson.outbound.maxFrames", 1024));
+    }
+
+    // Выше этого объема неотправленных байт клиент считается медленным
+    public int getHighWatermark() { return highWatermark; }
+
+    // Ниже этого объема клиент снова считается догнавшим
+    public int getLowWatermark() { return lowWatermark; }
+
+    // Сколько клиент может непрерывно быть выше верхнего порога до отключения
+    public long getMaxLagMillis() { return maxLagMillis; }
+
+    // Жесткий предел числа кадров в очереди
+    public int getMaxFrames() { return maxFrames; }
+}
@@ -0,0 +1,41 @@
+package carcasson.server;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Блокирующий транспорт: чтение и запись каждого клиента идут в виртуальных потоках,
+// так что простаивающее соединение не держит платформенный поток
+public class BlockingTransport {
+    private final GameServer server;
+    private final int port;
+    private final BackpressurePolicy policy;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public BlockingTransport(GameServer server, int port, BackpressurePolicy policy) {
+        this.server = server;
+        this.policy = policy;
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            System.out.println("Транспорт на виртуальных потоках");
+
+            while (true) {
+                Socket clientSocket = serverSocket.accept();
+                System.out.println("Новое подключение: " + clientSocket.getInetAddress());
+
+                ClientHandler handler = new ClientHandler(server);
+                SocketConnection connection = new SocketConnection(clientSocket, handler, executor, policy);
+                handler.setConnection(connection);
+                server.addClient(handler);
+                executor.execute(connection);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package carcasson.server;
+
+import carcasson.common.Board;
+import carcasson.common.Tile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Обход связных областей поля в ширину без лишних объектов: посещенные клетки - битовая маска
+// по порядковому номеру плитки в Board, очередь - кольцевой буфер int. Буферы живут вместе с комнатой
+// и переиспользуются, поэтому обход не потокобезопасен: вызывается только с рабочего потока комнаты
+final class BoardTraversal {
+    // Порядок сторон W, E, N, S - как в прежних обходах, от него зависит порядок плиток в результате
+    static final int[] DX = {-1, 1, 0, 0};
+    static final int[] DY = {0, 0, -1, 1};
+    static final char[] SIDES = {'W', 'E', 'N', 'S'};
+    static final char[] OPPOSITE = {'E', 'W', 'S', 'N'};
+
+    interface NodeFilter {
+        boolean accepts(Tile tile);
+    }
+
+    interface EdgeFilter {
+        // fromSide и toSide - значения сторон ('S', 'C', 'N'), обращенных друг к другу
+        boolean connects(Tile from, char fromSide, Tile to, char toSide);
+    }
+
+    private final Board board;
+    private long[] visited = new long[1];
+    private int[] queue = new int[16];
+
+    BoardTraversal(Board board) {
+        this.board = board;
+    }
+
+    // Плитки области, начиная с клетки (x, y), в порядке обхода. Пусто, если стартовая плитка не подходит
+    List<Tile> collect(int x, int y, NodeFilter nodes, EdgeFilter edges) {
+        List<Tile> result = new ArrayList<>();
+        int start = board.indexOf(x, y);
+        if (start < 0 || !nodes.accepts(board.tileAt(start))) return result;
+
+        prepare();
+        int mask = queue.length - 1;
+        int head = 0;
+        int tail = 0;
+        mark(start);
+        queue[tail++ & mask] = start;
+
+        while (head != tail) {
+            Tile tile = board.tileAt(queue[head++ & mask]);
+            result.add(tile);
+
+            for (int dir = 0; dir < 4; dir++) {
+                int next = board.indexOf(tile.getX() + DX[dir], tile.getY() + DY[dir]);
+                if (next < 0 || isMarked(next)) continue;
+
+                Tile neighbor = board.tileAt(next);
+                if (!nodes.accepts(neighbor)) continue;
+                if (!edges.connects(tile, tile.getSide(SIDES[dir]), neighbor, neighbor.getSide(OPPOSITE[dir]))) continue;
+
+                mark(next);
+                queue[tail++ & mask] = next;
+            }
+        }
+        return result;
+    }
+
+    // Каждая плитка попадает в очередь не больше одного раза, так что буфера на размер поля хватает
+    private void prepare() {
+        int size = board.size();
+        int words = (size + 63) >>> 6;
+        if (visited.length < words) {
+            visited = new long[Math.max(words, visited.length * 2)];
+        } else {
+            Arrays.fill(visited, 0, words, 0L);
+        }
+        if (queue.length < size) {
+            queue = new int[Integer.highestOneBit(size - 1) << 1];
+        }
+    }
+
+    private void mark(int index) {
+        visited[index >>> 6] |= 1L << index;
+    }
+
+    private boolean isMarked(int index) {
+        return (visited[index >>> 6] & (1L << index)) != 0;
+    }
+}
@@ -0,0 +1,77 @@
+package carcasson.server;
+
+import carcasson.common.Board;
+import carcasson.common.Tile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Города: незавершенный - по очку за плитку, закрытый - по два; очки получает большинство миплов,
+// при равенстве они делятся. Миплы возвращаются только из закрытых городов. Город, завершенный
+// по ходу партии, уже учтен. Миплы, которые раньше сняли дороги, в городе не считаются
+final class CityScorer implements FeatureScorer<FeatureRegions.Region> {
+
+    @Override
+    public List<FeatureRegions.Region> collect(Tile[] scanOrder, FeatureRegions regions) {
+        Set<FeatureRegions.Region> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<FeatureRegions.Region> cities = new ArrayList<>();
+        for (Tile tile : scanOrder) {
+            FeatureRegions.Region city = regions.city(tile);
+            if (tile.getType().equals("CITY") && city != null && seen.add(city)) {
+                cities.add(city);
+            }
+        }
+        return cities;
+    }
+
+    @Override
+    public ScoreBreakdown.Award score(FeatureRegions.Region city, Board board, FeatureRegions regions) {
+        boolean isCompleted = city.isClosed();
+        if (city.completed) {
+            return new ScoreBreakdown.Award(ScoreBreakdown.Feature.CITY, city.tiles, isCompleted, true, false,
+                    List.of(), 0, List.of(), List.of());
+        }
+
+        List<Tile> meepleTiles = new ArrayList<>();
+        Map<String, Integer> ownerCount = new HashMap<>();
+        for (Tile tile : city.meepleTiles) {
+            if (RoadScorer.returnedByRoad(tile, regions)) continue;
+            meepleTiles.add(tile);
+            ownerCount.merge(tile.getMeepleOwner(), 1, Integer::sum);
+        }
+
+        int totalPoints = city.tiles * (isCompleted ? 2 : 1);
+        if (ownerCount.isEmpty()) {
+            return new ScoreBreakdown.Award(ScoreBreakdown.Feature.CITY, city.tiles, isCompleted, false, false,
+                    List.of(), 0, List.of(), List.of());
+        }
+
+        String majorityOwner = null;
+        int maxCount = 0;
+        boolean tie = false;
+        for (Map.Entry<String, Integer> entry : ownerCount.entrySet()) {
+            if (entry.getValue() > maxCount) {
+                maxCount = entry.getValue();
+                majorityOwner = entry.getKey();
+                tie = false;
+            } else if (entry.getValue() == maxCount) {
+                tie = true;
+            }
+        }
+
+        List<String> owners = tie ? new ArrayList<>(ownerCount.keySet()) : List.of(majorityOwner);
+        int points = tie ? totalPoints / ownerCount.size() : totalPoints;
+        List<Tile> returned = new ArrayList<>();
+        if (isCompleted) {
+            for (Tile tile : meepleTiles) {
+                if (owners.contains(tile.getMeepleOwner())) returned.add(tile);
+            }
+        }
+        return new ScoreBreakdown.Award(ScoreBreakdown.Feature.CITY, city.tiles, isCompleted, false, tie,
+                owners, points, List.of(), returned);
+    }
+}
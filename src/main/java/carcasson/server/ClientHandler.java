@@ -1,88 +1,114 @@
 package carcasson.server;
 
 import carcasson.common.GameMessage;
+import carcasson.common.MessageCodec;
 import java.io.*;
-import java.net.*;
 import java.util.UUID;
 
-public class ClientHandler implements Runnable {
-    private Socket socket;
+public class ClientHandler {
+    private Connection connection;
     private GameServer server;
-    private ObjectInputStream in;
-    private ObjectOutputStream out;
     private String username;
     private String id;
+    private GameRoom room;
 
-    public ClientHandler(Socket socket, GameServer server) throws IOException {
-        this.socket = socket;
+    public ClientHandler(GameServer server) {
         this.server = server;
-        this.out = new ObjectOutputStream(socket.getOutputStream());
-        this.in = new ObjectInputStream(socket.getInputStream());
         this.id = UUID.randomUUID().toString();
     }
 
-    @Override
-    public void run() {
-        try {
-            GameMessage connectMessage = (GameMessage) in.readObject();
-            if (connectMessage.getType().equals("CONNECT")) {
-                this.username = (String) connectMessage.getSender();
+    void setConnection(Connection connection) {
+        this.connection = connection;
+    }
 
-                System.out.println("Игрок подключился: " + username + " (ID: " + id + ")");
+    public void onMessage(GameMessage message) {
+        if (username == null) {
+            handleConnect(message);
+        } else {
+            handleMessage(message);
+        }
+    }
 
-                boolean success = server.getGameRoom().addPlayer(this, username);
+    private void handleConnect(GameMessage connectMessage) {
+        if (!connectMessage.getType().equals("CONNECT")) {
+            connection.close();
+            return;
+        }
 
-                if (success) {
-                    sendMessage(new GameMessage(
-                            "CONNECT",
-                            "SERVER",
-                            "Добро пожаловать, " + username + "! Ожидаем второго игрока..."
-                    ));
+        this.username = (String) connectMessage.getSender();
 
-                    if (server.getGameRoom().getPlayerCount() == 2) {
-                        server.getGameRoom().startGame();
-                    }
+        System.out.println("Игрок подключился: " + username + " (ID: " + id + ")");
 
-                    while (!socket.isClosed()) {
-                        GameMessage message = (GameMessage) in.readObject();
-                        handleMessage(message);
-                    }
+        // После перезапуска сервера игрока с тем же именем ждет его прежняя партия
+        GameRoom resumed = server.getRooms().claimResume(username);
+        if (resumed != null) {
+            this.room = resumed;
+            resumed.execute(() -> {
+                if (!resumed.resumePlayer(this, username)) {
+                    connection.close();
                 }
+            });
+            return;
+        }
+
+        GameRoom room = server.getRooms().reserveSeat();
+        this.room = room;
+        room.execute(() -> {
+            boolean success = room.addPlayer(this, username);
+
+            if (success) {
+                sendMessage(new GameMessage(
+                        "CONNECT",
+                        "SERVER",
+                        "Добро пожаловать в комнату #" + room.getId() + ", " + username + "! Ожидаем второго игрока..."
+                ));
+
+                if (room.getPlayerCount() == 2) {
+                    room.startGame();
+                }
+            } else {
+                connection.close();
             }
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Ошибка соединения с " + username + ": " + e.getMessage());
-        } finally {
-            server.removeClient(this);
-            try {
-                socket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        });
+    }
+
+    // Клиент отстал и пропустил изменения поля - высылаем ему один свежий снимок
+    public void requestResync() {
+        GameRoom room = this.room;
+        if (room != null) {
+            room.execute(() -> room.sendSnapshot(this));
         }
     }
 
+    public void onDisconnect() {
+        server.removeClient(this);
+    }
+
     private void handleMessage(GameMessage message) {
         String type = message.getType();
 
         switch (type) {
             case "TILE_PLACED":
-                server.getGameRoom().placeTile(username, (int[]) message.getData());
+                room.execute(() -> room.placeTile(username, (int[]) message.getData()));
                 break;
             case "TILE_ROTATED":
-                server.getGameRoom().rotateTile(username);
+                room.execute(() -> room.rotateTile(username));
                 break;
             case "MEEPLE_PLACED":
                 // Упрощенная версия - без параметров
-                server.getGameRoom().placeMeeple(username);
+                room.execute(() -> room.placeMeeple(username));
                 break;
             case "TURN_SKIP":
-                server.getGameRoom().skipTurn(username);
+                room.execute(() -> room.skipTurn(username));
                 break;
             case "CHAT_MESSAGE":
-                server.getGameRoom().broadcastChat(username + ": " + message.getData());
+                room.execute(() -> room.broadcastChat(username + ": " + message.getData()));
+                break;
+            case "RESYNC":
+                requestResync();
                 break;
             case "END_GAME":
-                server.getGameRoom().endGame("Игра завершена по запросу игрока");
+                room.execute(() -> room.endGame("Игра завершена по запросу игрока"));
                 break;
             default:
                 System.out.println("Неизвестный тип сообщения от " + username + ": " + type);
@@ -90,13 +116,21 @@ public class ClientHandler implements Runnable {
     }
 
     public void sendMessage(GameMessage message) {
+        if (connection == null) return;
         try {
-            out.writeObject(message);
+            sendFrame(MessageCodec.encodeFrame(message));
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    // Готовый кадр рассылки: массив общий для всех получателей и после кодирования не меняется
+    public void sendFrame(byte[] frame) {
+        if (connection != null) {
+            connection.send(frame);
+        }
+    }
+
     public void sendMessage(String text) {
         sendMessage(new GameMessage("CHAT_MESSAGE", "SERVER", text));
     }
@@ -108,4 +142,8 @@ public class ClientHandler implements Runnable {
     public String getId() {
         return id;
     }
-}
\ No newline at end of file
+
+    public GameRoom getRoom() {
+        return room;
+    }
+}
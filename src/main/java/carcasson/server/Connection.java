@@ -0,0 +1,11 @@
+package carcasson.server;
+
+// Транспорт одного клиента: ClientHandler не знает, блокирующий он или на селекторе
+public interface Connection {
+    void send(byte[] frame);
+
+    // Закрывает соединение после отправки уже поставленных в очередь кадров
+    void close();
+
+    String getRemoteAddress();
+}
@@ -0,0 +1,377 @@
+package carcasson.server;
+
+import carcasson.common.Board;
+import carcasson.common.Tile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Области дорог и городов в системе непересекающихся множеств. Узел - порядковый номер плитки в Board,
+// счетчики области лежат в корне и обновляются при каждой плитке и каждом мипле,
+// поэтому проверки занятости и завершенности не обходят поле. У монастыря своя "область" - квадрат 3x3:
+// счетчик соседей на его узле растет с каждой плиткой рядом. С журналом отката каждое изменение
+// записывает свою отмену: слияние откатывается одной записью, потому что пути не сжимаются
+final class FeatureRegions {
+    // Стороны N, E, S, W
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+    // Монастырь завершен, когда заняты все 8 клеток вокруг
+    static final int MONASTERY_COMPLETE = 8;
+
+    static final class Region {
+        int tiles;
+        // Стороны области, которые смотрят в пустые клетки
+        int openEdges;
+        boolean completed;
+        final int[] meeples = new int[Tile.MEEPLE_COLORS.length];
+        // Плитки с миплами в порядке установки миплов
+        final List<Tile> meepleTiles = new ArrayList<>();
+        // Развилки, к которым область подходит дорогой, без повторов
+        final List<Tile> forks = new ArrayList<>();
+
+        boolean isClosed() {
+            return openEdges == 0;
+        }
+
+        int meeples(String color) {
+            return meeples[Tile.ownerIndex(color)];
+        }
+
+        boolean hasMeeples() {
+            return !meepleTiles.isEmpty();
+        }
+
+        // Цвет самого раннего мипла области или null
+        String firstOwner() {
+            return meepleTiles.isEmpty() ? null : meepleTiles.get(0).getMeepleOwner();
+        }
+    }
+
+    // parent[i] == -1 - плитка i не входит в области этого вида
+    private static final class Forest {
+        private int[] parent = new int[0];
+        private Region[] regions = new Region[0];
+
+        void ensureCapacity(int capacity) {
+            if (capacity <= parent.length) return;
+            int oldLength = parent.length;
+            int newLength = Math.max(capacity, Math.max(64, oldLength * 2));
+            parent = Arrays.copyOf(parent, newLength);
+            regions = Arrays.copyOf(regions, newLength);
+            Arrays.fill(parent, oldLength, newLength, -1);
+        }
+
+        void add(int node, Region region) {
+            parent[node] = node;
+            regions[node] = region;
+        }
+
+        void remove(int node) {
+            parent[node] = -1;
+            regions[node] = null;
+        }
+
+        Region get(int node) {
+            if (node < 0 || node >= parent.length || parent[node] < 0) return null;
+            return regions[find(node)];
+        }
+
+        // Без сжатия пути: объединение по размеру и так держит глубину в O(log n),
+        // а неизменные пути позволяют откатить слияние, вернув один parent
+        int find(int node) {
+            while (parent[node] != node) {
+                node = parent[node];
+            }
+            return node;
+        }
+    }
+
+    private final Board board;
+    private final Forest roads = new Forest();
+    private final Forest cities = new Forest();
+    private final Comparator<Tile> meepleOrderComparator;
+    private int[] meepleOrder = new int[0];
+    private int nextMeepleOrder;
+    // Соседей у монастыря; читается только на узлах монастырей
+    private int[] monasteryNeighbors = new int[0];
+    // Монастыри на поле в порядке установки
+    private final List<Tile> monasteries = new ArrayList<>();
+    // null - изменения не записываются
+    private UndoTrail trail;
+
+    FeatureRegions(Board board) {
+        this.board = board;
+        this.meepleOrderComparator = Comparator.comparingInt(tile -> meepleOrder[nodeOf(tile)]);
+    }
+
+    void setTrail(UndoTrail trail) {
+        this.trail = trail;
+    }
+
+    // Узлы дорог - те же плитки, что обходил поиск сегмента: все дороги, кроме развилки
+    static boolean isRoadNode(Tile tile) {
+        return tile.getType().equals("ROAD") && !tile.isTileL();
+    }
+
+    static boolean isCityNode(Tile tile) {
+        return countSides(tile, 'C') > 0;
+    }
+
+    Region road(Tile tile) {
+        return roads.get(nodeOf(tile));
+    }
+
+    Region city(Tile tile) {
+        return cities.get(nodeOf(tile));
+    }
+
+    // Соседей монастыря в квадрате 3x3 - текущие очки за него без единицы, за O(1)
+    int neighbors(Tile monastery) {
+        return monasteryNeighbors[nodeOf(monastery)];
+    }
+
+    List<Tile> monasteries() {
+        return monasteries;
+    }
+
+    // Вызывается сразу после board.put: заводит области плитки и сливает их с соседними.
+    // Возвращает монастыри, которые эта плитка завершила (обычно пусто)
+    List<Tile> add(Tile tile) {
+        int node = nodeOf(tile);
+        if (node < 0) return List.of();
+        ensureCapacity(node + 1);
+
+        if (isRoadNode(tile)) {
+            roads.add(node, newRegion(tile, 'S'));
+            record(() -> roads.remove(node));
+        }
+        if (isCityNode(tile)) {
+            cities.add(node, newRegion(tile, 'C'));
+            record(() -> cities.remove(node));
+        }
+
+        for (int side = 0; side < 4; side++) {
+            int other = board.indexOf(tile.getX() + DX[side], tile.getY() + DY[side]);
+            if (other < 0) continue;
+
+            Tile neighbor = board.tileAt(other);
+            char mine = sideOf(tile, side);
+            char theirs = sideOf(neighbor, (side + 2) % 4);
+
+            connect(roads, 'S', node, mine, other, theirs);
+            connect(cities, 'C', node, mine, other, theirs);
+
+            // Развилка обрывает дорогу, но засчитывается каждой подходящей к ней области
+            if (mine == 'S' && theirs == 'S') {
+                if (neighbor.isTileL()) addFork(roads.get(node), neighbor);
+                if (tile.isTileL()) addFork(roads.get(other), tile);
+            }
+        }
+
+        return countMonasteryNeighbors(tile, node);
+    }
+
+    private List<Tile> countMonasteryNeighbors(Tile tile, int node) {
+        List<Tile> completed = List.of();
+        int own = 0;
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                if (dx == 0 && dy == 0) continue;
+                int other = board.indexOf(tile.getX() + dx, tile.getY() + dy);
+                if (other < 0) continue;
+
+                own++;
+                Tile neighbor = board.tileAt(other);
+                if (!neighbor.getDefinition().isMonastery()) continue;
+                if (++monasteryNeighbors[other] == MONASTERY_COMPLETE) {
+                    completed = withTile(completed, neighbor);
+                }
+                record(() -> monasteryNeighbors[other]--);
+            }
+        }
+
+        if (tile.getDefinition().isMonastery()) {
+            monasteryNeighbors[node] = own;
+            monasteries.add(tile);
+            record(() -> monasteries.remove(monasteries.size() - 1));
+            if (own == MONASTERY_COMPLETE) {
+                completed = withTile(completed, tile);
+            }
+        }
+        return completed;
+    }
+
+    private static List<Tile> withTile(List<Tile> tiles, Tile tile) {
+        List<Tile> result = new ArrayList<>(tiles);
+        result.add(tile);
+        return result;
+    }
+
+    // Вызывается после смены мипла на плитке поля; previousOwner - прежний цвет или null
+    void meepleChanged(Tile tile, String previousOwner) {
+        int node = nodeOf(tile);
+        if (node < 0 || board.tileAt(node) != tile) return;
+
+        Region road = roads.get(node);
+        Region city = cities.get(node);
+
+        if (previousOwner != null) {
+            removeMeeple(road, tile, previousOwner);
+            removeMeeple(city, tile, previousOwner);
+        }
+        if (tile.hasMeeple()) {
+            int previousOrder = meepleOrder[node];
+            meepleOrder[node] = ++nextMeepleOrder;
+            record(() -> {
+                meepleOrder[node] = previousOrder;
+                nextMeepleOrder--;
+            });
+            addMeeple(road, tile);
+            addMeeple(city, tile);
+        }
+    }
+
+    private void connect(Forest forest, char feature, int node, char mine, int other, char theirs) {
+        Region own = forest.get(node);
+        Region their = forest.get(other);
+
+        if (own != null && mine == feature) closeEdge(own);
+        if (their != null && theirs == feature) closeEdge(their);
+
+        if (own != null && their != null && mine == feature && theirs == feature) {
+            union(forest, node, other);
+        }
+    }
+
+    // Объединение по числу плиток: меньшая область вливается в большую
+    private void union(Forest forest, int a, int b) {
+        int rootA = forest.find(a);
+        int rootB = forest.find(b);
+        if (rootA == rootB) return;
+
+        if (forest.regions[rootA].tiles < forest.regions[rootB].tiles) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+
+        Region into = forest.regions[rootA];
+        Region from = forest.regions[rootB];
+        int child = rootB;
+        int root = rootA;
+        forest.parent[child] = root;
+        forest.regions[child] = null;
+
+        boolean wasCompleted = into.completed;
+        List<Tile> previousMeepleTiles = trail != null && !from.meepleTiles.isEmpty()
+                ? new ArrayList<>(into.meepleTiles) : null;
+
+        into.tiles += from.tiles;
+        into.openEdges += from.openEdges;
+        into.completed |= from.completed;
+        for (int i = 0; i < into.meeples.length; i++) {
+            into.meeples[i] += from.meeples[i];
+        }
+        if (!from.meepleTiles.isEmpty()) {
+            into.meepleTiles.addAll(from.meepleTiles);
+            into.meepleTiles.sort(meepleOrderComparator);
+        }
+
+        // Поглощенная область после слияния не меняется, поэтому её счетчики и вычитаются
+        record(() -> {
+            forest.parent[child] = child;
+            forest.regions[child] = from;
+            into.tiles -= from.tiles;
+            into.openEdges -= from.openEdges;
+            into.completed = wasCompleted;
+            for (int i = 0; i < into.meeples.length; i++) {
+                into.meeples[i] -= from.meeples[i];
+            }
+            if (previousMeepleTiles != null) {
+                into.meepleTiles.clear();
+                into.meepleTiles.addAll(previousMeepleTiles);
+            }
+        });
+
+        for (Tile fork : from.forks) {
+            addFork(into, fork);
+        }
+    }
+
+    private static Region newRegion(Tile tile, char feature) {
+        Region region = new Region();
+        region.tiles = 1;
+        region.openEdges = countSides(tile, feature);
+        return region;
+    }
+
+    private void addFork(Region region, Tile fork) {
+        if (region != null && !region.forks.contains(fork)) {
+            region.forks.add(fork);
+            record(() -> region.forks.remove(region.forks.size() - 1));
+        }
+    }
+
+    private void closeEdge(Region region) {
+        region.openEdges--;
+        record(() -> region.openEdges++);
+    }
+
+    private void addMeeple(Region region, Tile tile) {
+        if (region == null) return;
+        int owner = tile.getMeepleOwnerIndex();
+        region.meeples[owner]++;
+        region.meepleTiles.add(tile);
+        record(() -> {
+            region.meeples[owner]--;
+            region.meepleTiles.remove(region.meepleTiles.size() - 1);
+        });
+    }
+
+    private void removeMeeple(Region region, Tile tile, String previousOwner) {
+        if (region == null) return;
+        int owner = Tile.ownerIndex(previousOwner);
+        int index = region.meepleTiles.indexOf(tile);
+        region.meeples[owner]--;
+        if (index >= 0) region.meepleTiles.remove(index);
+        record(() -> {
+            region.meeples[owner]++;
+            if (index >= 0) region.meepleTiles.add(index, tile);
+        });
+    }
+
+    private void record(Runnable undo) {
+        if (trail != null) {
+            trail.push(undo);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        roads.ensureCapacity(capacity);
+        cities.ensureCapacity(capacity);
+        if (capacity > meepleOrder.length) {
+            meepleOrder = Arrays.copyOf(meepleOrder, Math.max(capacity, Math.max(64, meepleOrder.length * 2)));
+        }
+        if (capacity > monasteryNeighbors.length) {
+            monasteryNeighbors = Arrays.copyOf(monasteryNeighbors,
+                    Math.max(capacity, Math.max(64, monasteryNeighbors.length * 2)));
+        }
+    }
+
+    private int nodeOf(Tile tile) {
+        return board.indexOf(tile.getX(), tile.getY());
+    }
+
+    private static char sideOf(Tile tile, int side) {
+        return tile.getEdges().side(side, tile.getRotation());
+    }
+
+    private static int countSides(Tile tile, char feature) {
+        int count = 0;
+        for (int side = 0; side < 4; side++) {
+            if (sideOf(tile, side) == feature) count++;
+        }
+        return count;
+    }
+}
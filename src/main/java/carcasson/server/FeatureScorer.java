@@ -0,0 +1,19 @@
+package carcasson.server;
+
+import carcasson.common.Board;
+import carcasson.common.Tile;
+import java.util.List;
+
+// Подсчет одного признака. Области признака независимы, поэтому score вызывается для них
+// параллельно и только читает поле; всё, что зависит от порядка областей, делает finish
+interface FeatureScorer<R> {
+    // Области в порядке подсчета - по первой плитке в обходе поля
+    List<R> collect(Tile[] scanOrder, FeatureRegions regions);
+
+    // null - область ничего не приносит
+    ScoreBreakdown.Award score(R region, Board board, FeatureRegions regions);
+
+    // Последовательный проход по наградам в порядке областей
+    default void finish(List<ScoreBreakdown.Award> awards) {
+    }
+}
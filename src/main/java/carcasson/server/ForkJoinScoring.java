@@ -0,0 +1,148 @@
+package carcasson.server;
+
+import carcasson.common.Board;
+import carcasson.common.Tile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+// Подсчет по признакам на fork-join пуле: дороги, города и монастыри считаются одновременно,
+// области каждого признака делятся пополам до пачки. Подсчет только читает поле и области - движок
+// ждет его на своем потоке, - поэтому блокировки не нужны. Поле меньше порога считается на месте:
+// партии из двадцати плиток, симуляция и поиск бота пулу не отдаются
+final class ForkJoinScoring implements ScoringEngine {
+    // Общий пул подсчета для всех комнат: по потоку на ядро
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    // С какого числа плиток подсчет уходит в пул
+    static final int PARALLEL_TILES = 512;
+    // Сколько областей задача считает сама, не деля дальше
+    private static final int BATCH = 32;
+
+    private static final List<FeatureScorer<?>> SCORERS =
+            Arrays.asList(new RoadScorer(), new CityScorer(), new MonasteryScorer());
+
+    private final ForkJoinPool pool;
+    private final int parallelTiles;
+
+    ForkJoinScoring() {
+        this(POOL, PARALLEL_TILES);
+    }
+
+    ForkJoinScoring(ForkJoinPool pool, int parallelTiles) {
+        this.pool = pool;
+        this.parallelTiles = parallelTiles;
+    }
+
+    @Override
+    public ScoreBreakdown score(Board board, FeatureRegions regions) {
+        Tile[] scanOrder = board.inScanOrder();
+        boolean parallel = board.size() >= parallelTiles;
+        List<FeatureTask<?>> tasks = new ArrayList<>();
+        for (FeatureScorer<?> scorer : SCORERS) {
+            tasks.add(new FeatureTask<>(scorer, scanOrder, board, regions, parallel));
+        }
+
+        if (parallel) {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+        } else {
+            for (FeatureTask<?> task : tasks) {
+                task.compute();
+            }
+        }
+
+        ScoreBreakdown breakdown = new ScoreBreakdown();
+        for (FeatureTask<?> task : tasks) {
+            breakdown.addAll(task.awards);
+        }
+        return breakdown;
+    }
+
+    // Один признак: сбор областей, параллельный подсчет, затем последовательный finish
+    @SuppressWarnings("serial") // задачи живут внутри одного подсчета и не сериализуются
+    private static final class FeatureTask<R> extends RecursiveAction {
+        private final FeatureScorer<R> scorer;
+        private final Tile[] scanOrder;
+        private final Board board;
+        private final FeatureRegions regions;
+        private final boolean parallel;
+        private List<ScoreBreakdown.Award> awards;
+
+        FeatureTask(FeatureScorer<R> scorer, Tile[] scanOrder, Board board, FeatureRegions regions,
+                    boolean parallel) {
+            this.scorer = scorer;
+            this.scanOrder = scanOrder;
+            this.board = board;
+            this.regions = regions;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected void compute() {
+            List<R> found = scorer.collect(scanOrder, regions);
+            ScoreBreakdown.Award[] scored = new ScoreBreakdown.Award[found.size()];
+            if (parallel) {
+                new RegionsTask<>(scorer, found, scored, 0, found.size(), board, regions).invoke();
+            } else {
+                for (int i = 0; i < scored.length; i++) {
+                    scored[i] = scorer.score(found.get(i), board, regions);
+                }
+            }
+
+            // Пустые награды выбрасываются, порядок областей сохраняется
+            awards = new ArrayList<>();
+            for (ScoreBreakdown.Award award : scored) {
+                if (award != null) awards.add(award);
+            }
+            scorer.finish(awards);
+        }
+    }
+
+    // Диапазон областей [from, to): награда i пишется в scored[i]
+    @SuppressWarnings("serial")
+    private static final class RegionsTask<R> extends RecursiveTask<Void> {
+        private final FeatureScorer<R> scorer;
+        private final List<R> found;
+        private final ScoreBreakdown.Award[] scored;
+        private final int from;
+        private final int to;
+        private final Board board;
+        private final FeatureRegions regions;
+
+        RegionsTask(FeatureScorer<R> scorer, List<R> found, ScoreBreakdown.Award[] scored, int from, int to,
+                    Board board, FeatureRegions regions) {
+            this.scorer = scorer;
+            this.found = found;
+            this.scored = scored;
+            this.from = from;
+            this.to = to;
+            this.board = board;
+            this.regions = regions;
+        }
+
+        @Override
+        protected Void compute() {
+            if (to - from <= BATCH) {
+                for (int i = from; i < to; i++) {
+                    scored[i] = scorer.score(found.get(i), board, regions);
+                }
+                return null;
+            }
+
+            int middle = (from + to) >>> 1;
+            RegionsTask<R> left = new RegionsTask<>(scorer, found, scored, from, middle, board, regions);
+            left.fork();
+            new RegionsTask<>(scorer, found, scored, middle, to, board, regions).compute();
+            left.join();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package carcasson.server;
+
+import carcasson.common.Board;
+import carcasson.common.Tile;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Фронтир поля: пустые клетки рядом с плитками. Для каждой клетки хранятся соседи по сторонам N, E, S, W -
+// это и есть ограничения на стыки. Поиск ходов перебирает только фронтир, а не все поле
+final class FrontierIndex {
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    static final class Cell {
+        final int x;
+        final int y;
+        // neighbors[side] - плитка, к которой клетка примыкает стороной side, или null
+        final Tile[] neighbors = new Tile[4];
+
+        Cell(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private final Board board;
+    private final Map<Integer, Cell> cells = new LinkedHashMap<>();
+    // null - изменения не записываются
+    private UndoTrail trail;
+
+    FrontierIndex(Board board) {
+        this.board = board;
+    }
+
+    void setTrail(UndoTrail trail) {
+        this.trail = trail;
+    }
+
+    // Вызывается сразу после board.put: клетка плитки уходит из фронтира, пустые соседи в него входят.
+    // После отката множество клеток и их соседи прежние, порядок обхода клеток может отличаться
+    void add(Tile tile) {
+        int x = tile.getX();
+        int y = tile.getY();
+        Integer covered = Board.key(x, y);
+        Cell removed = cells.remove(covered);
+        if (trail != null && removed != null) {
+            trail.push(() -> cells.put(covered, removed));
+        }
+
+        for (int side = 0; side < 4; side++) {
+            int nx = x + DX[side];
+            int ny = y + DY[side];
+            if (!Board.inRange(nx, ny) || board.isOccupied(nx, ny)) continue;
+
+            Integer key = Board.key(nx, ny);
+            Cell cell = cells.get(key);
+            if (cell == null) {
+                cell = new Cell(nx, ny);
+                cells.put(key, cell);
+                if (trail != null) {
+                    trail.push(() -> cells.remove(key));
+                }
+            }
+
+            int facing = (side + 2) % 4;
+            Cell changed = cell;
+            Tile previous = cell.neighbors[facing];
+            cell.neighbors[facing] = tile;
+            if (trail != null) {
+                trail.push(() -> changed.neighbors[facing] = previous);
+            }
+        }
+    }
+
+    Collection<Cell> cells() {
+        return cells.values();
+    }
+
+    int size() {
+        return cells.size();
+    }
+}
@@ -0,0 +1,1315 @@
+package carcasson.server;
+
+import carcasson.common.Board;
+import carcasson.common.Tile;
+import carcasson.common.TileCatalog;
+import carcasson.common.TileDefinition;
+import carcasson.common.Player;
+import carcasson.common.LegalPlacements;
+import carcasson.common.ZobristHash;
+import java.util.*;
+
+// Правила партии без сети: колода, поле, ходы и подсчет очков. Всё, что раньше уходило в сокеты
+// и System.out, движок сообщает через GameEvents - комната превращает события в сообщения клиентам,
+// симуляция и повтор журнала их просто отбрасывают. Не потокобезопасен: один движок - один поток
+public class GameEngine {
+    private static final int MAX_PLAYERS = 2;
+
+    // Фильтры обходов поля: развилка обрывает дорогу, город соединяется только стороной C
+    private static final BoardTraversal.NodeFilter ROAD_TILES =
+            tile -> tile.getType().equals("ROAD") && !"tile-l.png".equals(tile.getFileName());
+    private static final BoardTraversal.NodeFilter PLAIN_ROAD_TILES =
+            tile -> tile.getType().equals("ROAD") && !"tile-l.png".equals(tile.getFileName()) &&
+                    !"tile-n.png".equals(tile.getFileName()) && !"tile-monastery.png".equals(tile.getFileName());
+    private static final BoardTraversal.NodeFilter CITY_TILES = tile -> tile.getType().equals("CITY");
+    private static final BoardTraversal.EdgeFilter ROAD_EDGE = (from, fromSide, to, toSide) -> fromSide == 'S' && toSide == 'S';
+    private static final BoardTraversal.EdgeFilter CITY_EDGE = (from, fromSide, to, toSide) -> fromSide == 'C' && toSide == 'C';
+    private static final BoardTraversal.EdgeFilter COMPATIBLE_EDGE =
+            (from, fromSide, to, toSide) -> areSidesCompatible(fromSide, toSide, from, to);
+
+    private final GameEvents events;
+
+    // Порядок ходов по именам игроков
+    private List<String> turnOrder = new ArrayList<>();
+    private Map<String, Player> playerInfo = new HashMap<>();
+    private List<Tile> deck = new ArrayList<>();
+    private Board board = new Board();
+    private FeatureRegions regions = new FeatureRegions(board);
+    private FrontierIndex frontier = new FrontierIndex(board);
+    private BoardTraversal traversal = new BoardTraversal(board);
+    private Map<String, Tile> playerTiles = new HashMap<>();
+    private int currentPlayerIndex = 0;
+    private boolean gameStarted = false;
+    private boolean gameEnded = false;
+    private int discardedTiles = 0;
+    private final Random random;
+    private final MoveLog moveLog;
+
+    private String lastPlacedBy = null;
+    private int lastPlacedX = -1;
+    private int lastPlacedY = -1;
+
+    private Map<String, String> objectOwners = new HashMap<>();
+
+    // Хеш Зобриста поля: меняется с каждой плиткой и каждым миплом
+    private long boardHash = 0;
+
+    // Журнал отката для поиска бота; в комнатах null, и изменения не записываются
+    private UndoTrail trail;
+
+    private ScoringEngine scoring = new ForkJoinScoring();
+    // Разбор финального подсчета; null, пока партия идет
+    private ScoreBreakdown finalScores;
+
+    // Колода целиком определяется зерном, поэтому партию можно повторить по журналу
+    public GameEngine(long seed, GameEvents events) {
+        this.events = events;
+        this.random = new Random(seed);
+        this.moveLog = new MoveLog(seed);
+        createDeck();
+    }
+
+    // Колода - фиксированный набор из каталога плиток, перетасованный зерном партии
+    private void createDeck() {
+        deck.clear();
+        List<TileDefinition> allTiles = TileCatalog.bag();
+
+        Collections.shuffle(allTiles, random);
+
+        for (int i = 0; i < allTiles.size(); i++) {
+            deck.add(new Tile(i + 1, allTiles.get(i)));
+        }
+
+        Map<String, Integer> tileCount = new HashMap<>();
+        for (Tile tile : deck) {
+            String fileName = tile.getFileName();
+            tileCount.put(fileName, tileCount.getOrDefault(fileName, 0) + 1);
+        }
+
+        log("СОСТАВ КОЛОДЫ");
+        for (Map.Entry<String, Integer> entry : tileCount.entrySet()) {
+            log(entry.getKey() + ": " + entry.getValue() + " шт.");
+        }
+        log("Всего плиток: " + deck.size());
+    }
+
+
+    // Первое место - RED, второе - BLUE; ходы идут в порядке мест. null - мест нет или имя занято
+    public Player addPlayer(String playerId, String username) {
+        if (gameStarted || turnOrder.size() >= MAX_PLAYERS || playerInfo.containsKey(username)) {
+            return null;
+        }
+        turnOrder.add(username);
+        String color = turnOrder.size() == 1 ? "RED" : "BLUE";
+        Player player = new Player(playerId, username, color);
+        playerInfo.put(username, player);
+        return player;
+    }
+
+    // Игрок ушел до начала партии
+    public void removePlayer(String username) {
+        if (gameStarted) return;
+        turnOrder.remove(username);
+        playerInfo.remove(username);
+    }
+
+    public void startGame() {
+        if (turnOrder.size() == MAX_PLAYERS && !gameStarted) {
+            gameStarted = true;
+            for (String username : turnOrder) {
+                moveLog.addPlayer(username);
+            }
+
+            Tile startTile = new Tile(0, TileCatalog.ROAD_STRAIGHT);
+            startTile.setX(7);
+            startTile.setY(7);
+            placeOnBoard(startTile);
+
+            events.chat("=== ИГРА НАЧАЛАСЬ! ===");
+            events.chat("Первый ход у " + turnOrder.get(0));
+
+            events.gameStarted();
+            drawTileForPlayer(turnOrder.get(0));
+        }
+    }
+
+    private void drawTileForPlayer(String username) {
+        while (!deck.isEmpty()) {
+            Tile tile = deck.remove(0);
+            if (trail != null) {
+                int rotation = tile.getRotation();
+                trail.push(() -> {
+                    tile.setRotation(rotation);
+                    deck.add(0, tile);
+                });
+            }
+            LegalPlacements placements = findLegalPlacements(tile);
+
+            // Плитку некуда положить ни в одном повороте - сбрасываем и сразу тянем следующую
+            if (placements.isEmpty()) {
+                log("Плитка " + tile.getFileName() + " не подходит ни к одной клетке, сброшена");
+                events.chat("Плитку " + tile.getFileName() + " некуда положить, она сброшена");
+                discardedTiles++;
+                continue;
+            }
+
+            playerTiles.put(username, tile);
+
+            events.tileDrawn(username, tile);
+            events.legalPlacements(username, placements);
+            events.turn(username);
+            return;
+        }
+        endGame("Колода пуста!");
+    }
+
+    // Плитка ложится на поле: индексы областей и фронтира обновляются вместе с ним
+    // Возвращает монастыри, которые завершила плитка
+    private List<Tile> placeOnBoard(Tile tile) {
+        board.put(tile);
+        boardHash ^= ZobristHash.of(tile);
+        if (trail != null) {
+            trail.push(board::removeLast);
+        }
+        List<Tile> completedMonasteries = regions.add(tile);
+        frontier.add(tile);
+        return completedMonasteries;
+    }
+
+    // Все (x, y, поворот), которые прошли бы isValidPlacement; перебирается только фронтир
+    public LegalPlacements findLegalPlacements(Tile tile) {
+        int[] placements = new int[frontier.size() * 4 * 3];
+        int count = 0;
+        boolean startPlaced = board.get(7, 7) != null;
+
+        for (FrontierIndex.Cell cell : frontier.cells()) {
+            if (!startPlaced && !isAdjacentToStart(cell.x, cell.y)) continue;
+
+            for (int rotation = 0; rotation < 4; rotation++) {
+                if (fitsCell(tile, rotation, cell)) {
+                    placements[count++] = cell.x;
+                    placements[count++] = cell.y;
+                    placements[count++] = rotation;
+                }
+            }
+        }
+        return new LegalPlacements(tile.getId(), Arrays.copyOf(placements, count));
+    }
+
+    private boolean fitsCell(Tile tile, int rotation, FrontierIndex.Cell cell) {
+        for (int side = 0; side < 4; side++) {
+            Tile neighbor = cell.neighbors[side];
+            if (neighbor == null) continue;
+
+            char mine = tile.getEdges().side(side, rotation);
+            char theirs = neighbor.getEdges().side((side + 2) % 4, neighbor.getRotation());
+            if (!areSidesCompatible(theirs, mine, neighbor, tile)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    boolean isValidPlacement(Tile tile, int x, int y) {
+        if (!Board.inRange(x, y)) return false;
+        if (board.get(x, y) != null) return false;
+
+        boolean hasNeighbor = false;
+        boolean allCompatible = true;
+
+        if (board.get(x-1, y) != null) {
+            hasNeighbor = true;
+            Tile west = board.get(x-1, y);
+            if (!areSidesCompatible(west.getSide('E'), tile.getSide('W'), west, tile)) {
+                allCompatible = false;
+            }
+        }
+
+        if (board.get(x+1, y) != null) {
+            hasNeighbor = true;
+            Tile east = board.get(x+1, y);
+            if (!areSidesCompatible(east.getSide('W'), tile.getSide('E'), east, tile)) {
+                allCompatible = false;
+            }
+        }
+
+        if (board.get(x, y-1) != null) {
+            hasNeighbor = true;
+            Tile north = board.get(x, y-1);
+            if (!areSidesCompatible(north.getSide('S'), tile.getSide('N'), north, tile)) {
+                allCompatible = false;
+            }
+        }
+
+        if (board.get(x, y+1) != null) {
+            hasNeighbor = true;
+            Tile south = board.get(x, y+1);
+            if (!areSidesCompatible(south.getSide('N'), tile.getSide('S'), south, tile)) {
+                allCompatible = false;
+            }
+        }
+
+        return hasNeighbor && allCompatible && (board.get(7, 7) != null || isAdjacentToStart(x, y));
+    }
+
+    private static boolean areSidesCompatible(char side1, char side2, Tile tile1, Tile tile2) {
+        if ("tile-n.png".equals(tile1.getFileName()) && side1 == 'C') {
+
+            return side2 == 'C' && "tile-n.png".equals(tile2.getFileName());
+        }
+
+        if ("tile-n.png".equals(tile2.getFileName()) && side2 == 'C') {
+            return side1 == 'C' && "tile-n.png".equals(tile1.getFileName());
+        }
+
+        if (side1 == 'S' && side2 == 'S') {
+            return true;
+        }
+
+        if (side1 == 'N' && side2 == 'N') {
+            return true;
+        }
+
+        if ("tile-l.png".equals(tile1.getFileName()) && side1 == 'S') {
+            return side2 == 'S';
+        }
+
+        if ("tile-l.png".equals(tile2.getFileName()) && side2 == 'S') {
+            return side1 == 'S';
+        }
+
+        return false;
+    }
+
+    private boolean isAdjacentToStart(int x, int y) {
+        return (x == 7 && (y == 6 || y == 8)) || (y == 7 && (x == 6 || x == 8));
+    }
+
+    public boolean placeTile(String username, int[] coords) {
+        Tile tile = playerTiles.get(username);
+        if (tile == null) {
+            log("Игрок " + username + " не имеет плитки для размещения");
+            return false;
+        }
+
+        int x = coords[0];
+        int y = coords[1];
+
+        if (isValidPlacement(tile, x, y)) {
+            Tile placedTile = new Tile(tile.getId(), tile.getDefinition());
+            placedTile.setX(x);
+            placedTile.setY(y);
+            placedTile.setRotation(tile.getRotation());
+
+            lastPlacedBy = username;
+            lastPlacedX = x;
+            lastPlacedY = y;
+            moveLog.place(turnOrder.indexOf(username), x, y, placedTile.getRotation());
+
+            List<Tile> completedMonasteries = placeOnBoard(placedTile);
+            events.tileChanged(placedTile);
+            playerTiles.remove(username);
+
+            if ("tile-n.png".equals(placedTile.getFileName())) {
+                checkCityCompletion(placedTile);
+            }
+            for (Tile monastery : completedMonasteries) {
+                completeMonastery(monastery);
+            }
+
+            log("Плитка успешно размещена!");
+            events.chat(username + " разместил плитку в (" + x + "," + y + ")");
+            events.boardChanged();
+
+
+            String message = getPlacementOptionsMessage(placedTile, username);
+            events.message(username, message);
+            return true;
+        } else {
+            log("Некорректное размещение!");
+            events.message(username, "Нельзя разместить плитку здесь. Проверьте совместимость с соседями.");
+            return false;
+        }
+    }
+
+
+    // Город завершен, когда у его области не осталось открытых сторон
+    private void checkCityCompletion(Tile placedTile) {
+        FeatureRegions.Region city = regions.city(placedTile);
+        if (city == null || !city.isClosed()) {
+            return;
+        }
+
+        log("Город из " + city.tiles + " плиток завершен плиткой в (" +
+                placedTile.getX() + "," + placedTile.getY() + ")");
+
+        if (city.completed) {
+            log("Город уже завершен - пропускаем");
+            return;
+        }
+
+        city.completed = true;
+        if (trail != null) {
+            trail.push(() -> city.completed = false);
+        }
+        completeCity(city);
+    }
+
+    private void completeCity(FeatureRegions.Region city) {
+        String cityOwner = findCityOwner(city);
+
+        log("Владелец города: " + cityOwner);
+
+        if ("DIVIDED".equals(cityOwner)) {
+            log("Город разделен между игроками");
+            handleDividedCity(city);
+            return;
+        }
+
+        if (cityOwner == null) {
+            log("Город завершен, но никто не владеет им!");
+            events.chat("Город завершен, но никто не владеет им!");
+            return;
+        }
+
+        Player player = playerInfo.get(cityOwner);
+        if (player == null) {
+            log("Игрок не найден: " + cityOwner);
+            return;
+        }
+
+        int points = 4;
+        player.addScore(points);
+        returnMeeplesForCity(city, cityOwner);
+
+        log("Начислено " + points + " очков игроку " + cityOwner);
+        events.chat("Владелец: " + cityOwner + " получает +" + points + " очков");
+        scoreChanged(cityOwner);
+        events.boardChanged();
+    }
+
+    // Все 8 соседей на месте: владелец сразу получает 9 очков и мипла обратно,
+    // в финальном подсчете монастыря уже нет. Монастырь без мипла просто завершен
+    private void completeMonastery(Tile monastery) {
+        log("Монастырь в (" + monastery.getX() + "," + monastery.getY() + ") завершен");
+        if (!monastery.hasMeeple()) return;
+
+        Player player = getPlayerByColor(monastery.getMeepleOwner());
+        if (player == null) return;
+
+        int points = 1 + FeatureRegions.MONASTERY_COMPLETE;
+        player.addScore(points);
+        setMeeple(monastery, null);
+        player.returnMeeple();
+
+        events.chat("Монастырь завершен: " + player.getName() + " +" + points + " очков");
+        scoreChanged(player.getName());
+        events.boardChanged();
+    }
+
+    // Имя единственного владельца, "DIVIDED" при миплах обоих цветов или null
+    private String findCityOwner(FeatureRegions.Region city) {
+        String owner = null;
+        for (String color : Tile.MEEPLE_COLORS) {
+            if (city.meeples(color) == 0) continue;
+            if (owner != null) return "DIVIDED";
+            owner = color;
+        }
+        return owner == null ? null : getPlayerNameByColor(owner);
+    }
+
+    private void handleDividedCity(FeatureRegions.Region city) {
+        int points = 4;
+        int pointsEach = points / 2;
+
+        List<Player> owners = new ArrayList<>();
+        for (String color : Tile.MEEPLE_COLORS) {
+            Player player = city.meeples(color) > 0 ? getPlayerByColor(color) : null;
+            if (player == null) return;
+            owners.add(player);
+        }
+
+        for (Player player : owners) {
+            player.addScore(pointsEach);
+            returnMeeplesForCity(city, player.getName());
+        }
+
+        events.chat("Каждый получает: +" + pointsEach + " очков");
+
+        for (Player player : owners) {
+            scoreChanged(player.getName());
+        }
+        events.boardChanged();
+    }
+
+    private void returnMeeplesForCity(FeatureRegions.Region city, String username) {
+        Player player = playerInfo.get(username);
+        if (player == null) return;
+
+        String playerColor = player.getColor();
+        for (Tile cityTile : new ArrayList<>(city.meepleTiles)) {
+            if (cityTile.getMeepleOwner().equals(playerColor)) {
+                setMeeple(cityTile, null);
+                player.returnMeeple();
+            }
+        }
+    }
+
+    public void rotateTile(String username) {
+        Tile tile = playerTiles.get(username);
+        if (tile != null) {
+            tile.rotate();
+            events.tileDrawn(username, tile);
+            log(username + " повернул плитку " + tile.getFileName());
+        }
+    }
+
+    public boolean placeMeeple(String username) {
+
+        log("Игрок: " + username);
+        log("lastPlacedBy: " + lastPlacedBy);
+        log("lastPlacedX,Y: " + lastPlacedX + "," + lastPlacedY);
+
+        // 1. Проверяем, что игрок ставит мипл на свою последнюю плитку
+        if (!username.equals(lastPlacedBy)) {
+            String message = "Вы можете ставить мипла только на свою последнюю размещённую плитку!";
+            log(message);
+            events.message(username, message);
+            return false;
+        }
+
+        if (lastPlacedX == -1 || lastPlacedY == -1) {
+            String message = "Сначала разместите плитку!";
+            log(message);
+            events.message(username, message);
+            return false;
+        }
+
+        // 2. Получаем плитку и игрока
+        Tile tile = board.get(lastPlacedX, lastPlacedY);
+        Player player = playerInfo.get(username);
+
+
+        // 3. Проверка на развилку tile-l.png
+        if ("tile-l.png".equals(tile.getFileName())) {
+            String message = "На плитку tile-l.png нельзя ставить мипла! Это развилка дорог.";
+            log(message);
+            events.message(username, message);
+            return false;
+        }
+
+        // 4. Проверка возможности размещения мипла
+        if (!tile.canPlaceMeeple()) {
+            String message = "Нельзя поставить мипла на эту плитку!";
+            log(message);
+            events.message(username, message);
+            return false;
+        }
+
+        // 5. Проверка наличия мипла на плитке
+        if (tile.hasMeeple()) {
+            String message = "На этой плитке уже есть мипл!";
+            log(message);
+            events.message(username, message);
+            return false;
+        }
+
+        // 6. Проверка доступности миплов у игрока
+        if (player.getMeeplesLeft() <= 0) {
+            String message = "У вас не осталось миплов!";
+            log(message);
+            events.message(username, message);
+            return false;
+        }
+
+        // 7. Определяем реальный тип плитки
+        String tileType;
+        String fileName = tile.getFileName();
+
+        if ("tile-n.png".equals(fileName)) {
+            tileType = "CITY";
+            log("tile-n.png detected -> CITY type");
+        } else if ("tile-monastery.png".equals(fileName)) {
+            tileType = "MONASTERY";
+            log("tile-monastery.png detected -> MONASTERY type");
+        } else if ("tile-l.png".equals(fileName)) {
+            tileType = "FORK";
+            log("tile-l.png detected -> FORK type");
+        } else {
+            tileType = tile.getType();
+            log("Regular tile -> type: " + tileType);
+        }
+
+        // 8. Обработка РАЗНЫХ типов плиток
+        if (tileType.equals("ROAD")) {
+            log("=== ОБРАБОТКА ДОРОГИ ===");
+
+            FeatureRegions.Region segment = regions.road(tile);
+            log("Текущий сегмент: " + segment.tiles + " плиток, миплов: " +
+                    segment.meepleTiles.size());
+
+            String otherColor = null;
+            for (String color : Tile.MEEPLE_COLORS) {
+                if (!color.equals(player.getColor()) && segment.meeples(color) > 0) {
+                    otherColor = color;
+                    break;
+                }
+            }
+
+            if (otherColor != null) {
+                String otherPlayerName = getPlayerNameByColor(otherColor);
+                log("Обнаружен мипл другого игрока в сегменте!");
+                String errorMessage = "Невозможно поставить мипл - эта часть дороги уже занята игроком " + otherPlayerName + "!";
+                log("ОШИБКА: " + errorMessage);
+
+                events.chat(username + " пытался поставить мипл на занятую часть дороги");
+                events.message(username, "❌ " + errorMessage);
+                return false;
+            }
+
+            if (segment.meeples(player.getColor()) > 0) {
+                log("Игрок уже имеет мипл в этой части дороги!");
+                String message = "Вы уже поставили мипла на эту часть дороги!";
+                log(message);
+                events.message(username, message);
+                return false;
+            }
+
+            setMeeple(tile, player.getColor());
+            String key = tile.getX() + "," + tile.getY() + ":ROAD";
+            claimObject(key, player.getColor());
+            player.useMeeple();
+
+            // Развилки в сегмент не входят, поэтому сообщение считает только плитки дороги
+            log("Мипл успешно поставлен на дорогу");
+            events.chat(username + " поставил мипла на дорогу (" + segment.tiles + " плиток дороги)");
+
+        } else if (tileType.equals("MONASTERY")) {
+            log(" ОБРАБОТКА МОНАСТЫРЯ ");
+
+            String objectKey = tile.getX() + "," + tile.getY() + ":MONASTERY";
+            String existingOwner = objectOwners.get(objectKey);
+
+            if (existingOwner != null && !existingOwner.equals(player.getColor())) {
+                String otherPlayerName = getPlayerNameByColor(existingOwner);
+                String message = "Монастырь уже занят игроком " + otherPlayerName + "!";
+                log(message);
+                events.message(username, message);
+                return false;
+            }
+
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if (dx == 0 && dy == 0) continue;
+
+                    int nx = tile.getX() + dx;
+                    int ny = tile.getY() + dy;
+
+                    Tile neighbor = board.get(nx, ny);
+                    if (neighbor != null && neighbor.hasMeeple() &&
+                            neighbor.getMeepleType() != null &&
+                            neighbor.getMeepleType().equals("MONASTERY") &&
+                            !neighbor.getMeepleOwner().equals(player.getColor())) {
+
+                        String otherPlayerName = getPlayerNameByColor(neighbor.getMeepleOwner());
+                        String message = "Рядом уже есть монастырь игрока " + otherPlayerName + "!";
+                        log(message);
+                        events.message(username, message);
+                        return false;
+                    }
+                }
+            }
+
+            setMeeple(tile, player.getColor());
+            claimObject(objectKey, player.getColor());
+            player.useMeeple();
+
+            log("Мипл успешно поставлен на монастырь");
+            events.chat(username + " поставил мипла на монастырь");
+
+            // Монастырь лег в окружение из 8 плиток - завершен сразу
+            if (regions.neighbors(tile) == FeatureRegions.MONASTERY_COMPLETE) {
+                completeMonastery(tile);
+            }
+
+        } else if (tileType.equals("CITY")) {
+            log("ОБРАБОТКА ГОРОДА ");
+
+            if ("tile-n.png".equals(fileName)) {
+                log("Обработка tile-n.png как города");
+
+                FeatureRegions.Region city = regions.city(tile);
+                boolean isConnectedToOther = city != null && city.tiles > 1;
+                if (isConnectedToOther) {
+                    log("tile-n.png уже соединен с другим tile-n.png!");
+                }
+
+                if (isConnectedToOther) {
+                    String message = "Эта городская плитка уже соединена с другой! Ждите завершения города.";
+                    log(message);
+                    events.message(username, message);
+                    return false;
+                }
+
+                setMeeple(tile, player.getColor());
+                String key = tile.getX() + "," + tile.getY() + ":CITY";
+                claimObject(key, player.getColor());
+                player.useMeeple();
+
+                events.chat(username + " поставил мипла на город ");
+
+            } else {
+                FeatureRegions.Region city = regions.city(tile);
+                int cityTiles = city == null ? 1 : city.tiles;
+                log("Найден город из " + cityTiles + " плиток");
+
+                // Проверяем, занят ли город другим игроком
+                String existingCityOwner = null;
+                boolean hasConflict = false;
+
+                for (String color : Tile.MEEPLE_COLORS) {
+                    if (city == null || city.meeples(color) == 0) continue;
+                    if (existingCityOwner == null) {
+                        existingCityOwner = color;
+                    } else {
+                        hasConflict = true;
+                        break;
+                    }
+                }
+
+                if (hasConflict) {
+                    String message = "Город уже частично занят другим игроком!";
+                    log(message);
+                    events.message(username, message);
+                    return false;
+                }
+
+                if (existingCityOwner != null && !existingCityOwner.equals(player.getColor())) {
+                    String otherPlayerName = getPlayerNameByColor(existingCityOwner);
+                    String message = "Город уже занят игроком " + otherPlayerName + "!";
+                    log(message);
+                    events.message(username, message);
+                    return false;
+                }
+
+                setMeeple(tile, player.getColor());
+                String key = tile.getX() + "," + tile.getY() + ":CITY";
+                claimObject(key, player.getColor());
+                player.useMeeple();
+
+                log("Мипл успешно поставлен на город");
+                events.chat(username + " поставил мипла на город (" + cityTiles + " плиток)");
+            }
+
+        } else {
+            // Неизвестный тип
+            String message = "Нельзя поставить мипла на эту плитку! Неизвестный тип: " + tileType;
+            log(message);
+            events.message(username, message);
+            return false;
+        }
+
+        // 9. Обновляем состояние и передаем ход
+        moveLog.meeple(turnOrder.indexOf(username));
+        scoresChanged();
+        events.boardChanged();
+
+        lastPlacedBy = null;
+        lastPlacedX = -1;
+        lastPlacedY = -1;
+
+        log("Ход завершен, передаем ход следующему игроку");
+        nextTurn();
+        return true;
+    }
+
+    public void skipTurn(String username) {
+        // До начала и после конца партии пропуск тянул бы плитки из колоды впустую
+        if (!gameStarted || gameEnded) return;
+
+        moveLog.skip(turnOrder.indexOf(username));
+        if (username.equals(lastPlacedBy)) {
+            lastPlacedBy = null;
+            lastPlacedX = -1;
+            lastPlacedY = -1;
+        }
+
+        events.chat(username + " пропустил ход");
+        nextTurn();
+    }
+
+    private void nextTurn() {
+        currentPlayerIndex = (currentPlayerIndex + 1) % turnOrder.size();
+
+        if (!deck.isEmpty()) {
+            drawTileForPlayer(turnOrder.get(currentPlayerIndex));
+        } else {
+            endGame("Колода пуста!");
+        }
+    }
+
+    public void endGame(String reason) {
+        if (gameEnded) return;
+        gameEnded = true;
+        moveLog.end(reason);
+
+        finalScores = calculateFinalScores();
+        String winnerMessage = determineWinner();
+        String finalMessage = "ИГРА ОКОНЧЕНА \n" + reason + "\n\n" + winnerMessage;
+
+        events.gameEnded(reason, finalMessage);
+    }
+
+    // Разбор считает ScoringEngine, здесь он только применяется - по порядку наград,
+    // поэтому чат и возврат миплов идут как раньше: дороги, города, монастыри по обходу поля
+    ScoreBreakdown calculateFinalScores() {
+
+        Map<String, Integer> initialScores = new HashMap<>();
+        for (Player player : playerInfo.values()) {
+            initialScores.put(player.getName(), player.getScore());
+            log(player.getName() + " начальные очки: " + player.getScore());
+        }
+
+        ScoreBreakdown breakdown = scoring.score(board, regions);
+        for (ScoreBreakdown.Award award : breakdown.awards()) {
+            applyAward(award);
+        }
+
+        log("ИТОГОВЫЕ ОЧКИ ");
+        for (Player player : playerInfo.values()) {
+            int initial = initialScores.get(player.getName());
+            int added = player.getScore() - initial;
+            log(player.getName() + ": " + initial + " + " + added + " = " + player.getScore());
+            scoreChanged(player.getName());
+        }
+        return breakdown;
+    }
+
+    private void applyAward(ScoreBreakdown.Award award) {
+        String status = award.completed ? "Завершенный город" : "Незавершенный город";
+        if (award.alreadyScored) {
+            events.chat("Завершенный город (tile-n.png) уже учтен ранее");
+            return;
+        }
+        if (award.owners.isEmpty()) {
+            events.chat(status + " (" + award.size + " плиток): нет миплов → 0 очков");
+            return;
+        }
+
+        for (String color : award.owners) {
+            Player player = getPlayerByColor(color);
+            if (player == null) continue;
+
+            player.addScore(award.points);
+            log(award.feature + " из " + award.size + ": " + player.getName() + " +" + award.points
+                    + (award.forkBonus > 0 ? " (развилок " + award.forkBonus + ")" : ""));
+            switch (award.feature) {
+                case ROAD:
+                    events.chat("Дорога (" + award.size + " плиток): " +
+                            player.getName() + " +" + award.points + " очков");
+                    break;
+                case CITY:
+                    events.chat(status + (award.shared ? " (разделен): " : " (" + award.size + " плиток): ") +
+                            player.getName() + " +" + award.points + " очков");
+                    break;
+                case MONASTERY:
+                    events.chat("Монастырь (" + award.size + " соседей): " +
+                            player.getName() + " +" + award.points + " очков");
+                    break;
+            }
+
+            for (Tile tile : award.returned) {
+                if (color.equals(tile.getMeepleOwner())) {
+                    setMeeple(tile, null);
+                    player.returnMeeple();
+                }
+            }
+        }
+    }
+
+    List<Tile> findCompleteRoadSegment(int startX, int startY) {
+        return traversal.collect(startX, startY, ROAD_TILES, ROAD_EDGE);
+    }
+
+    private List<Tile> findCurrentRoadSegmentOnly(int startX, int startY) {
+        return traversal.collect(startX, startY, PLAIN_ROAD_TILES, COMPATIBLE_EDGE);
+    }
+
+    List<Tile> findConnectedCity(int startX, int startY) {
+        return traversal.collect(startX, startY, CITY_TILES, CITY_EDGE);
+    }
+
+
+    private String getPlacementOptionsMessage(Tile tile, String username) {
+        StringBuilder message = new StringBuilder();
+
+
+        String tileType;
+        String fileName = tile.getFileName();
+
+        if ("tile-n.png".equals(fileName)) {
+            tileType = "CITY";
+        } else if ("tile-l.png".equals(fileName)) {
+            tileType = "FORK"; // развилка
+        } else if ("tile-monastery.png".equals(fileName)) {
+            tileType = "MONASTERY";
+        } else {
+            tileType = tile.getType(); // для остальных плиток
+        }
+
+        message.append("Плитка размещена! Тип: ").append(tileType);
+
+        Player player = playerInfo.get(username);
+        if (player == null) {
+            return message.toString();
+        }
+
+        // ОБРАБОТКА РАЗНЫХ ТИПОВ ПЛИТОК
+        if ("tile-l.png".equals(fileName)) {
+            // РАЗВИЛКА - нельзя ставить мипла
+            message.append(" (развилка дорог). ");
+            message.append("На эту плитку нельзя ставить мипла. ");
+            message.append("Пропустите ход (S)");
+
+        } else if ("tile-n.png".equals(fileName)) {
+            message.append(" (часть города). ");
+
+            FeatureRegions.Region city = regions.city(tile);
+            boolean isConnectedToOther = city != null && city.tiles > 1;
+
+            if (isConnectedToOther) {
+                message.append("Эта плитка уже соединена с другой частью города! ");
+                message.append("Ждите завершения города для получения очков. ");
+                message.append("Пропустите ход (S)");
+            } else if (player.getMeeplesLeft() > 0) {
+                message.append("Вы можете поставить мипла на город (M) или пропустить ход (S)");
+            } else {
+                message.append("У вас не осталось миплов! Пропустите ход (S)");
+            }
+
+        } else if (tile.canPlaceMeeple()) {
+            // ПЛИТКИ, НА КОТОРЫЕ МОЖНО СТАВИТЬ МИПЛА
+
+            if (tileType.equals("ROAD")) {
+                message.append(" (дорога). ");
+
+                List<Tile> currentSegment = findCurrentRoadSegmentOnly(tile.getX(), tile.getY());
+
+                // Проверяем ТОЛЬКО текущий сегмент дороги
+                boolean roadOccupiedByOther = false;
+                String otherPlayerName = null;
+
+                for (Tile roadTile : currentSegment) {
+                    if (roadTile.hasMeeple() && !roadTile.getMeepleOwner().equals(player.getColor())) {
+                        roadOccupiedByOther = true;
+                        otherPlayerName = getPlayerNameByColor(roadTile.getMeepleOwner());
+                        break;
+                    }
+                }
+
+                if (roadOccupiedByOther) {
+                    message.append("НЕВОЗМОЖНО поставить мипл - эта часть дороги уже занята игроком ")
+                            .append(otherPlayerName)
+                            .append("! ");
+                    message.append("Пропустите ход (S)");
+
+                } else if (player.getMeeplesLeft() <= 0) {
+                    message.append("У вас не осталось миплов! Пропустите ход (S)");
+
+                } else {
+                    // Проверяем, нет ли уже своего мипла в этом сегменте
+                    boolean alreadyHasOwnMeeple = false;
+                    for (Tile roadTile : currentSegment) {
+                        if ("tile-l.png".equals(roadTile.getFileName())) {
+                            continue;
+                        }
+
+                        if (roadTile.hasMeeple() && roadTile.getMeepleOwner().equals(player.getColor())) {
+                            alreadyHasOwnMeeple = true;
+                            break;
+                        }
+                    }
+
+                    if (alreadyHasOwnMeeple) {
+                        message.append("Вы уже поставили мипла на эту часть дороги! ");
+                        message.append("Пропустите ход (S)");
+                    } else {
+                        // Считаем плитки дороги и развилки
+                        int roadTiles = 0;
+                        int forks = 0;
+                        for (Tile roadTile : currentSegment) {
+                            if ("tile-l.png".equals(roadTile.getFileName())) {
+                                forks++;
+                            } else {
+                                roadTiles++;
+                            }
+                        }
+
+                        // Проверяем, соединена ли дорога с развилкой
+                        boolean connectedToFork = false;
+
+                        for (int dir = 0; dir < 4; dir++) {
+                            int nx = tile.getX() + BoardTraversal.DX[dir];
+                            int ny = tile.getY() + BoardTraversal.DY[dir];
+
+                            Tile neighbor = board.get(nx, ny);
+                            if (neighbor != null && "tile-l.png".equals(neighbor.getFileName())) {
+                                char tileSide = tile.getSide(BoardTraversal.SIDES[dir]);
+                                char forkSide = neighbor.getSide(BoardTraversal.OPPOSITE[dir]);
+
+                                if (tileSide == 'S' && forkSide == 'S') {
+                                    connectedToFork = true;
+                                    break;
+                                }
+                            }
+                        }
+
+                        if (connectedToFork) {
+                            message.append("ЭТА ДОРОГА СОЕДИНЕНА С РАЗВИЛКОЙ! ");
+                        }
+
+                        message.append("Вы можете поставить мипла на дорогу (M) ");
+                        message.append("(").append(roadTiles).append(" плиток дороги");
+                        if (forks > 0) {
+                            message.append(", через ").append(forks).append(" развилок");
+                        }
+                        message.append(") или пропустить ход ");
+                    }
+                }
+
+            } else if (tileType.equals("MONASTERY")) {
+                // МОНАСТЫРЯ
+                message.append(" (монастырь). ");
+
+                // Проверяем, не занят ли уже этот монастырь
+                String objectKey = tile.getX() + "," + tile.getY() + ":MONASTERY";
+                String existingOwner = objectOwners.get(objectKey);
+
+                if (existingOwner != null && !existingOwner.equals(player.getColor())) {
+                    String otherPlayerName = getPlayerNameByColor(existingOwner);
+                    message.append("Монастырь уже занят игроком ").append(otherPlayerName).append("! ");
+                    message.append("Пропустите ход (S)");
+                } else if (player.getMeeplesLeft() <= 0) {
+                    message.append("У вас не осталось миплов! Пропустите ход (S)");
+                } else {
+                    // Проверяем соседние монастыри
+                    boolean hasNearbyMonastery = false;
+                    String nearbyPlayerName = null;
+
+                    for (int dx = -1; dx <= 1; dx++) {
+                        for (int dy = -1; dy <= 1; dy++) {
+                            if (dx == 0 && dy == 0) continue;
+
+                            int nx = tile.getX() + dx;
+                            int ny = tile.getY() + dy;
+
+                            Tile neighbor = board.get(nx, ny);
+                            if (neighbor != null && neighbor.hasMeeple() &&
+                                    neighbor.getMeepleType() != null &&
+                                    neighbor.getMeepleType().equals("MONASTERY") &&
+                                    !neighbor.getMeepleOwner().equals(player.getColor())) {
+
+                                hasNearbyMonastery = true;
+                                nearbyPlayerName = getPlayerNameByColor(neighbor.getMeepleOwner());
+                                break;
+                            }
+                        }
+                        if (hasNearbyMonastery) break;
+                    }
+
+                    if (hasNearbyMonastery) {
+                        message.append("Рядом уже есть монастырь игрока ").append(nearbyPlayerName).append("! ");
+                        message.append("Пропустите ход ");
+                    } else {
+                        message.append("Вы можете поставить мипла на монастырь  или пропустить ход ");
+                    }
+                }
+
+            } else if (tileType.equals("CITY")) {
+                //ОБРАБОТКА ГОРОДА
+                message.append(" (город). ");
+
+                if (player.getMeeplesLeft() <= 0) {
+                    message.append("У вас не осталось миплов! Пропустите ход (S)");
+                } else {
+                    FeatureRegions.Region city = regions.city(tile);
+                    int cityTiles = city == null ? 1 : city.tiles;
+
+                    // Проверяем, занят ли город другим игроком
+                    String existingCityOwner = null;
+                    boolean hasConflict = false;
+
+                    for (String color : Tile.MEEPLE_COLORS) {
+                        if (city == null || city.meeples(color) == 0) continue;
+                        if (existingCityOwner == null) {
+                            existingCityOwner = color;
+                        } else {
+                            hasConflict = true;
+                            break;
+                        }
+                    }
+
+                    if (hasConflict) {
+                        message.append("Город уже частично занят разными игроками! ");
+                        message.append("Пропустите ход ");
+                    } else if (existingCityOwner != null && !existingCityOwner.equals(player.getColor())) {
+                        String otherPlayerName = getPlayerNameByColor(existingCityOwner);
+                        message.append("Город уже занят игроком ").append(otherPlayerName).append("! ");
+                        message.append("Пропустите ход ");
+                    } else {
+                        message.append("Вы можете поставить мипла на город  ");
+                        message.append("(").append(cityTiles).append(" плиток) или пропустить ход ");
+                    }
+                }
+
+            } else {
+                // НЕИЗВЕСТНЫЙ ТИП
+                message.append(". Нельзя поставить мипла на эту плитку. Пропустите ход ");
+            }
+
+        } else {
+            // НЕЛЬЗЯ СТАВИТЬ МИПЛА
+            message.append(". Нельзя поставить мипла на эту плитку. Пропустите ход ");
+        }
+
+        return message.toString();
+    }
+
+
+    private void claimObject(String key, String color) {
+        String previous = objectOwners.put(key, color);
+        if (trail != null) {
+            trail.push(() -> {
+                if (previous == null) objectOwners.remove(key);
+                else objectOwners.put(key, previous);
+            });
+        }
+    }
+
+    // owner == null снимает мипла
+    private void setMeeple(Tile tile, String owner) {
+        String previousOwner = tile.getMeepleOwner();
+        int previousIndex = tile.getMeepleOwnerIndex();
+        tile.setMeeple(owner);
+        boardHash ^= ZobristHash.meeple(tile.getX(), tile.getY(), previousIndex)
+                ^ ZobristHash.meeple(tile.getX(), tile.getY(), tile.getMeepleOwnerIndex());
+        if (trail != null) {
+            trail.push(() -> tile.setMeepleOwnerIndex(previousIndex));
+        }
+        regions.meepleChanged(tile, previousOwner);
+        events.tileChanged(tile);
+    }
+
+    private String determineWinner() {
+        List<Player> playerList = new ArrayList<>(playerInfo.values());
+
+        if (playerList.size() == 1) {
+            return "Победитель: " + playerList.get(0).getName();
+        }
+
+        Player player1 = playerList.get(0);
+        Player player2 = playerList.get(1);
+
+        if (player1.getScore() > player2.getScore()) {
+            return "ПОБЕДИТЕЛЬ: " + player1.getName() + " (" + player1.getScore() + " очков)";
+        } else if (player2.getScore() > player1.getScore()) {
+            return "ПОБЕДИТЕЛЬ: " + player2.getName() + " (" + player2.getScore() + " очков)";
+        } else {
+            return "НИЧЬЯ! Оба игрока набрали " + player1.getScore() + " очков";
+        }
+    }
+
+    private Player getPlayerByColor(String color) {
+        for (Player player : playerInfo.values()) {
+            if (player.getColor().equals(color)) {
+                return player;
+            }
+        }
+        return null;
+    }
+
+    private String getPlayerNameByColor(String color) {
+        for (Player player : playerInfo.values()) {
+            if (player.getColor().equals(color)) {
+                return player.getName();
+            }
+        }
+        return "неизвестный игрок";
+    }
+
+    private void scoreChanged(String username) {
+        Player player = playerInfo.get(username);
+        if (player != null) {
+            events.scoreChanged(player);
+        }
+    }
+
+    private void scoresChanged() {
+        for (Player player : playerInfo.values()) {
+            events.scoreChanged(player);
+        }
+    }
+
+    private void log(String message) {
+        events.debug(message);
+    }
+
+    public MoveLog getMoveLog() {
+        return moveLog;
+    }
+
+    ScoreBreakdown getFinalScores() {
+        return finalScores;
+    }
+
+    void setScoring(ScoringEngine scoring) {
+        this.scoring = scoring;
+    }
+
+    public boolean isStarted() {
+        return gameStarted;
+    }
+
+    public boolean isEnded() {
+        return gameEnded;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    // Ключ позиции: для сверки поля с клиентами, таблиц транспозиций и поиска повторов в аналитике
+    public long getBoardHash() {
+        return boardHash;
+    }
+
+    // Игроки в порядке мест
+    public List<Player> getPlayers() {
+        List<Player> result = new ArrayList<>();
+        for (String username : turnOrder) {
+            result.add(playerInfo.get(username));
+        }
+        return result;
+    }
+
+    public Player getPlayer(String username) {
+        return playerInfo.get(username);
+    }
+
+    public int getDeckSize() {
+        return deck.size();
+    }
+
+    // Сколько плиток ушло в сброс: ни одна клетка поля им не подошла
+    public int getDiscardedTiles() {
+        return discardedTiles;
+    }
+
+    // Чей ход; до начала партии - первого места
+    public String getCurrentPlayer() {
+        return turnOrder.isEmpty() ? null : turnOrder.get(currentPlayerIndex);
+    }
+
+    // Плитка в руке игрока или null
+    public Tile getHand(String username) {
+        return playerTiles.get(username);
+    }
+
+    // Ход с заданным поворотом плитки в руке - так ходят повтор журнала и симуляция, без TILE_ROTATED
+    public boolean placeTile(String username, int x, int y, int rotation) {
+        Tile tile = playerTiles.get(username);
+        if (tile != null) {
+            tile.setRotation(rotation);
+        }
+        return placeTile(username, new int[]{x, y});
+    }
+
+    // Движок поиска бота: дальше каждое изменение пишется в журнал отката
+    void enableUndo() {
+        trail = new UndoTrail();
+        regions.setTrail(trail);
+        frontier.setTrail(trail);
+    }
+
+    // Отметка для undoTo. Счетчики, очки, руки и длина журнала ходов - O(игроков) - запоминаются целиком,
+    // поле, области, миплы и колода откатываются по журналу отката
+    int mark() {
+        if (trail == null) {
+            throw new IllegalStateException("Откат не включен");
+        }
+        int mark = trail.mark();
+
+        int savedPlayerIndex = currentPlayerIndex;
+        boolean savedEnded = gameEnded;
+        ScoreBreakdown savedFinalScores = finalScores;
+        int savedDiscarded = discardedTiles;
+        String savedLastPlacedBy = lastPlacedBy;
+        int savedLastX = lastPlacedX;
+        int savedLastY = lastPlacedY;
+        int savedMoves = moveLog.size();
+        long savedHash = boardHash;
+
+        List<Player> players = getPlayers();
+        int[] scores = new int[players.size()];
+        int[] meeples = new int[players.size()];
+        for (int i = 0; i < players.size(); i++) {
+            scores[i] = players.get(i).getScore();
+            meeples[i] = players.get(i).getMeeplesLeft();
+        }
+
+        Map<String, Tile> hands = new HashMap<>(playerTiles);
+        Map<Tile, Integer> rotations = new IdentityHashMap<>();
+        for (Tile tile : hands.values()) {
+            rotations.put(tile, tile.getRotation());
+        }
+
+        trail.push(() -> {
+            currentPlayerIndex = savedPlayerIndex;
+            gameEnded = savedEnded;
+            finalScores = savedFinalScores;
+            discardedTiles = savedDiscarded;
+            lastPlacedBy = savedLastPlacedBy;
+            lastPlacedX = savedLastX;
+            lastPlacedY = savedLastY;
+            moveLog.truncate(savedMoves);
+            boardHash = savedHash;
+            for (int i = 0; i < players.size(); i++) {
+                players.get(i).setScore(scores[i]);
+                players.get(i).setMeeplesLeft(meeples[i]);
+            }
+            playerTiles.clear();
+            playerTiles.putAll(hands);
+            rotations.forEach(Tile::setRotation);
+        });
+        return mark;
+    }
+
+    // Возвращает движок к состоянию на момент mark()
+    void undoTo(int mark) {
+        trail.undoTo(mark);
+    }
+
+    // Определизация для поиска: бот не знает порядка колоды, поэтому перед каждой симуляцией
+    // оставшиеся плитки тасуются заново. Вызывается вне отметок - откат возвращает набор плиток, а не порядок
+    void shuffleDeck(Random shuffle) {
+        Collections.shuffle(deck, shuffle);
+    }
+
+    // Синтетические поля для бенчмарков (src/jmh): без рассылок и проверок правил
+    void putTile(Tile tile) {
+        placeOnBoard(tile);
+    }
+
+    void putMeeple(Tile tile, String owner) {
+        setMeeple(tile, owner);
+    }
+
+    FeatureRegions getRegions() {
+        return regions;
+    }
+
+    void putPlayer(Player player) {
+        playerInfo.put(player.getName(), player);
+    }
+}
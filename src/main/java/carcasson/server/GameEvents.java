@@ -0,0 +1,52 @@
+package carcasson.server;
+
+import carcasson.common.LegalPlacements;
+import carcasson.common.Player;
+import carcasson.common.Tile;
+
+// Всё, что движок правил сообщает наружу. Вызывается на потоке движка, синхронно
+public interface GameEvents {
+    // Сообщение в общий чат
+    void chat(String text);
+
+    // Личное сообщение игроку
+    void message(String username, String text);
+
+    // Игрок получил плитку или повернул её
+    void tileDrawn(String username, Tile tile);
+
+    void legalPlacements(String username, LegalPlacements placements);
+
+    void turn(String username);
+
+    // Стартовая плитка лежит на поле, первая плитка еще не выдана
+    void gameStarted();
+
+    // Плитка на поле появилась или у неё сменился мипл
+    void tileChanged(Tile tile);
+
+    // Пачка изменений поля закончена - пора рассылать
+    void boardChanged();
+
+    void scoreChanged(Player player);
+
+    void gameEnded(String reason, String finalMessage);
+
+    // Отладочный вывод правил
+    void debug(String text);
+
+    // Ничего не делает; симуляция и повтор журнала переопределяют только нужное
+    class Silent implements GameEvents {
+        @Override public void chat(String text) { }
+        @Override public void message(String username, String text) { }
+        @Override public void tileDrawn(String username, Tile tile) { }
+        @Override public void legalPlacements(String username, LegalPlacements placements) { }
+        @Override public void turn(String username) { }
+        @Override public void gameStarted() { }
+        @Override public void tileChanged(Tile tile) { }
+        @Override public void boardChanged() { }
+        @Override public void scoreChanged(Player player) { }
+        @Override public void gameEnded(String reason, String finalMessage) { }
+        @Override public void debug(String text) { }
+    }
+}
@@ -5,45 +5,58 @@ import java.net.*;
 import java.util.*;
 
 public class GameServer {
-    private ServerSocket serverSocket;
+    public static final int PORT = 8888;
+
+    public enum Transport {
+        NIO,        // селектор и по I/O-потоку на ядро
+        VIRTUAL     // блокирующие ClientHandler на виртуальных потоках
+    }
+
     private List<ClientHandler> clients = new ArrayList<>();
-    private GameRoom gameRoom;
+    private RoomRegistry rooms;
+    private Transport transport;
 
     public GameServer() {
-        this.gameRoom = new GameRoom();
+        this(Transport.NIO);
+    }
+
+    public GameServer(Transport transport) {
+        this.transport = transport;
+        this.rooms = new RoomRegistry(Runtime.getRuntime().availableProcessors());
     }
 
     public void start() {
         try {
-            serverSocket = new ServerSocket(8888);
-            System.out.println("Сервер запущен на порту 1972");
+            System.out.println("Сервер запущен на порту " + PORT);
             System.out.println("IP адрес: " + InetAddress.getLocalHost().getHostAddress());
 
-            while (true) {
-                Socket clientSocket = serverSocket.accept();
-                System.out.println("Новое подключение: " + clientSocket.getInetAddress());
-
-                ClientHandler clientHandler = new ClientHandler(clientSocket, this);
-                clients.add(clientHandler);
-                new Thread(clientHandler).start();
+            BackpressurePolicy policy = BackpressurePolicy.fromSystemProperties();
+            if (transport == Transport.VIRTUAL) {
+                new BlockingTransport(this, PORT, policy).start();
+            } else {
+                new NioTransport(this, PORT, Runtime.getRuntime().availableProcessors(), policy).start();
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    public synchronized void addClient(ClientHandler client) {
+        clients.add(client);
+    }
+
     public synchronized void removeClient(ClientHandler client) {
         clients.remove(client);
         String username = client.getUsername();
         System.out.println("Клиент отключен" + (username != null ? ": " + username : " (не авторизован)"));
 
-        // Если игра идет и отключился игрок, завершаем игру
-        if (username != null && gameRoom.getPlayerCount() >= 2) {
-            gameRoom.endGame("Игра завершена: игрок " + username + " отключился");
+        GameRoom room = client.getRoom();
+        if (room != null) {
+            room.execute(() -> room.playerDisconnected(client));
         }
     }
 
-    public GameRoom getGameRoom() {
-        return gameRoom;
+    public RoomRegistry getRooms() {
+        return rooms;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,273 @@
+package carcasson.server;
+
+import carcasson.common.Board;
+import carcasson.common.LegalPlacements;
+import carcasson.common.Player;
+import carcasson.common.Tile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+// Бот на поиске по дереву Монте-Карло. Каждый поток поиска поднимает свой движок из копии журнала партии
+// и строит своё дерево; в конце деревья складываются по посещениям ходов корня. Порядок колоды бот
+// не знает: перед каждой симуляцией оставшиеся плитки тасуются, а после неё движок откатывается
+// к корню по журналу отката - за число изменений, без копирования поля.
+// Ход бота - плитка (клетка и поворот) вместе с решением о мипле
+final class MctsBot {
+    static final String NAME_PREFIX = "MCTS-";
+
+    // Общий пул поиска для всех комнат: по потоку на ядро
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    // Коэффициент исследования UCB1 для выигрышей в [0, 1]
+    private static final double EXPLORATION = 0.7;
+    // Доля миплов в случайном доигрывании - как у ботов нагрузочного теста
+    private static final double ROLLOUT_MEEPLE_RATE = 0.3;
+    private static final int MAX_ROLLOUT_COMMANDS = 1_000;
+    // Нет хода: упакованный ход лежит в [-2^34, 2^34) и с ним не совпадает
+    private static final long NO_ACTION = Long.MIN_VALUE;
+
+    private MctsBot() {
+    }
+
+    static boolean isBotName(String username) {
+        return username != null && username.startsWith(NAME_PREFIX);
+    }
+
+    static final class Decision {
+        final int x;
+        final int y;
+        final int rotation;
+        final boolean meeple;
+        // Симуляций за ход во всех потоках
+        final long iterations;
+
+        Decision(int x, int y, int rotation, boolean meeple, long iterations) {
+            this.x = x;
+            this.y = y;
+            this.rotation = rotation;
+            this.meeple = meeple;
+            this.iterations = iterations;
+        }
+    }
+
+    // Ищет ход игрока username по журналу партии, где сейчас его ход. Журнал - копия: комната
+    // тем временем продолжает работу. Результат приходит на потоке пула не позже бюджета плюс одна симуляция
+    static CompletableFuture<Decision> decide(MoveLog log, String username, long budgetMillis, long seed) {
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        int workers = POOL.getParallelism();
+
+        List<CompletableFuture<Search>> searches = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            Search search = new Search(log, username, seed + i * 0x9E3779B97F4A7C15L);
+            searches.add(CompletableFuture.supplyAsync(() -> search.run(deadline), POOL));
+        }
+
+        return CompletableFuture.allOf(searches.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> merge(searches));
+    }
+
+    private static Decision merge(List<CompletableFuture<Search>> searches) {
+        Map<Long, Long> visits = new HashMap<>();
+        long iterations = 0;
+        for (CompletableFuture<Search> future : searches) {
+            Search search = future.join();
+            iterations += search.iterations;
+            for (Map.Entry<Long, Node> child : search.root.children.entrySet()) {
+                visits.merge(child.getKey(), (long) child.getValue().visits, Long::sum);
+            }
+        }
+
+        long best = NO_ACTION;
+        long bestVisits = -1;
+        for (Map.Entry<Long, Long> entry : visits.entrySet()) {
+            if (entry.getValue() > bestVisits) {
+                best = entry.getKey();
+                bestVisits = entry.getValue();
+            }
+        }
+        if (best == NO_ACTION) return null;
+        return new Decision(actionX(best), actionY(best), actionRotation(best), actionMeeple(best), iterations);
+    }
+
+    // Ход упакован в long: клетка - Board.key (весь диапазон координат поля без обрезки),
+    // над ней 2 бита поворота и бит мипла
+    private static long action(int x, int y, int rotation, boolean meeple) {
+        if (!Board.inRange(x, y)) {
+            throw new IllegalArgumentException("Клетка вне поля: (" + x + "," + y + ")");
+        }
+        return (long) Board.key(x, y) << 3 | rotation << 1 | (meeple ? 1 : 0);
+    }
+
+    private static int actionX(long action) { return (int) (action >> 3) >> 16; }
+    private static int actionY(long action) { return (short) (action >> 3); }
+    private static int actionRotation(long action) { return (int) (action >>> 1) & 3; }
+    private static boolean actionMeeple(long action) { return (action & 1) != 0; }
+
+    // Узел дерева - ход, сделанный игроком seat. Дерево открытое: дети - ходы, а не состояния,
+    // поэтому разные раздачи плиток делят одну статистику
+    private static final class Node {
+        final int seat;
+        final Map<Long, Node> children = new HashMap<>();
+        int visits;
+        double wins;
+
+        Node(int seat) {
+            this.seat = seat;
+        }
+    }
+
+    // Один поток поиска: свой движок, свое дерево, свой генератор
+    private static final class Search {
+        private final MoveLog log;
+        private final String username;
+        private final Random random;
+        private final Node root = new Node(-1);
+        private long iterations;
+
+        private GameEngine engine;
+        private int botSeat;
+
+        Search(MoveLog log, String username, long seed) {
+            this.log = log;
+            this.username = username;
+            this.random = new Random(seed);
+        }
+
+        Search run(long deadline) {
+            engine = ReplayEngine.replay(log, -1);
+            engine.enableUndo();
+            botSeat = log.getPlayers().indexOf(username);
+            if (engine.isEnded() || !username.equals(engine.getCurrentPlayer())) {
+                return this;
+            }
+
+            do {
+                iterate();
+            } while (System.nanoTime() < deadline);
+            return this;
+        }
+
+        private void iterate() {
+            engine.shuffleDeck(random);
+            int mark = engine.mark();
+
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            boolean expanded = false;
+            while (!expanded && !engine.isEnded()) {
+                String current = engine.getCurrentPlayer();
+                int seat = log.getPlayers().indexOf(current);
+                long action = select(node, current);
+                if (action == NO_ACTION) {
+                    engine.skipTurn(current);
+                    continue;
+                }
+
+                Node child = node.children.get(action);
+                if (child == null) {
+                    child = new Node(seat);
+                    node.children.put(action, child);
+                    expanded = true;
+                }
+                play(current, action);
+                path.add(child);
+                node = child;
+            }
+
+            rollout();
+            double result = result();
+            for (Node visited : path) {
+                visited.visits++;
+                visited.wins += visited.seat == botSeat ? result : 1 - result;
+            }
+            root.visits++;
+            iterations++;
+            engine.undoTo(mark);
+        }
+
+        // Непробованный ход, если он есть (случайный из них), иначе лучший по UCB1; NO_ACTION - ходить некуда
+        private long select(Node node, String current) {
+            Tile hand = engine.getHand(current);
+            if (hand == null) return NO_ACTION;
+            LegalPlacements placements = engine.findLegalPlacements(hand);
+            boolean meepleOption = hand.canPlaceMeeple() && engine.getPlayer(current).getMeeplesLeft() > 0;
+
+            long untried = NO_ACTION;
+            int untriedCount = 0;
+            long best = NO_ACTION;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            double logVisits = Math.log(Math.max(1, node.visits));
+
+            for (int i = 0; i < placements.size(); i++) {
+                for (int meeple = 0; meeple < (meepleOption ? 2 : 1); meeple++) {
+                    long action = action(placements.getX(i), placements.getY(i), placements.getRotation(i), meeple == 1);
+                    Node child = node.children.get(action);
+                    if (child == null) {
+                        if (random.nextInt(++untriedCount) == 0) {
+                            untried = action;
+                        }
+                        continue;
+                    }
+                    double score = child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        best = action;
+                    }
+                }
+            }
+            return untried != NO_ACTION ? untried : best;
+        }
+
+        private void play(String current, long action) {
+            if (!engine.placeTile(current, actionX(action), actionY(action), actionRotation(action))) {
+                engine.skipTurn(current);
+                return;
+            }
+            if (!actionMeeple(action) || !engine.placeMeeple(current)) {
+                engine.skipTurn(current);
+            }
+        }
+
+        // Доигрывание случайными ходами до конца колоды
+        private void rollout() {
+            for (int commands = 0; !engine.isEnded(); commands++) {
+                String current = engine.getCurrentPlayer();
+                if (commands >= MAX_ROLLOUT_COMMANDS) {
+                    engine.endGame("Превышен предел команд");
+                    return;
+                }
+
+                Tile hand = engine.getHand(current);
+                if (hand == null) {
+                    engine.skipTurn(current);
+                    continue;
+                }
+                LegalPlacements placements = engine.findLegalPlacements(hand);
+                int i = random.nextInt(placements.size());
+                if (!engine.placeTile(current, placements.getX(i), placements.getY(i), placements.getRotation(i))) {
+                    engine.skipTurn(current);
+                    continue;
+                }
+
+                Player player = engine.getPlayer(current);
+                boolean meeple = hand.canPlaceMeeple() && player.getMeeplesLeft() > 0
+                        && random.nextDouble() < ROLLOUT_MEEPLE_RATE;
+                if (!meeple || !engine.placeMeeple(current)) {
+                    engine.skipTurn(current);
+                }
+            }
+        }
+
+        // Победа бота - 1, ничья - 0.5, поражение - 0
+        private double result() {
+            List<Player> players = engine.getPlayers();
+            int own = players.get(botSeat).getScore();
+            int other = players.get(1 - botSeat).getScore();
+            return own > other ? 1 : own == other ? 0.5 : 0;
+        }
+    }
+}
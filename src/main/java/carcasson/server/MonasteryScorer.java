@@ -0,0 +1,36 @@
+package carcasson.server;
+
+import carcasson.common.Board;
+import carcasson.common.Tile;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Монастыри с миплом: очко за сам монастырь и по очку за каждого соседа в квадрате 3x3.
+// Соседей считает FeatureRegions по ходу партии, поэтому поле не обходится: перебираются только
+// монастыри, а завершенные к концу партии уже без миплов
+final class MonasteryScorer implements FeatureScorer<Tile> {
+    // Порядок прежнего обхода поля - от него зависит порядок сообщений в чате
+    private static final Comparator<Tile> SCAN_ORDER =
+            Comparator.comparingInt(Tile::getX).thenComparingInt(Tile::getY);
+
+    @Override
+    public List<Tile> collect(Tile[] scanOrder, FeatureRegions regions) {
+        List<Tile> active = new ArrayList<>();
+        for (Tile monastery : regions.monasteries()) {
+            if (monastery.hasMeeple()) {
+                active.add(monastery);
+            }
+        }
+        active.sort(SCAN_ORDER);
+        return active;
+    }
+
+    @Override
+    public ScoreBreakdown.Award score(Tile monastery, Board board, FeatureRegions regions) {
+        int neighbors = regions.neighbors(monastery);
+        return new ScoreBreakdown.Award(ScoreBreakdown.Feature.MONASTERY, neighbors,
+                neighbors == FeatureRegions.MONASTERY_COMPLETE, false, false,
+                List.of(monastery.getMeepleOwner()), 1 + neighbors, List.of(), List.of(monastery));
+    }
+}
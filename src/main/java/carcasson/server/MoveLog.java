@@ -0,0 +1,303 @@
+package carcasson.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Журнал партии: зерно колоды, игроки по местам и принятые комнатой команды в порядке выполнения.
+// Только дописывается. Отклоненные команды состояние не меняют и в журнал не попадают,
+// поэтому зерна и команд хватает, чтобы ReplayEngine восстановил партию на любом ходу
+public final class MoveLog {
+    public enum Kind { PLACE, MEEPLE, SKIP, END }
+
+    // Получает каждую команду сразу после записи в журнал, на потоке комнаты
+    interface Listener {
+        void appended(Move move);
+    }
+
+    public static final class Move {
+        final Kind kind;
+        final int seat;
+        final int x;
+        final int y;
+        final int rotation;
+        final String reason;
+
+        private Move(Kind kind, int seat, int x, int y, int rotation, String reason) {
+            this.kind = kind;
+            this.seat = seat;
+            this.x = x;
+            this.y = y;
+            this.rotation = rotation;
+            this.reason = reason;
+        }
+
+        public Kind getKind() { return kind; }
+        public int getSeat() { return seat; }
+        public int getX() { return x; }
+        public int getY() { return y; }
+        public int getRotation() { return rotation; }
+        public String getReason() { return reason; }
+
+        // Строка текстового формата; причина окончания - до конца строки, экранированная
+        @Override
+        public String toString() {
+            switch (kind) {
+                case PLACE: return "place " + seat + " " + x + " " + y + " " + rotation;
+                case MEEPLE: return "meeple " + seat;
+                case SKIP: return "skip " + seat;
+                default: return "end " + escape(reason);
+            }
+        }
+
+        // Двоичный формат для WriteAheadLog: вид, место, затем координаты с поворотом или причина
+        void writeTo(DataOutput out) throws IOException {
+            out.writeByte(kind.ordinal());
+            out.writeByte(seat);
+            if (kind == Kind.PLACE) {
+                out.writeShort(x);
+                out.writeShort(y);
+                out.writeByte(rotation);
+            } else if (kind == Kind.END) {
+                out.writeUTF(reason);
+            }
+        }
+
+        static Move readFrom(DataInput in) throws IOException {
+            Kind kind = Kind.values()[in.readByte()];
+            int seat = in.readByte();
+            if (kind == Kind.PLACE) {
+                return new Move(kind, seat, in.readShort(), in.readShort(), in.readByte(), null);
+            }
+            return new Move(kind, seat, 0, 0, 0, kind == Kind.END ? in.readUTF() : null);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Move && toString().equals(other.toString());
+        }
+
+        @Override
+        public int hashCode() {
+            return toString().hashCode();
+        }
+    }
+
+    private final long seed;
+    private final List<String> players = new ArrayList<>();
+    private final List<Move> moves = new ArrayList<>();
+    private boolean ended = false;
+    private Listener listener;
+
+    public MoveLog(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    void addPlayer(String username) {
+        players.add(username);
+    }
+
+    public List<String> getPlayers() {
+        return Collections.unmodifiableList(players);
+    }
+
+    void place(int seat, int x, int y, int rotation) {
+        append(new Move(Kind.PLACE, seat, x, y, rotation, null));
+    }
+
+    void meeple(int seat) {
+        append(new Move(Kind.MEEPLE, seat, 0, 0, 0, null));
+    }
+
+    void skip(int seat) {
+        append(new Move(Kind.SKIP, seat, 0, 0, 0, null));
+    }
+
+    void end(String reason) {
+        append(new Move(Kind.END, -1, 0, 0, 0, reason));
+    }
+
+    // После END журнал закрыт: команды, дошедшие до закрытой комнаты, на итог уже не влияют
+    void append(Move move) {
+        if (ended) return;
+        moves.add(move);
+        if (move.kind == Kind.END) {
+            ended = true;
+        }
+        if (listener != null) {
+            listener.appended(move);
+        }
+    }
+
+    // Откат поиска бота: журнал снова кончается на команде size - 1. Слушателю не сообщается,
+    // у движков поиска его нет
+    void truncate(int size) {
+        while (moves.size() > size) {
+            moves.remove(moves.size() - 1);
+        }
+        ended = !moves.isEmpty() && moves.get(moves.size() - 1).kind == Kind.END;
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    MoveLog copy() {
+        MoveLog copy = new MoveLog(seed);
+        copy.players.addAll(players);
+        copy.moves.addAll(moves);
+        copy.ended = ended;
+        return copy;
+    }
+
+    public Move get(int index) {
+        return moves.get(index);
+    }
+
+    public int size() {
+        return moves.size();
+    }
+
+    public boolean isEnded() {
+        return ended;
+    }
+
+    // Совпадение зерна, игроков и всех команд - так проверяется детерминизм повтора
+    public boolean sameAs(MoveLog other) {
+        return seed == other.seed && players.equals(other.players) && moves.equals(other.moves);
+    }
+
+    // Двоичный снимок всей партии: зерно, игроки, команды
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(seed);
+        out.writeByte(players.size());
+        for (String player : players) {
+            out.writeUTF(player);
+        }
+        out.writeInt(moves.size());
+        for (Move move : moves) {
+            move.writeTo(out);
+        }
+    }
+
+    static MoveLog readFrom(DataInput in) throws IOException {
+        MoveLog log = new MoveLog(in.readLong());
+        int playerCount = in.readByte();
+        for (int i = 0; i < playerCount; i++) {
+            log.addPlayer(in.readUTF());
+        }
+        int moveCount = in.readInt();
+        if (moveCount < 0) {
+            throw new IOException("Некорректное число команд: " + moveCount);
+        }
+        for (int i = 0; i < moveCount; i++) {
+            log.append(Move.readFrom(in));
+        }
+        return log;
+    }
+
+    // Текстовый формат: "seed N", строки "player имя" по местам, затем по команде на строку.
+    // Имена и причина окончания идут до конца строки; перевод строки и обратная косая черта в них экранируются
+    public void write(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("seed " + seed);
+            writer.newLine();
+            for (String player : players) {
+                writer.write("player " + escape(player));
+                writer.newLine();
+            }
+            for (Move move : moves) {
+                writer.write(move.toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    public static MoveLog read(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith("seed ")) {
+                throw new IOException("Журнал должен начинаться с зерна: " + path);
+            }
+            MoveLog log = new MoveLog(Long.parseLong(line.substring(5).trim()));
+
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) continue;
+                try {
+                    parse(log, line);
+                } catch (RuntimeException e) {
+                    throw new IOException("Строка " + lineNumber + " журнала не разобрана: " + line, e);
+                }
+            }
+            return log;
+        }
+    }
+
+    private static void parse(MoveLog log, String line) {
+        int space = line.indexOf(' ');
+        String command = space < 0 ? line : line.substring(0, space);
+        String rest = space < 0 ? "" : line.substring(space + 1);
+        String[] args = rest.split(" ");
+
+        switch (command) {
+            case "player": log.addPlayer(unescape(rest)); break;
+            case "place":
+                log.place(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                        Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+                break;
+            case "meeple": log.meeple(Integer.parseInt(args[0])); break;
+            case "skip": log.skip(Integer.parseInt(args[0])); break;
+            case "end": log.end(unescape(rest)); break;
+            default: throw new IllegalArgumentException("Неизвестная команда: " + command);
+        }
+    }
+
+    private static String escape(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static String unescape(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            if (++i == text.length()) {
+                throw new IllegalArgumentException("Обрыв экранирования в конце строки");
+            }
+            switch (text.charAt(i)) {
+                case '\\': out.append('\\'); break;
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                default: throw new IllegalArgumentException("Неизвестное экранирование: \\" + text.charAt(i));
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,203 @@
+package carcasson.server;
+
+import carcasson.common.GameMessage;
+import carcasson.common.MessageCodec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Соединение на селекторе: чтение и запись выполняются только в I/O-потоке своего IoLoop,
+// send() из любого потока лишь ставит кадр в очередь, а накопленная пачка уходит одной gathering-записью
+public class NioConnection implements Connection {
+    private static final int INITIAL_READ_BUFFER = 8 * 1024;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final NioTransport.IoLoop loop;
+    private final ClientHandler handler;
+    private final String remoteAddress;
+
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+    private final OutboundQueue outbound;
+    private final List<byte[]> batch = new ArrayList<>();
+    private ByteBuffer[] inFlight;
+    private int inFlightIndex;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile boolean closing = false;
+
+    NioConnection(SocketChannel channel, SelectionKey key, NioTransport.IoLoop loop, ClientHandler handler,
+                  BackpressurePolicy policy) {
+        this.outbound = new OutboundQueue(policy);
+        this.channel = channel;
+        this.key = key;
+        this.loop = loop;
+        this.handler = handler;
+        this.remoteAddress = String.valueOf(channel.socket().getRemoteSocketAddress());
+    }
+
+    @Override
+    public void send(byte[] frame) {
+        if (closed.get() || closing) return;
+        if (!outbound.offer(frame)) {
+            loop.execute(this::disconnectLagging);
+            return;
+        }
+        scheduleFlush();
+    }
+
+    @Override
+    public void close() {
+        closing = true;
+        outbound.close();
+        scheduleFlush();
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    void onReadable() {
+        try {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                doClose();
+                return;
+            }
+
+            readBuffer.flip();
+            while (readBuffer.remaining() >= MessageCodec.HEADER_SIZE) {
+                int length = readBuffer.getInt(readBuffer.position());
+                MessageCodec.checkLength(length);
+
+                int frameSize = MessageCodec.HEADER_SIZE + length;
+                if (readBuffer.remaining() < frameSize) {
+                    if (readBuffer.capacity() < frameSize) {
+                        ByteBuffer bigger = ByteBuffer.allocate(frameSize);
+                        bigger.put(readBuffer);
+                        readBuffer = bigger;
+                        return;
+                    }
+                    break;
+                }
+
+                int offset = readBuffer.arrayOffset() + readBuffer.position() + MessageCodec.HEADER_SIZE;
+                GameMessage message = MessageCodec.decode(readBuffer.array(), offset, length);
+                readBuffer.position(readBuffer.position() + frameSize);
+                dispatch(message);
+            }
+            readBuffer.compact();
+        } catch (IOException e) {
+            System.out.println("Ошибка соединения с " + handler.getUsername() + ": " + e.getMessage());
+            doClose();
+        }
+    }
+
+    private void dispatch(GameMessage message) {
+        try {
+            handler.onMessage(message);
+        } catch (RuntimeException e) {
+            // Ошибка в логике комнаты не должна останавливать I/O-поток
+            e.printStackTrace();
+        }
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    private void flush() {
+        if (closed.get()) return;
+        try {
+            while (true) {
+                if (inFlight == null) {
+                    batch.clear();
+                    if (!outbound.drainTo(batch)) break;
+
+                    inFlight = new ByteBuffer[batch.size()];
+                    for (int i = 0; i < inFlight.length; i++) {
+                        inFlight[i] = ByteBuffer.wrap(batch.get(i));
+                    }
+                    inFlightIndex = 0;
+                }
+
+                long written = channel.write(inFlight, inFlightIndex, inFlight.length - inFlightIndex);
+                if (outbound.written((int) written)) {
+                    handler.requestResync();
+                }
+                if (outbound.isLagging()) {
+                    disconnectLagging();
+                    return;
+                }
+                while (inFlightIndex < inFlight.length && !inFlight[inFlightIndex].hasRemaining()) {
+                    inFlightIndex++;
+                }
+                if (inFlightIndex < inFlight.length) {
+                    // Сокет не принял всё - допишем, когда станет доступен для записи
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                inFlight = null;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+
+            if (closing) {
+                doClose();
+            }
+        } catch (IOException e) {
+            System.out.println("Ошибка отправки для " + handler.getUsername() + ": " + e.getMessage());
+            doClose();
+        }
+    }
+
+    // Периодическая проверка из IoLoop: клиент, который перестал читать, не вызывает ни записи, ни send()
+    void checkLag() {
+        if (!closed.get() && outbound.isLagging()) {
+            disconnectLagging();
+        }
+    }
+
+    private void disconnectLagging() {
+        System.out.println("Клиент " + handler.getUsername() + " не успевает принимать данные, отключаем");
+        doClose();
+    }
+
+    // Непредвиденная ошибка на потоке селектора
+    void fail(RuntimeException e) {
+        System.out.println("Ошибка соединения с " + handler.getUsername() + ", закрываем: " + e);
+        e.printStackTrace();
+        try {
+            doClose();
+        } catch (RuntimeException again) {
+            System.out.println("Ошибка при закрытии соединения: " + again);
+        }
+    }
+
+    private void doClose() {
+        if (!closed.compareAndSet(false, true)) return;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        outbound.close();
+        outbound.clear();
+        inFlight = null;
+        handler.onDisconnect();
+    }
+}
@@ -0,0 +1,164 @@
+package carcasson.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Неблокирующий транспорт: один поток принимает соединения,
+// несколько I/O-потоков (по числу ядер) обслуживают их через Selector
+public class NioTransport {
+    private final GameServer server;
+    private final int port;
+    private final IoLoop[] loops;
+    private final BackpressurePolicy policy;
+    private ServerSocketChannel serverChannel;
+    private int nextLoop = 0;
+
+    public NioTransport(GameServer server, int port, int ioThreads, BackpressurePolicy policy) {
+        this.server = server;
+        this.policy = policy;
+        this.port = port;
+        this.loops = new IoLoop[Math.max(1, ioThreads)];
+    }
+
+    public void start() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop(Selector.open(), policy);
+            Thread thread = new Thread(loops[i], "nio-io-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        System.out.println("NIO-транспорт: " + loops.length + " I/O потоков");
+
+        while (serverChannel.isOpen()) {
+            SocketChannel channel = serverChannel.accept();
+            // Клиент, отвалившийся сразу после accept, закрывается сам и не останавливает прием остальных
+            try {
+                System.out.println("Новое подключение: " + channel.getRemoteAddress());
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+            } catch (IOException e) {
+                System.out.println("Не удалось настроить соединение: " + e.getMessage());
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                continue;
+            }
+
+            ClientHandler handler = new ClientHandler(server);
+            server.addClient(handler);
+
+            IoLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            loop.register(channel, handler);
+        }
+    }
+
+    static class IoLoop implements Runnable {
+        // Как часто проверяются отставшие клиенты
+        private static final long LAG_CHECK_MILLIS = 1000;
+
+        private final Selector selector;
+        private final BackpressurePolicy policy;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private long nextLagCheck = System.currentTimeMillis() + LAG_CHECK_MILLIS;
+
+        IoLoop(Selector selector, BackpressurePolicy policy) {
+            this.selector = selector;
+            this.policy = policy;
+        }
+
+        void register(SocketChannel channel, ClientHandler handler) {
+            execute(() -> {
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    NioConnection connection = new NioConnection(channel, key, this, handler, policy);
+                    key.attach(connection);
+                    handler.setConnection(connection);
+                } catch (IOException e) {
+                    System.out.println("Не удалось зарегистрировать соединение: " + e.getMessage());
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                    }
+                    handler.onDisconnect();
+                }
+            });
+        }
+
+        // Все операции с ключами выполняются только в потоке селектора
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (selector.isOpen()) {
+                try {
+                    selector.select(LAG_CHECK_MILLIS);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return;
+                }
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        System.out.println("Ошибка задачи в потоке селектора: " + e);
+                        e.printStackTrace();
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (connection == null || !key.isValid()) continue;
+
+                    // Ошибка одного соединения (битый кадр, ошибка обработчика) закрывает только его,
+                    // а не единственный поток селектора со всеми остальными
+                    try {
+                        if (key.isReadable()) {
+                            connection.onReadable();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    } catch (RuntimeException e) {
+                        connection.fail(e);
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if (now >= nextLagCheck) {
+                    nextLagCheck = now + LAG_CHECK_MILLIS;
+                    checkLaggingConnections();
+                }
+            }
+        }
+
+        private void checkLaggingConnections() {
+            for (SelectionKey key : selector.keys()) {
+                NioConnection connection = (NioConnection) key.attachment();
+                if (connection == null || !key.isValid()) continue;
+                try {
+                    connection.checkLag();
+                } catch (RuntimeException e) {
+                    connection.fail(e);
+                }
+            }
+        }
+    }
+}
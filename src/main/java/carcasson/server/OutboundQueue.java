@@ -0,0 +1,176 @@
+package carcasson.server;
+
+import carcasson.common.MessageCodec;
+import carcasson.common.MessageType;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Исходящая очередь одного соединения. Две полосы: игровые сообщения уходят раньше чата,
+// писатель забирает всё накопленное разом и отправляет одной записью.
+// Неотправленные байты считаются до фактической записи в сокет (written), по ним работают пороги:
+// выше верхнего промежуточные состояния поля выбрасываются и заменяются одним свежим снимком,
+// а клиент, застрявший выше порога дольше maxLagMillis, отключается
+public class OutboundQueue {
+    private static final int OPCODE_OFFSET = MessageCodec.HEADER_SIZE;
+    private static final byte CHAT_OPCODE = MessageType.CHAT_MESSAGE.opcode();
+    private static final byte STATE_OPCODE = MessageType.GAME_STATE.opcode();
+    private static final byte DELTA_OPCODE = MessageType.GAME_STATE_DELTA.opcode();
+
+    private final BackpressurePolicy policy;
+    private final ArrayDeque<byte[]> gameLane = new ArrayDeque<>();
+    private final ArrayDeque<byte[]> chatLane = new ArrayDeque<>();
+    // ReentrantLock, а не synchronized: писатель на виртуальном потоке не закрепляет носитель
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private boolean closed = false;
+
+    private long backlogBytes = 0;
+    private long overloadedSince = 0;
+    private boolean boardStale = false;
+
+    public OutboundQueue(BackpressurePolicy policy) {
+        this.policy = policy;
+    }
+
+    // false - очередь закрыта или клиент безнадежно отстал, соединение нужно закрыть
+    public boolean offer(byte[] frame) {
+        lock.lock();
+        try {
+            if (closed) return false;
+
+            byte opcode = frame[OPCODE_OFFSET];
+            if (overloadedSince != 0) {
+                if (laggingLocked()) return false;
+                if (opcode == DELTA_OPCODE || opcode == STATE_OPCODE) {
+                    dropQueuedBoardFrames();
+                    boardStale = true;
+                    return true;
+                }
+            } else if (boardStale) {
+                // Ждем свежий снимок: дельты к устаревшей версии клиенту бесполезны
+                if (opcode == DELTA_OPCODE) return true;
+                if (opcode == STATE_OPCODE) boardStale = false;
+            }
+
+            if (gameLane.size() + chatLane.size() >= policy.getMaxFrames()) {
+                return false;
+            }
+
+            if (opcode == CHAT_OPCODE) {
+                chatLane.add(frame);
+            } else {
+                gameLane.add(frame);
+            }
+            backlogBytes += frame.length;
+            if (overloadedSince == 0 && backlogBytes > policy.getHighWatermark()) {
+                overloadedSince = System.currentTimeMillis();
+            }
+
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dropQueuedBoardFrames() {
+        Iterator<byte[]> it = gameLane.iterator();
+        while (it.hasNext()) {
+            byte[] frame = it.next();
+            byte opcode = frame[OPCODE_OFFSET];
+            if (opcode == DELTA_OPCODE || opcode == STATE_OPCODE) {
+                it.remove();
+                backlogBytes -= frame.length;
+            }
+        }
+    }
+
+    // Писатель сообщает, сколько байт реально ушло в сокет.
+    // true - клиент догнал после перегрузки и ему нужно выслать свежий снимок поля
+    public boolean written(int bytes) {
+        lock.lock();
+        try {
+            backlogBytes = Math.max(0, backlogBytes - bytes);
+            if (overloadedSince != 0 && backlogBytes < policy.getLowWatermark()) {
+                overloadedSince = 0;
+                return boardStale;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Клиент выше верхнего порога дольше maxLagMillis. Проверяется и при записи, и периодически:
+    // клиент, переставший читать в тихой комнате, новых кадров может и не получить
+    public boolean isLagging() {
+        lock.lock();
+        try {
+            return laggingLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean laggingLocked() {
+        return overloadedSince != 0 && System.currentTimeMillis() - overloadedSince > policy.getMaxLagMillis();
+    }
+
+    // Забирает все кадры без ожидания; false, если забирать нечего
+    public boolean drainTo(List<byte[]> batch) {
+        lock.lock();
+        try {
+            return drainLocked(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ждет хотя бы один кадр; false - очередь закрыта и уже пуста
+    public boolean awaitAndDrain(List<byte[]> batch) throws InterruptedException {
+        lock.lock();
+        try {
+            while (gameLane.isEmpty() && chatLane.isEmpty()) {
+                if (closed) return false;
+                notEmpty.await();
+            }
+            return drainLocked(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean drainLocked(List<byte[]> batch) {
+        if (gameLane.isEmpty() && chatLane.isEmpty()) return false;
+        batch.addAll(gameLane);
+        batch.addAll(chatLane);
+        gameLane.clear();
+        chatLane.clear();
+        return true;
+    }
+
+    // Новые кадры больше не принимаются, уже поставленные будут дописаны
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            gameLane.clear();
+            chatLane.clear();
+            backlogBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package carcasson.server;
+
+import carcasson.common.Player;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Повтор партии по журналу: движок с тем же зерном получает те же команды и проходит
+// через те же правила. События отбрасываются, так что повтор идет со скоростью самих правил.
+// Пример: java -cp target/classes carcasson.server.ReplayEngine replays/room-12.log 20
+public final class ReplayEngine {
+
+    private ReplayEngine() {
+    }
+
+    // Состояние после первых moves команд журнала; moves < 0 - вся партия
+    public static GameEngine replay(MoveLog log, int moves) {
+        GameEngine engine = new GameEngine(log.getSeed(), new GameEvents.Silent());
+        replayInto(engine, log, moves);
+        return engine;
+    }
+
+    // Проигрывает журнал в свежем движке, созданном с тем же зерном
+    static void replayInto(GameEngine engine, MoveLog log, int moves) {
+        List<String> players = log.getPlayers();
+        for (int seat = 0; seat < players.size(); seat++) {
+            engine.addPlayer("replay-" + seat, players.get(seat));
+        }
+        engine.startGame();
+
+        int count = moves < 0 ? log.size() : Math.min(moves, log.size());
+        for (int i = 0; i < count; i++) {
+            apply(engine, log, log.get(i));
+        }
+    }
+
+    private static void apply(GameEngine engine, MoveLog log, MoveLog.Move move) {
+        String username = move.seat >= 0 ? log.getPlayers().get(move.seat) : null;
+        switch (move.kind) {
+            case PLACE: engine.placeTile(username, move.x, move.y, move.rotation); break;
+            case MEEPLE: engine.placeMeeple(username); break;
+            case SKIP: engine.skipTurn(username); break;
+            case END: engine.endGame(move.reason); break;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Использование: ReplayEngine <журнал> [число команд]");
+            return;
+        }
+
+        Path path = Paths.get(args[0]);
+        MoveLog log = MoveLog.read(path);
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : -1;
+
+        long started = System.nanoTime();
+        GameEngine engine = replay(log, moves);
+        long micros = (System.nanoTime() - started) / 1000;
+
+        int applied = moves < 0 ? log.size() : Math.min(moves, log.size());
+        System.out.println("Журнал " + path + ": зерно " + log.getSeed() + ", команд " + log.size());
+        System.out.println("Повторено " + applied + " команд за " + micros + " мкс");
+        System.out.println("Плиток на поле: " + engine.getBoard().size() + ", в колоде: " + engine.getDeckSize());
+        for (Player player : engine.getPlayers()) {
+            System.out.println(player.getName() + " (" + player.getColor() + "): " + player.getScore()
+                    + " очков, миплов осталось " + player.getMeeplesLeft());
+        }
+
+        // Повтор пишет свой журнал: на всей партии он обязан совпасть с исходным
+        if (applied == log.size()) {
+            System.out.println(engine.getMoveLog().sameAs(log)
+                    ? "Повтор совпал с журналом"
+                    : "РАСХОЖДЕНИЕ: повтор записал другой журнал");
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package carcasson.server;
+
+import carcasson.common.Board;
+import carcasson.common.Tile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+// Дороги: весь сегмент получает первый владелец - игрок, раньше всех поставивший на него мипла;
+// возвращаются только его миплы. Развилка засчитывается одному сегменту - первому по обходу поля
+final class RoadScorer implements FeatureScorer<FeatureRegions.Region> {
+
+    @Override
+    public List<FeatureRegions.Region> collect(Tile[] scanOrder, FeatureRegions regions) {
+        Set<FeatureRegions.Region> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<FeatureRegions.Region> segments = new ArrayList<>();
+        for (Tile tile : scanOrder) {
+            FeatureRegions.Region segment = regions.road(tile);
+            if (segment != null && seen.add(segment)) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    @Override
+    public ScoreBreakdown.Award score(FeatureRegions.Region segment, Board board, FeatureRegions regions) {
+        String owner = segment.firstOwner();
+        if (owner == null) return null;
+
+        List<Tile> returned = new ArrayList<>();
+        for (Tile tile : segment.meepleTiles) {
+            if (tile.getMeepleOwner().equals(owner)) returned.add(tile);
+        }
+        return new ScoreBreakdown.Award(ScoreBreakdown.Feature.ROAD, segment.tiles, segment.isClosed(),
+                false, false, List.of(owner), segment.tiles, new ArrayList<>(segment.forks), returned);
+    }
+
+    @Override
+    public void finish(List<ScoreBreakdown.Award> awards) {
+        Set<Tile> countedForks = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ScoreBreakdown.Award award : awards) {
+            for (Tile fork : award.forks) {
+                if (countedForks.add(fork)) award.forkBonus++;
+            }
+            award.points += award.forkBonus;
+        }
+    }
+
+    // Снимет ли подсчет дорог мипла с плитки: да, если он принадлежит первому владельцу её сегмента.
+    // Дороги считаются раньше городов, и такие миплы город уже не видит
+    static boolean returnedByRoad(Tile tile, FeatureRegions regions) {
+        FeatureRegions.Region segment = regions.road(tile);
+        return segment != null && tile.getMeepleOwner().equals(segment.firstOwner());
+    }
+}
@@ -0,0 +1,248 @@
+package carcasson.server;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Реестр комнат, разбитый на шарды. Каждый шард владеет своим рабочим потоком,
+// и все команды комнат шарда выполняются на нём - комната не прыгает между ядрами
+public class RoomRegistry {
+    // Сколько ждать игроков восстановленной партии, прежде чем закрыть её
+    private static final long RESUME_TIMEOUT_MINUTES = 10;
+    static final long DEFAULT_BOT_BUDGET_MILLIS = 1000;
+
+    private final Shard[] shards;
+    private final AtomicLong nextRoomId = new AtomicLong(1);
+    private final Queue<GameRoom> openRooms = new ConcurrentLinkedQueue<>();
+    // Куда сохранять журналы сыгранных партий; null - не сохранять
+    private volatile Path replayDir;
+    private volatile WriteAheadLog wal;
+    // Игроки восстановленных после перезапуска партий: имя -> комнаты, куда он вернется, в порядке номеров.
+    // Очередь меняется только внутри compute по своему имени
+    private final Map<String, Deque<GameRoom>> resumable = new ConcurrentHashMap<>();
+    // Сколько новая комната ждет второго игрока, прежде чем посадить бота; < 0 - боты выключены
+    private volatile long botWaitMillis = -1;
+    private volatile long botBudgetMillis = DEFAULT_BOT_BUDGET_MILLIS;
+
+    public RoomRegistry(int shardCount) {
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    // Подбирает комнату со свободным местом и сразу бронирует его
+    public GameRoom reserveSeat() {
+        for (GameRoom room : openRooms) {
+            if (room.tryReserveSeat()) {
+                if (!room.hasFreeSeat()) {
+                    openRooms.remove(room);
+                }
+                return room;
+            }
+            openRooms.remove(room);
+        }
+
+        GameRoom room = createRoom();
+        room.tryReserveSeat();
+        openRooms.add(room);
+        scheduleBot(room);
+        return room;
+    }
+
+    // Боты занимают места в комнатах, где второй игрок не пришел за waitMillis; budgetMillis - время на ход
+    public void enableBots(long waitMillis, long budgetMillis) {
+        this.botBudgetMillis = budgetMillis;
+        this.botWaitMillis = waitMillis;
+    }
+
+    long getBotBudgetMillis() {
+        return botBudgetMillis;
+    }
+
+    private void scheduleBot(GameRoom room) {
+        long wait = botWaitMillis;
+        if (wait < 0) return;
+        CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS)
+                .execute(() -> room.execute(() -> seatBot(room)));
+    }
+
+    // На потоке комнаты: если в ней всё еще один человек, второе место получает бот
+    private void seatBot(GameRoom room) {
+        if (room.getPlayerCount() != 1 || room.isGameStarted() || !room.tryReserveSeat()) return;
+
+        openRooms.remove(room);
+        if (!room.addBot(MctsBot.NAME_PREFIX + room.getId())) {
+            seatReleased(room);
+        }
+    }
+
+    // Место снова свободно (игрок ушёл до начала игры)
+    void seatReleased(GameRoom room) {
+        if (room.tryClose()) {
+            retire(room);
+        } else if (!openRooms.contains(room)) {
+            openRooms.add(room);
+        }
+    }
+
+    private GameRoom createRoom() {
+        long id = nextRoomId.getAndIncrement();
+        Shard shard = shardFor(id);
+        GameRoom room = new GameRoom(id, this, shard.worker);
+        shard.rooms.put(id, room);
+        System.out.println("Создана комната #" + id + " (шард " + shard.index + ")");
+        return room;
+    }
+
+    public GameRoom find(long roomId) {
+        return shardFor(roomId).rooms.get(roomId);
+    }
+
+    public void retire(GameRoom room) {
+        room.close();
+        openRooms.remove(room);
+        if (shardFor(room.getId()).rooms.remove(room.getId()) != null) {
+            System.out.println("Комната #" + room.getId() + " закрыта, активных комнат: " + getRoomCount());
+            saveMoveLog(room);
+        }
+        if (!resumable.isEmpty()) {
+            for (String username : resumable.keySet()) {
+                resumable.computeIfPresent(username, (name, rooms) -> {
+                    rooms.remove(room);
+                    return rooms.isEmpty() ? null : rooms;
+                });
+            }
+        }
+    }
+
+    // Включает журнал предзаписи и поднимает незавершенные партии из прошлого запуска
+    public void enableWal(Path dir) throws IOException {
+        WriteAheadLog wal = WriteAheadLog.open(dir, WriteAheadLog.DEFAULT_SEGMENT_SIZE);
+        // По номерам комнат: в этом порядке игрок вернется в свои партии, если их несколько
+        for (Map.Entry<Long, MoveLog> entry : new TreeMap<>(wal.recovered()).entrySet()) {
+            restoreRoom(wal, entry.getKey(), entry.getValue());
+        }
+        this.wal = wal;
+        System.out.println("Журнал предзаписи: " + dir + ", восстановлено партий: " + getRoomCount());
+    }
+
+    public void closeWal() {
+        WriteAheadLog wal = this.wal;
+        if (wal != null) {
+            wal.close();
+        }
+    }
+
+    // Партия началась: её журнал с этого момента дублируется в журнал предзаписи
+    void gameStarted(GameRoom room) {
+        WriteAheadLog wal = this.wal;
+        if (wal == null) return;
+
+        long roomId = room.getId();
+        wal.roomStarted(roomId, room.getMoveLog());
+        room.getMoveLog().setListener(move -> wal.append(roomId, move));
+    }
+
+    private void restoreRoom(WriteAheadLog wal, long roomId, MoveLog log) {
+        nextRoomId.accumulateAndGet(roomId + 1, Math::max);
+        Shard shard = shardFor(roomId);
+        GameRoom room = new GameRoom(roomId, this, shard.worker, log.getSeed());
+        room.restore(log);
+        if (!room.getMoveLog().sameAs(log)) {
+            System.out.println("Комната #" + roomId + " не восстановлена: повтор разошелся с журналом");
+            wal.discard(roomId);
+            return;
+        }
+
+        room.getMoveLog().setListener(move -> wal.append(roomId, move));
+        shard.rooms.put(roomId, room);
+        for (String username : log.getPlayers()) {
+            if (!MctsBot.isBotName(username)) {
+                resumable.compute(username, (name, rooms) -> {
+                    if (rooms == null) {
+                        rooms = new ArrayDeque<>();
+                    } else {
+                        System.out.println("Игрока " + name + " ждут несколько восстановленных партий: комната #"
+                                + roomId + " после " + rooms.size() + " других, он вернется в них по очереди");
+                    }
+                    rooms.add(room);
+                    return rooms;
+                });
+            }
+        }
+        CompletableFuture.delayedExecutor(RESUME_TIMEOUT_MINUTES, TimeUnit.MINUTES)
+                .execute(() -> room.execute(room::expireIfAbandoned));
+        System.out.println("Комната #" + roomId + " восстановлена: " + log.size() + " команд, ждем игроков "
+                + log.getPlayers());
+    }
+
+    // Комната, где игрока с таким именем ждут после перезапуска, или null. Если таких несколько,
+    // выдается первая, а следующая ждет его нового подключения
+    GameRoom claimResume(String username) {
+        if (resumable.isEmpty()) return null;
+        GameRoom[] claimed = new GameRoom[1];
+        resumable.computeIfPresent(username, (name, rooms) -> {
+            claimed[0] = rooms.poll();
+            return rooms.isEmpty() ? null : rooms;
+        });
+        return claimed[0];
+    }
+
+    public void setReplayDir(Path replayDir) {
+        this.replayDir = replayDir;
+    }
+
+    // Журнал партии - несколько сотен байт, пишется на потоке шарда при закрытии комнаты
+    private void saveMoveLog(GameRoom room) {
+        Path dir = replayDir;
+        if (dir == null || !room.isGameStarted()) return;
+
+        Path path = dir.resolve("room-" + room.getId() + ".log");
+        try {
+            Files.createDirectories(dir);
+            room.getMoveLog().write(path);
+        } catch (IOException e) {
+            System.out.println("Не удалось сохранить журнал комнаты #" + room.getId() + ": " + e.getMessage());
+        }
+    }
+
+    public int getRoomCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.rooms.size();
+        }
+        return count;
+    }
+
+    private Shard shardFor(long roomId) {
+        return shards[(int) (roomId % shards.length)];
+    }
+
+    private static class Shard {
+        final int index;
+        final Map<Long, GameRoom> rooms = new ConcurrentHashMap<>();
+        final ExecutorService worker;
+
+        Shard(int index) {
+            this.index = index;
+            this.worker = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "room-worker-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package carcasson.server;
+
+import carcasson.common.Tile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Итог финального подсчета: награды в порядке начисления - дороги, города, монастыри,
+// внутри признака по обходу поля. Цвета, а не игроки: имена подставляет движок
+final class ScoreBreakdown {
+    enum Feature { ROAD, CITY, MONASTERY }
+
+    static final class Award {
+        final Feature feature;
+        // Плиток в области; для монастыря - соседей
+        final int size;
+        final boolean completed;
+        // Завершенный город уже получил очки по ходу партии
+        final boolean alreadyScored;
+        // Ничья в городе: очки делятся между всеми владельцами
+        final boolean shared;
+        // Цвета получателей; каждый получает points
+        final List<String> owners;
+        int points;
+        // Развилки дороги и сколько из них засчитано именно ей
+        final List<Tile> forks;
+        int forkBonus;
+        // Плитки, с которых владельцам возвращаются миплы
+        final List<Tile> returned;
+
+        Award(Feature feature, int size, boolean completed, boolean alreadyScored, boolean shared,
+              List<String> owners, int points, List<Tile> forks, List<Tile> returned) {
+            this.feature = feature;
+            this.size = size;
+            this.completed = completed;
+            this.alreadyScored = alreadyScored;
+            this.shared = shared;
+            this.owners = owners;
+            this.points = points;
+            this.forks = forks;
+            this.returned = returned;
+        }
+    }
+
+    private final List<Award> awards = new ArrayList<>();
+
+    void addAll(List<Award> featureAwards) {
+        awards.addAll(featureAwards);
+    }
+
+    List<Award> awards() {
+        return Collections.unmodifiableList(awards);
+    }
+
+    // Сколько очков подсчет дает цвету
+    int total(String color) {
+        int total = 0;
+        for (Award award : awards) {
+            if (award.owners.contains(color)) total += award.points;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,9 @@
+package carcasson.server;
+
+import carcasson.common.Board;
+
+// Финальный подсчет очков: по полю и областям возвращает разбор - кто, за что и сколько получает
+// и с каких плиток снимаются миплы. Сам ничего не меняет; разбор применяет GameEngine на своем потоке
+interface ScoringEngine {
+    ScoreBreakdown score(Board board, FeatureRegions regions);
+}
@@ -1,11 +1,45 @@
 package carcasson.server;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public class ServerMain {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         System.out.println("Порт: 1972");
         System.out.println("Ожидание подключения 2 игроков...");
 
-        GameServer server = new GameServer();
+        // --transport=virtual включает блокирующий режим на виртуальных потоках
+        // --replay-dir=путь сохраняет журналы сыгранных партий для ReplayEngine
+        // --wal-dir=путь пишет команды в журнал предзаписи и при старте поднимает незавершенные партии
+        // --bot-wait=мс сажает бота в комнату, где второй игрок не пришел за это время; --bot-budget=мс - время бота на ход
+        GameServer.Transport transport = GameServer.Transport.NIO;
+        Path replayDir = null;
+        Path walDir = null;
+        long botWait = -1;
+        long botBudget = RoomRegistry.DEFAULT_BOT_BUDGET_MILLIS;
+        for (String arg : args) {
+            if (arg.startsWith("--transport=")) {
+                transport = GameServer.Transport.valueOf(arg.substring("--transport=".length()).toUpperCase());
+            } else if (arg.startsWith("--replay-dir=")) {
+                replayDir = Paths.get(arg.substring("--replay-dir=".length()));
+            } else if (arg.startsWith("--wal-dir=")) {
+                walDir = Paths.get(arg.substring("--wal-dir=".length()));
+            } else if (arg.startsWith("--bot-wait=")) {
+                botWait = Long.parseLong(arg.substring("--bot-wait=".length()));
+            } else if (arg.startsWith("--bot-budget=")) {
+                botBudget = Long.parseLong(arg.substring("--bot-budget=".length()));
+            }
+        }
+
+        GameServer server = new GameServer(transport);
+        server.getRooms().setReplayDir(replayDir);
+        server.getRooms().enableBots(botWait, botBudget);
+        if (walDir != null) {
+            RoomRegistry rooms = server.getRooms();
+            rooms.enableWal(walDir);
+            Runtime.getRuntime().addShutdownHook(new Thread(rooms::closeWal, "wal-shutdown"));
+        }
         server.start();
     }
 }
\ No newline at end of file
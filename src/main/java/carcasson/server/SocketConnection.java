@@ -0,0 +1,110 @@
+package carcasson.server;
+
+import carcasson.common.MessageCodec;
+import java.io.*;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Блокирующее соединение для режима виртуальных потоков: run() читает кадры,
+// отдельный писатель разбирает исходящую очередь, поэтому send() никогда не блокируется на сокете
+public class SocketConnection implements Connection, Runnable {
+    private final Socket socket;
+    private final ClientHandler handler;
+    private final ExecutorService executor;
+    private final String remoteAddress;
+    private final OutboundQueue outbound;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    public SocketConnection(Socket socket, ClientHandler handler, ExecutorService executor,
+                            BackpressurePolicy policy) {
+        this.outbound = new OutboundQueue(policy);
+        this.socket = socket;
+        this.handler = handler;
+        this.executor = executor;
+        this.remoteAddress = String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    @Override
+    public void send(byte[] frame) {
+        if (closed.get()) return;
+        if (!outbound.offer(frame)) {
+            System.out.println("Клиент " + handler.getUsername() + " не успевает принимать данные, отключаем");
+            doClose();
+        }
+    }
+
+    @Override
+    public void close() {
+        outbound.close();
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public void run() {
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            executor.execute(this::writeLoop);
+
+            while (!socket.isClosed()) {
+                handler.onMessage(MessageCodec.readFrame(in));
+            }
+        } catch (IOException e) {
+            System.out.println("Ошибка соединения с " + handler.getUsername() + ": " + e.getMessage());
+        } finally {
+            doClose();
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            List<byte[]> batch = new ArrayList<>();
+
+            // Всё, что успело накопиться, уходит одним flush
+            while (outbound.awaitAndDrain(batch)) {
+                int bytes = 0;
+                for (byte[] frame : batch) {
+                    out.write(frame);
+                    bytes += frame.length;
+                }
+                out.flush();
+                batch.clear();
+
+                if (outbound.written(bytes)) {
+                    handler.requestResync();
+                }
+                // Отставание проверяется и здесь: в тихой комнате send() может больше не вызываться
+                if (outbound.isLagging()) {
+                    System.out.println("Клиент " + handler.getUsername() + " не успевает принимать данные, отключаем");
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Ошибка отправки для " + handler.getUsername() + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            doClose();
+        }
+    }
+
+    private void doClose() {
+        if (!closed.compareAndSet(false, true)) return;
+        outbound.close();
+        outbound.clear();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        handler.onDisconnect();
+    }
+}
@@ -0,0 +1,30 @@
+package carcasson.server;
+
+import java.util.Arrays;
+
+// Журнал отката: каждое изменение состояния кладет сюда действие, которое его отменяет.
+// Откат к отметке выполняет действия в обратном порядке, так что цена - число изменений
+// с момента отметки, а не размер поля. Включается только в движках поиска бота
+final class UndoTrail {
+    private Runnable[] entries = new Runnable[256];
+    private int size;
+
+    void push(Runnable undo) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        entries[size++] = undo;
+    }
+
+    int mark() {
+        return size;
+    }
+
+    void undoTo(int mark) {
+        while (size > mark) {
+            Runnable undo = entries[--size];
+            entries[size] = null;
+            undo.run();
+        }
+    }
+}
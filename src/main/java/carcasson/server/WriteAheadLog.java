@@ -0,0 +1,494 @@
+package carcasson.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Журнал предзаписи команд всех комнат. Файлы-сегменты фиксированного размера отображены в память:
+// запись команды - копирование байтов под коротким замком, без системных вызовов. Сбрасывает их на диск
+// отдельный поток: один force() покрывает все записи, накопившиеся с прошлого сброса (групповая фиксация),
+// поэтому ход игрока диска не ждет. Падение процесса данные не теряет - страницы уже в кэше ОС;
+// при отключении питания теряются последние миллисекунды.
+//
+// Запись: [длина тела][CRC32 тела][тело: тип, id комнаты, данные]. Снимок комнаты - её MoveLog целиком:
+// по зерну и командам правила восстанавливают поле, колоду и очки. Когда сегмент заполнен, запись сразу
+// переходит в новый, заранее созданный и отображенный потоком сброса, а отдельный поток переписывает туда
+// снимки живых комнат - по одной, кодируя снимок вне замка, так что ходы других комнат ротацию не ждут.
+// Когда снимки всех комнат сброшены на диск, сегменты старше начала прохода удаляются
+final class WriteAheadLog {
+    static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+    private static final int MIN_SEGMENT_SIZE = 64 << 10;
+    private static final int HEADER_SIZE = 8;
+    private static final long COMMIT_INTERVAL_MILLIS = 2;
+
+    private static final byte RECORD_ROOM = 1;
+    private static final byte RECORD_MOVE = 2;
+    // Комната снята без конца партии (повтор разошелся с журналом): при чтении забывается
+    private static final byte RECORD_DISCARD = 3;
+
+    private static final class Segment {
+        final long number;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int position;
+
+        Segment(long number, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path dir;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+
+    // Копии журналов живых комнат - из них пишутся снимки. Меняются только под замком журнала
+    private final Map<Long, MoveLog> rooms = new HashMap<>();
+    private Map<Long, MoveLog> recovered = Collections.emptyMap();
+
+    private Segment current;
+    // Следующий сегмент, заранее созданный и отображенный потоком сброса: ротация на потоке комнаты
+    // не создает файл и не ждет mmap под замком
+    private Segment spare;
+    private long nextSegment;
+    // Заполненные сегменты, которые поток сброса еще не сбросил на диск
+    private final List<Segment> sealed = new ArrayList<>();
+    private long oldestSegment;
+    // Сегменты с меньшими номерами не нужны, как только снимки, записанные после них, окажутся на диске
+    private long snapshotBase;
+    private boolean dirty;
+    private boolean closed;
+    // Сегмент заполнен - потоку снимков пора пройти по комнатам
+    private boolean snapshotRequested;
+    private final Thread forcer;
+    private final Thread snapshotter;
+
+    private WriteAheadLog(Path dir, int segmentSize) {
+        this.dir = dir;
+        this.segmentSize = Math.max(MIN_SEGMENT_SIZE, segmentSize);
+        this.forcer = new Thread(this::forceLoop, "wal-force");
+        this.forcer.setDaemon(true);
+        this.snapshotter = new Thread(this::snapshotLoop, "wal-snapshot");
+        this.snapshotter.setDaemon(true);
+    }
+
+    // Читает все сегменты каталога, затем начинает новый со снимков восстановленных комнат
+    static WriteAheadLog open(Path dir, int segmentSize) throws IOException {
+        Files.createDirectories(dir);
+        WriteAheadLog wal = new WriteAheadLog(dir, segmentSize);
+
+        List<Long> numbers = wal.listSegments();
+        for (long number : numbers) {
+            wal.replaySegment(number);
+        }
+        wal.oldestSegment = numbers.isEmpty() ? 0 : numbers.get(0);
+        wal.recovered = new LinkedHashMap<>();
+        for (Map.Entry<Long, MoveLog> entry : wal.rooms.entrySet()) {
+            wal.recovered.put(entry.getKey(), entry.getValue().copy());
+        }
+
+        synchronized (wal) {
+            wal.snapshotAll(numbers.isEmpty() ? 0 : numbers.get(numbers.size() - 1) + 1);
+        }
+        wal.forcer.start();
+        wal.snapshotter.start();
+        return wal;
+    }
+
+    // Незавершенные партии на момент остановки: id комнаты -> журнал
+    Map<Long, MoveLog> recovered() {
+        return recovered;
+    }
+
+    void roomStarted(long roomId, MoveLog log) {
+        byte[] data = encodeRoom(log);
+        synchronized (this) {
+            if (closed) return;
+            rooms.put(roomId, log.copy());
+            write(RECORD_ROOM, roomId, data);
+        }
+    }
+
+    void append(long roomId, MoveLog.Move move) {
+        byte[] data = encodeMove(move);
+        synchronized (this) {
+            if (closed) return;
+            MoveLog log = rooms.get(roomId);
+            if (log == null) return;
+
+            write(RECORD_MOVE, roomId, data);
+            log.append(move);
+            if (log.isEnded()) {
+                rooms.remove(roomId);
+            }
+        }
+    }
+
+    // Снимает комнату с журнала: снимки в новые сегменты её больше не переносят,
+    // а следующий запуск её не восстанавливает
+    void discard(long roomId) {
+        synchronized (this) {
+            if (closed) return;
+            if (rooms.remove(roomId) != null) {
+                write(RECORD_DISCARD, roomId, new byte[0]);
+            }
+        }
+    }
+
+    // Последний сброс на диск и остановка потока сброса
+    void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            dirty = true;
+            notifyAll();
+        }
+        try {
+            snapshotter.join();
+            forcer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(byte type, long roomId, byte[] data) {
+        int length = HEADER_SIZE + 9 + data.length;
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Запись больше сегмента журнала: " + length);
+        }
+        if (current.position + length > segmentSize) {
+            rotate();
+            snapshotRequested = true;
+            notifyAll();
+        }
+        put(current, type, roomId, data);
+    }
+
+    // При открытии журнала: новый сегмент начинается со снимков всех восстановленных комнат.
+    // Замок здесь никто не ждет, поэтому снимки пишутся сразу
+    private void snapshotAll(long number) {
+        nextSegment = number;
+        rotate();
+        for (Map.Entry<Long, MoveLog> entry : rooms.entrySet()) {
+            byte[] data = encodeRoom(entry.getValue());
+            if (current.position + HEADER_SIZE + 9 + data.length > segmentSize) {
+                rotate();
+            }
+            put(current, RECORD_ROOM, entry.getKey(), data);
+        }
+        snapshotBase = number;
+        dirty = true;
+        notifyAll();
+    }
+
+    // Переход в следующий сегмент. Если поток сброса не успел подготовить запасной,
+    // сегмент создается здесь же, под замком
+    private void rotate() {
+        if (current != null) {
+            sealed.add(current);
+        }
+        if (spare != null) {
+            current = spare;
+            spare = null;
+            return;
+        }
+        long number = nextSegment++;
+        try {
+            current = createSegment(number);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось создать сегмент журнала " + number, e);
+        }
+    }
+
+    private Segment createSegment(long number) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new Segment(number, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    // Готовит запасной сегмент вне замка. Номер берется под замком; если ротация тем временем
+    // создала сегмент сама, подготовленный оказывается старше текущего и удаляется
+    private void prepareSpare() {
+        long number;
+        synchronized (this) {
+            if (spare != null || closed) return;
+            number = nextSegment++;
+        }
+
+        Segment segment;
+        try {
+            segment = createSegment(number);
+        } catch (IOException e) {
+            System.out.println("Не удалось заранее создать сегмент журнала " + number + ": " + e.getMessage());
+            return;
+        }
+
+        synchronized (this) {
+            if (spare == null && !closed && number > current.number) {
+                spare = segment;
+                return;
+            }
+        }
+        dropSegment(segment);
+    }
+
+    private void dropSegment(Segment segment) {
+        closeQuietly(segment.channel);
+        try {
+            Files.deleteIfExists(segmentPath(segment.number));
+        } catch (IOException e) {
+            System.out.println("Не удалось удалить сегмент журнала " + segment.number + ": " + e.getMessage());
+        }
+    }
+
+    private void put(Segment segment, byte type, long roomId, byte[] data) {
+        ByteBuffer buffer = segment.buffer;
+        int start = segment.position;
+        int bodyLength = 9 + data.length;
+
+        buffer.put(start + HEADER_SIZE, type);
+        buffer.putLong(start + HEADER_SIZE + 1, roomId);
+        buffer.put(start + HEADER_SIZE + 9, data);
+
+        crc.reset();
+        crc.update(buffer.slice(start + HEADER_SIZE, bodyLength));
+        buffer.putInt(start + 4, (int) crc.getValue());
+        // Длина пишется последней: запись без длины при чтении считается концом сегмента
+        buffer.putInt(start, bodyLength);
+
+        segment.position = start + HEADER_SIZE + bodyLength;
+        // Будим поток сброса только на первой записи пачки; остальные уйдут тем же force()
+        if (!dirty) {
+            dirty = true;
+            notifyAll();
+        }
+    }
+
+    // Проход снимков после ротации. Снимок комнаты кодируется по копии её журнала вне замка;
+    // ходы, дописанные за это время, идут в сегмент следом за снимком, поэтому при чтении
+    // снимок заменяет прежний журнал комнаты, а ходы после него дописываются как обычно
+    private void snapshotLoop() {
+        while (true) {
+            long base;
+            List<Long> roomIds;
+            synchronized (this) {
+                while (!snapshotRequested && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+                snapshotRequested = false;
+                // Всё, что лежит в сегментах раньше текущего, записано до начала прохода
+                base = current.number;
+                roomIds = new ArrayList<>(rooms.keySet());
+            }
+
+            for (long roomId : roomIds) {
+                MoveLog copy;
+                synchronized (this) {
+                    if (closed) return;
+                    MoveLog log = rooms.get(roomId);
+                    if (log == null) continue;
+                    copy = log.copy();
+                }
+
+                byte[] data = encodeRoom(copy);
+                synchronized (this) {
+                    if (closed) return;
+                    MoveLog log = rooms.get(roomId);
+                    if (log == null) continue;
+                    write(RECORD_ROOM, roomId, data);
+                    for (int i = copy.size(); i < log.size(); i++) {
+                        write(RECORD_MOVE, roomId, encodeMove(log.get(i)));
+                    }
+                }
+            }
+
+            synchronized (this) {
+                snapshotBase = Math.max(snapshotBase, base);
+                dirty = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private void forceLoop() {
+        while (true) {
+            List<Segment> toForce;
+            long deleteBelow;
+            boolean last;
+            Segment unused = null;
+            synchronized (this) {
+                while (!dirty) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                dirty = false;
+                toForce = new ArrayList<>(sealed);
+                sealed.clear();
+                toForce.add(current);
+                deleteBelow = snapshotBase;
+                last = closed;
+                if (last) {
+                    unused = spare;
+                    spare = null;
+                }
+            }
+
+            for (Segment segment : toForce) {
+                segment.buffer.force();
+            }
+            for (int i = 0; i < toForce.size() - 1; i++) {
+                closeQuietly(toForce.get(i).channel);
+            }
+            deleteSegmentsBelow(deleteBelow);
+
+            if (last) {
+                closeQuietly(toForce.get(toForce.size() - 1).channel);
+                if (unused != null) {
+                    dropSegment(unused);
+                }
+                return;
+            }
+            prepareSpare();
+            try {
+                Thread.sleep(COMMIT_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void deleteSegmentsBelow(long number) {
+        while (oldestSegment < number) {
+            try {
+                Files.deleteIfExists(segmentPath(oldestSegment));
+            } catch (IOException e) {
+                System.out.println("Не удалось удалить сегмент журнала " + oldestSegment + ": " + e.getMessage());
+            }
+            oldestSegment++;
+        }
+    }
+
+    // Запись обрывается на нулевой длине или несовпавшей CRC: дальше сегмент не дописан
+    private void replaySegment(long number) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath(number)));
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.limit()) {
+            int bodyLength = buffer.getInt(position);
+            if (bodyLength < 9 || position + HEADER_SIZE + bodyLength > buffer.limit()) break;
+
+            crc.reset();
+            crc.update(buffer.slice(position + HEADER_SIZE, bodyLength));
+            if (buffer.getInt(position + 4) != (int) crc.getValue()) {
+                System.out.println("Сегмент журнала " + number + ": повреждена запись на смещении " + position);
+                break;
+            }
+
+            int body = position + HEADER_SIZE;
+            byte type = buffer.get(body);
+            long roomId = buffer.getLong(body + 1);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    buffer.array(), body + 9, bodyLength - 9));
+            try {
+                apply(type, roomId, in);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Сегмент журнала " + number + ": запись комнаты #" + roomId + " не разобрана: " + e);
+            }
+            position = body + bodyLength;
+        }
+    }
+
+    private void apply(byte type, long roomId, DataInputStream in) throws IOException {
+        if (type == RECORD_ROOM) {
+            MoveLog log = MoveLog.readFrom(in);
+            if (log.isEnded()) {
+                rooms.remove(roomId);
+            } else {
+                rooms.put(roomId, log);
+            }
+        } else if (type == RECORD_MOVE) {
+            MoveLog log = rooms.get(roomId);
+            if (log == null) return;
+            log.append(MoveLog.Move.readFrom(in));
+            if (log.isEnded()) {
+                rooms.remove(roomId);
+            }
+        } else if (type == RECORD_DISCARD) {
+            rooms.remove(roomId);
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.startsWith("wal-") && name.endsWith(".seg")) {
+                    numbers.add(Long.parseLong(name.substring(4, name.length() - 4)));
+                }
+            });
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private Path segmentPath(long number) {
+        return dir.resolve(String.format("wal-%012d.seg", number));
+    }
+
+    private static byte[] encodeRoom(MoveLog log) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + log.size() * 8);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            log.writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeMove(MoveLog.Move move) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            move.writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package carcasson.sim;
+
+import carcasson.common.Board;
+import carcasson.common.LegalPlacements;
+import carcasson.common.Player;
+import carcasson.common.Tile;
+import carcasson.server.GameEngine;
+import java.util.Random;
+
+// Сценарий без просмотра вперед: закрывает города, когда может, кладет монастыри в гущу плиток
+// и держит поле плотным. Мипл идет на монастырь всегда, на остальное - пока в запасе больше одного
+class GreedyPolicy implements Policy {
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+    private static final int CITY_BONUS = 10;
+
+    @Override
+    public int choosePlacement(GameEngine engine, Tile hand, LegalPlacements placements, Random random) {
+        Board board = engine.getBoard();
+        int best = 0;
+        int bestScore = Integer.MIN_VALUE;
+        int ties = 0;
+
+        for (int i = 0; i < placements.size(); i++) {
+            int score = evaluate(board, hand, placements.getX(i), placements.getY(i), placements.getRotation(i));
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+                ties = 1;
+            } else if (score == bestScore && random.nextInt(++ties) == 0) {
+                // Равные ходы выбираются равновероятно
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private int evaluate(Board board, Tile hand, int x, int y, int rotation) {
+        int score = 0;
+        for (int side = 0; side < 4; side++) {
+            Tile neighbor = board.get(x + DX[side], y + DY[side]);
+            if (neighbor == null) continue;
+
+            score++;
+            // Две городские стороны tile-n лицом к лицу - город закрыт, 4 очка владельцу
+            if (hand.isTileN() && neighbor.isTileN()
+                    && hand.getEdges().side(side, rotation) == 'C'
+                    && neighbor.getEdges().side((side + 2) % 4, neighbor.getRotation()) == 'C') {
+                score += CITY_BONUS;
+            }
+        }
+
+        if ("tile-monastery.png".equals(hand.getFileName())) {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if ((dx != 0 || dy != 0) && board.isOccupied(x + dx, y + dy)) {
+                        score++;
+                    }
+                }
+            }
+        }
+        return score;
+    }
+
+    @Override
+    public boolean wantsMeeple(GameEngine engine, Tile placed, Player player, Random random) {
+        if (!placed.canPlaceMeeple() || player.getMeeplesLeft() == 0) return false;
+        return "tile-monastery.png".equals(placed.getFileName()) || player.getMeeplesLeft() > 1;
+    }
+}
@@ -0,0 +1,24 @@
+package carcasson.sim;
+
+import carcasson.common.LegalPlacements;
+import carcasson.common.Player;
+import carcasson.common.Tile;
+import carcasson.server.GameEngine;
+import java.util.Random;
+
+// Как игрок симуляции выбирает ход. Реализации без состояния: одну политику делят все потоки
+public interface Policy {
+    // Номер хода в placements (список не пуст)
+    int choosePlacement(GameEngine engine, Tile hand, LegalPlacements placements, Random random);
+
+    // Ставить ли мипла на только что положенную плитку
+    boolean wantsMeeple(GameEngine engine, Tile placed, Player player, Random random);
+
+    static Policy byName(String name) {
+        switch (name) {
+            case "random": return new RandomPolicy();
+            case "greedy": return new GreedyPolicy();
+            default: throw new IllegalArgumentException("Неизвестная политика: " + name + " (random, greedy)");
+        }
+    }
+}
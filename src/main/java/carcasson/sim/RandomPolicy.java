@@ -0,0 +1,22 @@
+package carcasson.sim;
+
+import carcasson.common.LegalPlacements;
+import carcasson.common.Player;
+import carcasson.common.Tile;
+import carcasson.server.GameEngine;
+import java.util.Random;
+
+// Любой разрешенный ход с равной вероятностью, мипл - примерно на каждую третью плитку, как у ботов нагрузочного теста
+class RandomPolicy implements Policy {
+    private static final double MEEPLE_RATE = 0.3;
+
+    @Override
+    public int choosePlacement(GameEngine engine, Tile hand, LegalPlacements placements, Random random) {
+        return random.nextInt(placements.size());
+    }
+
+    @Override
+    public boolean wantsMeeple(GameEngine engine, Tile placed, Player player, Random random) {
+        return placed.canPlaceMeeple() && player.getMeeplesLeft() > 0 && random.nextDouble() < MEEPLE_RATE;
+    }
+}
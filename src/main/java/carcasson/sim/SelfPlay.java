@@ -0,0 +1,105 @@
+package carcasson.sim;
+
+import carcasson.common.LegalPlacements;
+import carcasson.common.Player;
+import carcasson.common.Tile;
+import carcasson.server.GameEngine;
+import carcasson.server.GameEvents;
+import java.util.List;
+import java.util.Random;
+
+// Одна партия от раздачи до подсчета очков: движок правил и две политики, без сети и печати
+final class SelfPlay {
+    static final String[] NAMES = {"red", "blue"};
+    // Партия из 20 плиток кончается гораздо раньше; предел спасает от зацикливания при ошибке в правилах
+    private static final int MAX_COMMANDS = 10_000;
+
+    private SelfPlay() {
+    }
+
+    // Список ходов приходит вместе с плиткой, второй раз его не считаем
+    private static final class Events extends GameEvents.Silent {
+        LegalPlacements placements;
+        String endReason;
+
+        @Override
+        public void legalPlacements(String username, LegalPlacements placements) {
+            this.placements = placements;
+        }
+
+        @Override
+        public void gameEnded(String reason, String finalMessage) {
+            endReason = reason;
+        }
+    }
+
+    static void play(long seed, Policy[] policies, SimStats stats) {
+        Events events = new Events();
+        GameEngine engine = new GameEngine(seed, events);
+        for (int seat = 0; seat < NAMES.length; seat++) {
+            engine.addPlayer("sim-" + seat, NAMES[seat]);
+        }
+        Random random = new Random(seed ^ 0x5DEECE66DL);
+        engine.startGame();
+
+        int meeples = 0;
+        for (int commands = 0; !engine.isEnded(); commands++) {
+            if (commands >= MAX_COMMANDS) {
+                engine.endGame("Превышен предел команд");
+                break;
+            }
+
+            String current = engine.getCurrentPlayer();
+            int seat = current.equals(NAMES[0]) ? 0 : 1;
+            Tile hand = engine.getHand(current);
+            LegalPlacements placements = events.placements;
+            if (hand == null || placements == null || placements.getTileId() != hand.getId()) {
+                engine.skipTurn(current);
+                continue;
+            }
+
+            int choice = policies[seat].choosePlacement(engine, hand, placements, random);
+            int x = placements.getX(choice);
+            int y = placements.getY(choice);
+            if (!engine.placeTile(current, x, y, placements.getRotation(choice))) {
+                engine.skipTurn(current);
+                continue;
+            }
+
+            Tile placed = engine.getBoard().get(x, y);
+            Player player = engine.getPlayer(current);
+            if (policies[seat].wantsMeeple(engine, placed, player, random) && engine.placeMeeple(current)) {
+                meeples++;
+            } else {
+                engine.skipTurn(current);
+            }
+        }
+
+        record(engine, events.endReason, meeples, stats);
+    }
+
+    private static void record(GameEngine engine, String endReason, int meeples, SimStats stats) {
+        List<Player> players = engine.getPlayers();
+        int red = players.get(0).getScore();
+        int blue = players.get(1).getScore();
+
+        stats.games++;
+        stats.tilesPlaced += engine.getBoard().size() - 1;
+        stats.moves += engine.getMoveLog().size();
+        stats.meeplesPlaced += meeples;
+        stats.discardedTiles += engine.getDiscardedTiles();
+        if ("Колода пуста!".equals(endReason)) {
+            stats.deckExhausted++;
+        }
+        stats.scores[0].add(red);
+        stats.scores[1].add(blue);
+        stats.lengths.add(engine.getBoard().size());
+        if (red > blue) {
+            stats.wins[0]++;
+        } else if (blue > red) {
+            stats.wins[1]++;
+        } else {
+            stats.draws++;
+        }
+    }
+}
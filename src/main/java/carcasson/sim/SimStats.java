@@ -0,0 +1,121 @@
+package carcasson.sim;
+
+import java.util.Arrays;
+
+// Итоги пачки партий. Каждая задача пула копит свои, при слиянии задач итоги складываются,
+// поэтому общих счетчиков и блокировок нет
+final class SimStats {
+    static final String[] SEATS = {"RED", "BLUE"};
+
+    long games;
+    long tilesPlaced;
+    long moves;
+    long meeplesPlaced;
+    long discardedTiles;
+    long deckExhausted;
+    long draws;
+    final long[] wins = new long[SEATS.length];
+    final Histogram[] scores = {new Histogram(), new Histogram()};
+    final Histogram lengths = new Histogram();
+
+    void merge(SimStats other) {
+        games += other.games;
+        tilesPlaced += other.tilesPlaced;
+        moves += other.moves;
+        meeplesPlaced += other.meeplesPlaced;
+        discardedTiles += other.discardedTiles;
+        deckExhausted += other.deckExhausted;
+        draws += other.draws;
+        for (int seat = 0; seat < SEATS.length; seat++) {
+            wins[seat] += other.wins[seat];
+            scores[seat].merge(other.scores[seat]);
+        }
+        lengths.merge(other.lengths);
+    }
+
+    String report(long elapsedMillis, String[] policies) {
+        double seconds = Math.max(1, elapsedMillis) / 1000.0;
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== ИТОГИ СИМУЛЯЦИИ ===\n");
+        sb.append(String.format("Партий: %d за %.1f с (%.0f партий/с, %.0f плиток/с)%n",
+                games, seconds, games / seconds, tilesPlaced / seconds));
+        sb.append(String.format("Длина партии, плиток на поле: %s%n", lengths.summary()));
+        sb.append(String.format("Команд на партию: %.1f, миплов на партию: %.2f%n",
+                (double) moves / Math.max(1, games), (double) meeplesPlaced / Math.max(1, games)));
+        sb.append(String.format("Колода исчерпана: %d из %d партий (%.1f%%), сброшено плиток: %.2f на партию%n",
+                deckExhausted, games, percent(deckExhausted), (double) discardedTiles / Math.max(1, games)));
+        for (int seat = 0; seat < SEATS.length; seat++) {
+            sb.append(String.format("%s (%s): побед %.1f%%, очки %s%n", SEATS[seat], policies[seat],
+                    percent(wins[seat]), scores[seat].summary()));
+        }
+        sb.append(String.format("Ничьих: %.1f%%%n", percent(draws)));
+        sb.append("Распределение очков RED: ").append(scores[0].buckets(5)).append('\n');
+        sb.append("Распределение очков BLUE: ").append(scores[1].buckets(5)).append('\n');
+        return sb.toString();
+    }
+
+    private double percent(long count) {
+        return games == 0 ? 0 : 100.0 * count / games;
+    }
+
+    // Гистограмма небольших неотрицательных целых: счетчик на каждое значение
+    static final class Histogram {
+        private long[] counts = new long[64];
+        private long total;
+        private long sum;
+        private int max;
+
+        void add(int value) {
+            if (value >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(value + 1, counts.length * 2));
+            }
+            counts[value]++;
+            total++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        void merge(Histogram other) {
+            if (other.counts.length > counts.length) {
+                counts = Arrays.copyOf(counts, other.counts.length);
+            }
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+            sum += other.sum;
+            max = Math.max(max, other.max);
+        }
+
+        int quantile(double q) {
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return i;
+            }
+            return max;
+        }
+
+        String summary() {
+            if (total == 0) return "нет данных";
+            return String.format("среднее %.2f, p10=%d p50=%d p90=%d, min=%d max=%d",
+                    (double) sum / total, quantile(0.10), quantile(0.50), quantile(0.90), quantile(0), max);
+        }
+
+        // Доли по корзинам ширины width: "0-4: 12.0%, 5-9: 40.1%, ..."
+        String buckets(int width) {
+            if (total == 0) return "нет данных";
+            StringBuilder sb = new StringBuilder();
+            for (int from = 0; from <= max; from += width) {
+                long count = 0;
+                for (int i = from; i < Math.min(from + width, counts.length); i++) {
+                    count += counts[i];
+                }
+                if (sb.length() > 0) sb.append(", ");
+                sb.append(String.format("%d-%d: %.1f%%", from, from + width - 1, 100.0 * count / total));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package carcasson.sim;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Самоигра без сервера: миллионы партий по текущим правилам на всех ядрах. Диапазон номеров партий
+// делится пополам, пока не станет меньше пачки; пустые потоки пула крадут половинки у занятых.
+// Зерно каждой партии выводится из общего зерна и номера, так что прогон воспроизводим при любом числе потоков.
+// Пример: java -cp target/classes carcasson.sim.SimulationRunner --games=1000000 --red=greedy --blue=random
+public class SimulationRunner {
+
+    static class Config {
+        long games = 100_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 42;
+        String red = "random";
+        String blue = "random";
+        // Сколько партий задача играет сама, не деля диапазон дальше
+        int batch = 256;
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (!arg.startsWith("--") || eq < 0) {
+                    throw new IllegalArgumentException("Ожидается --ключ=значение: " + arg);
+                }
+                String key = arg.substring(2, eq);
+                String value = arg.substring(eq + 1);
+                switch (key) {
+                    case "games": config.games = Long.parseLong(value); break;
+                    case "threads": config.threads = Integer.parseInt(value); break;
+                    case "seed": config.seed = Long.parseLong(value); break;
+                    case "red": config.red = value; break;
+                    case "blue": config.blue = value; break;
+                    case "batch": config.batch = Math.max(1, Integer.parseInt(value)); break;
+                    default: throw new IllegalArgumentException("Неизвестный параметр: " + key);
+                }
+            }
+            return config;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class GamesTask extends RecursiveTask<SimStats> {
+        private final Config config;
+        private final Policy[] policies;
+        private final long from;
+        private final long to;
+
+        GamesTask(Config config, Policy[] policies, long from, long to) {
+            this.config = config;
+            this.policies = policies;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimStats compute() {
+            if (to - from <= config.batch) {
+                SimStats stats = new SimStats();
+                for (long game = from; game < to; game++) {
+                    SelfPlay.play(gameSeed(config.seed, game), policies, stats);
+                }
+                return stats;
+            }
+
+            long middle = (from + to) >>> 1;
+            GamesTask left = new GamesTask(config, policies, from, middle);
+            left.fork();
+            SimStats stats = new GamesTask(config, policies, middle, to).compute();
+            stats.merge(left.join());
+            return stats;
+        }
+    }
+
+    static long gameSeed(long seed, long game) {
+        return new SplittableRandom(seed + game * 0x9E3779B97F4A7C15L).nextLong();
+    }
+
+    public static void main(String[] args) {
+        Config config = Config.parse(args);
+        Policy[] policies = {Policy.byName(config.red), Policy.byName(config.blue)};
+
+        System.out.println("Симуляция: " + config.games + " партий, " + config.threads + " потоков, RED="
+                + config.red + ", BLUE=" + config.blue + ", зерно " + config.seed);
+
+        ForkJoinPool pool = new ForkJoinPool(config.threads);
+        long start = System.currentTimeMillis();
+        SimStats stats = pool.invoke(new GamesTask(config, policies, 0, config.games));
+        long elapsed = System.currentTimeMillis() - start;
+        pool.shutdown();
+
+        System.out.println(stats.report(elapsed, new String[]{config.red, config.blue}));
+    }
+}
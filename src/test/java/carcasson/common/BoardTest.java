@@ -0,0 +1,151 @@
+package carcasson.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+// Открытая адресация поля: вставка и снятие последней плитки не должны рвать цепочки пробирования
+class BoardTest {
+    // Board(8): таблица на 32 ячейки, перестройки нет до 17-й плитки
+    private static final int SLOTS = 32;
+
+    @Test
+    void collidingKeysRoundTrip() {
+        // Клетки с одной домашней ячейкой, последней в таблице: цепочка переходит через конец массива
+        List<int[]> cells = collidingCells(SLOTS - 1, 8);
+        // и клетки следующей ячейки, которые встают в ту же цепочку уже после переноса
+        cells.addAll(collidingCells(0, 4));
+
+        Board board = new Board(8);
+        List<Tile> placed = new ArrayList<>();
+        for (int[] cell : cells) {
+            Tile tile = tile(placed.size(), cell[0], cell[1]);
+            board.put(tile);
+            placed.add(tile);
+            assertAllFound(board, placed);
+        }
+
+        while (!placed.isEmpty()) {
+            Tile last = placed.remove(placed.size() - 1);
+            assertSame(last, board.removeLast());
+            assertNull(board.get(last.getX(), last.getY()));
+            assertEquals(-1, board.indexOf(last.getX(), last.getY()));
+            assertAllFound(board, placed);
+        }
+        assertTrue(board.isEmpty());
+        assertNull(board.removeLast());
+    }
+
+    @Test
+    void randomInsertRemoveKeepsEveryTileReachable() {
+        Random random = new Random(13);
+        for (int round = 0; round < 200; round++) {
+            Board board = new Board(4);
+            List<Tile> placed = new ArrayList<>();
+            Set<Integer> used = new HashSet<>();
+            for (int step = 0; step < 300; step++) {
+                if (!placed.isEmpty() && random.nextInt(3) == 0) {
+                    Tile last = placed.remove(placed.size() - 1);
+                    used.remove(Board.key(last.getX(), last.getY()));
+                    assertSame(last, board.removeLast());
+                    assertNull(board.get(last.getX(), last.getY()));
+                } else {
+                    // Тесная область - много совпадений домашних ячеек
+                    int x = random.nextInt(12) - 6;
+                    int y = random.nextInt(12) - 6;
+                    if (!used.add(Board.key(x, y))) continue;
+                    Tile tile = tile(step, x, y);
+                    board.put(tile);
+                    placed.add(tile);
+                }
+                assertAllFound(board, placed);
+            }
+        }
+    }
+
+    @Test
+    void removeLastRestoresBounds() {
+        Board board = new Board();
+        board.put(tile(0, 0, 0));
+        board.put(tile(1, 1, 0));
+        board.put(tile(2, -5, 9));
+        assertEquals(-5, board.getMinX());
+        assertEquals(9, board.getMaxY());
+
+        board.removeLast();
+        assertEquals(0, board.getMinX());
+        assertEquals(1, board.getMaxX());
+        assertEquals(0, board.getMinY());
+        assertEquals(0, board.getMaxY());
+
+        board.removeLast();
+        board.removeLast();
+        assertTrue(board.getMinX() > board.getMaxX());
+    }
+
+    @Test
+    void putReplacesTileInSameCell() {
+        Board board = new Board();
+        board.put(tile(0, 3, 4));
+        Tile replacement = tile(1, 3, 4);
+        board.put(replacement);
+        assertEquals(1, board.size());
+        assertSame(replacement, board.get(3, 4));
+        assertSame(replacement, board.tileAt(0));
+    }
+
+    @Test
+    void edgeCoordinates() {
+        Board board = new Board();
+        int[][] cells = {{Board.MIN_COORD, Board.MIN_COORD}, {Board.MAX_COORD, Board.MAX_COORD},
+                {Board.MIN_COORD, Board.MAX_COORD}, {-1, -1}, {0, -1}, {-1, 0}};
+        List<Tile> placed = new ArrayList<>();
+        for (int[] cell : cells) {
+            Tile tile = tile(placed.size(), cell[0], cell[1]);
+            board.put(tile);
+            placed.add(tile);
+        }
+        assertAllFound(board, placed);
+        assertThrows(IllegalArgumentException.class, () -> board.put(tile(9, Board.MAX_COORD + 1, 0)));
+        assertNull(board.get(Board.MIN_COORD - 1, 0));
+    }
+
+    private static void assertAllFound(Board board, List<Tile> placed) {
+        assertEquals(placed.size(), board.size());
+        for (int i = 0; i < placed.size(); i++) {
+            Tile tile = placed.get(i);
+            assertSame(tile, board.get(tile.getX(), tile.getY()));
+            assertEquals(i, board.indexOf(tile.getX(), tile.getY()));
+            assertSame(tile, board.tileAt(i));
+        }
+    }
+
+    // Клетки, чья домашняя ячейка в таблице SLOTS равна home. Хеш повторяет Board.slot
+    private static List<int[]> collidingCells(int home, int count) {
+        List<int[]> cells = new ArrayList<>();
+        for (int x = -64; x < 64 && cells.size() < count; x++) {
+            for (int y = -64; y < 64 && cells.size() < count; y++) {
+                int h = Board.key(x, y) * 0x9E3779B9;
+                if (((h ^ (h >>> 16)) & (SLOTS - 1)) == home) cells.add(new int[] {x, y});
+            }
+        }
+        assertEquals(count, cells.size());
+        return cells;
+    }
+
+    private static Tile tile(int id, int x, int y) {
+        Tile tile = new Tile(id, TileCatalog.ROAD_STRAIGHT);
+        tile.setX(x);
+        tile.setY(y);
+        return tile;
+    }
+}
@@ -0,0 +1,186 @@
+package carcasson.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+// Кадр MessageCodec: каждое сообщение протокола после encode/decode совпадает с исходным
+class MessageCodecTest {
+
+    @Test
+    void everyMessageTypeRoundTrips() throws IOException {
+        Map<MessageType, Object> samples = samples();
+        for (MessageType type : MessageType.values()) {
+            assertTrue(samples.containsKey(type), "нет примера для " + type);
+            for (String sender : new String[] {null, "SERVER", "игрок 1"}) {
+                GameMessage message = new GameMessage(type.name(), sender, samples.get(type));
+                assertRoundTrip(message);
+            }
+        }
+    }
+
+    @Test
+    void everyDataKindRoundTripsUnderAnyType() throws IOException {
+        // Тег данных не зависит от типа сообщения
+        for (Object data : samples().values()) {
+            assertRoundTrip(new GameMessage(MessageType.CHAT_MESSAGE.name(), "a", data));
+        }
+    }
+
+    @Test
+    void framesFollowEachOtherInOneStream() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Map<MessageType, Object> samples = samples();
+        for (MessageType type : MessageType.values()) {
+            MessageCodec.writeFrame(out, new GameMessage(type.name(), "SERVER", samples.get(type)));
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (MessageType type : MessageType.values()) {
+            GameMessage read = MessageCodec.readFrame(in);
+            assertEquals(type.name(), read.getType());
+            assertEquals(describe(samples.get(type)), describe(read.getData()));
+        }
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    void frameHeaderHoldsPayloadLength() throws IOException {
+        byte[] frame = MessageCodec.encodeFrame(new GameMessage("RESYNC", null, null));
+        int length = ((frame[0] & 0xFF) << 24) | ((frame[1] & 0xFF) << 16) | ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF);
+        assertEquals(frame.length - MessageCodec.HEADER_SIZE, length);
+    }
+
+    @Test
+    void malformedFramesAreRejected() {
+        // Неизвестный код сообщения
+        assertThrows(IOException.class, () -> MessageCodec.decode(new byte[] {(byte) 0x7F, 0, 0}, 0, 3));
+        // Неизвестный тег данных
+        assertThrows(IOException.class, () -> MessageCodec.decode(new byte[] {0, 0, (byte) 0x7F}, 0, 3));
+        // Недопустимая длина кадра
+        assertThrows(IOException.class, () -> MessageCodec.checkLength(0));
+        assertThrows(IOException.class, () -> MessageCodec.checkLength(MessageCodec.MAX_FRAME_SIZE + 1));
+        // Объект, которого нет в протоколе
+        assertThrows(IOException.class, () -> MessageCodec.encodeFrame(new GameMessage("CHAT_MESSAGE", null, 42L)));
+    }
+
+    @Test
+    void longArraysKeepTheirLength() throws IOException {
+        // Больше 255 координат: длина не обрезается до байта
+        int[] coords = new int[300];
+        for (int i = 0; i < coords.length; i++) coords[i] = i * 1000 - 7;
+        assertRoundTrip(new GameMessage("TILE_PLACED", null, coords));
+        assertRoundTrip(new GameMessage("TILE_PLACED", null, new int[0xFFFF]));
+
+        // Длина, которая не влезает в short, отвергается при кодировании, а не уходит обрезанной
+        assertThrows(IOException.class,
+                () -> MessageCodec.encodeFrame(new GameMessage("TILE_PLACED", null, new int[0x10000])));
+        Tile[] tiles = new Tile[0x10000];
+        Arrays.fill(tiles, tile(1, TileCatalog.ROAD_STRAIGHT, 0, 7, 7, -1));
+        assertThrows(IOException.class,
+                () -> MessageCodec.encodeFrame(new GameMessage("GAME_STATE", null, new BoardSnapshot(1, tiles, 0))));
+    }
+
+    // Данные, которые сервер и клиенты действительно отправляют с каждым типом
+    private static Map<MessageType, Object> samples() {
+        Player player = new Player("id-1", "Анна", "RED", 17, 5);
+        Tile drawn = tile(30, TileCatalog.FORK, 2, 0, 0, -1);
+        Tile[] board = {
+                tile(1, TileCatalog.ROAD_STRAIGHT, 0, 7, 7, -1),
+                tile(2, TileCatalog.MONASTERY, 3, 7, 8, 0),
+                tile(3, TileCatalog.CITY_CAP, 1, Board.MIN_COORD, Board.MAX_COORD, Tile.MEEPLE_COLORS.length - 1),
+        };
+
+        Map<MessageType, Object> samples = new EnumMap<>(MessageType.class);
+        samples.put(MessageType.CONNECT, player);
+        samples.put(MessageType.DISCONNECT, "Анна");
+        samples.put(MessageType.JOIN_GAME, null);
+        samples.put(MessageType.GAME_START, null);
+        samples.put(MessageType.GAME_END, "Игра окончена: победил Анна");
+        samples.put(MessageType.TILE_DRAWN, drawn);
+        samples.put(MessageType.TILE_PLACED, new int[] {-3, 12});
+        samples.put(MessageType.TILE_ROTATED, null);
+        samples.put(MessageType.MEEPLE_PLACED, null);
+        samples.put(MessageType.TURN_SKIP, null);
+        samples.put(MessageType.SCORE_UPDATE, new Player(null, "Борис", "BLUE", 0, 7));
+        samples.put(MessageType.CHAT_MESSAGE, "привет, ёжик");
+        samples.put(MessageType.GAME_STATE, new BoardSnapshot(41, board, 0x1234_5678_9ABC_DEF0L));
+        samples.put(MessageType.PLAYER_TURN, "Борис");
+        samples.put(MessageType.TILE_UPDATE, drawn);
+        samples.put(MessageType.END_GAME, null);
+        samples.put(MessageType.GAME_STATE_DELTA, new BoardDelta(40, 41, new Tile[] {board[2]}, -1L));
+        samples.put(MessageType.RESYNC, null);
+        samples.put(MessageType.LEGAL_PLACEMENTS, new LegalPlacements(30, new int[] {6, 7, 0, 8, 7, 3, -200, 300, 1}));
+        return samples;
+    }
+
+    private static Tile tile(int id, TileDefinition definition, int rotation, int x, int y, int meepleOwner) {
+        Tile tile = new Tile(id, definition);
+        tile.setRotation(rotation);
+        tile.setX(x);
+        tile.setY(y);
+        tile.setMeepleOwnerIndex(meepleOwner);
+        return tile;
+    }
+
+    private static void assertRoundTrip(GameMessage message) throws IOException {
+        byte[] frame = MessageCodec.encodeFrame(message);
+        GameMessage decoded = MessageCodec.decode(frame, MessageCodec.HEADER_SIZE, frame.length - MessageCodec.HEADER_SIZE);
+        assertEquals(message.getType(), decoded.getType());
+        assertEquals(message.getSender(), decoded.getSender());
+        assertEquals(describe(message.getData()), describe(decoded.getData()), message.getType());
+    }
+
+    // Полное содержимое данных сообщения: у классов протокола нет equals
+    private static String describe(Object data) {
+        if (data == null) return "null";
+        if (data instanceof String) return "String " + data;
+        if (data instanceof int[]) return "int[] " + Arrays.toString((int[]) data);
+        if (data instanceof Player) {
+            Player player = (Player) data;
+            return "Player " + player.getId() + " " + player.getName() + " " + player.getColor()
+                    + " " + player.getScore() + " " + player.getMeeplesLeft();
+        }
+        if (data instanceof Tile) {
+            Tile tile = (Tile) data;
+            return "Tile " + tile.getId() + " " + tile.getDefinition().getId() + " r" + tile.getRotation()
+                    + " " + tile.getX() + "," + tile.getY() + " m" + tile.getMeepleOwnerIndex();
+        }
+        if (data instanceof BoardSnapshot) {
+            BoardSnapshot snapshot = (BoardSnapshot) data;
+            return "Snapshot " + snapshot.getVersion() + " " + snapshot.getHash() + " " + describe(snapshot.getTiles());
+        }
+        if (data instanceof BoardDelta) {
+            BoardDelta delta = (BoardDelta) data;
+            return "Delta " + delta.getBaseVersion() + " " + delta.getVersion() + " " + delta.getHash()
+                    + " " + describe(delta.getChangedTiles());
+        }
+        if (data instanceof LegalPlacements) {
+            LegalPlacements placements = (LegalPlacements) data;
+            StringBuilder out = new StringBuilder("Placements " + placements.getTileId());
+            for (int i = 0; i < placements.size(); i++) {
+                out.append(' ').append(placements.getX(i)).append(',').append(placements.getY(i))
+                        .append('r').append(placements.getRotation(i));
+            }
+            return out.toString();
+        }
+        throw new AssertionError("Неожиданные данные: " + data.getClass());
+    }
+
+    private static String describe(Tile[] tiles) {
+        StringBuilder out = new StringBuilder("[");
+        for (Tile tile : tiles) out.append(describe(tile)).append(';');
+        return out.append(']').toString();
+    }
+}
@@ -0,0 +1,66 @@
+package carcasson.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+// Скомпилированный каталог (tiles/catalog.bin) совпадает с текстовым src/main/catalog/tiles.catalog:
+// виды, картинки, стороны и дороги, а колода партии - ровно столько плиток каждого вида, сколько в тексте
+class TileCatalogTest {
+    private static final Path SOURCE = Path.of("src/main/catalog/tiles.catalog");
+
+    @Test
+    void kindsMatchTextCatalog() throws IOException {
+        List<String[]> lines = lines();
+        assertEquals(lines.size(), TileCatalog.size());
+        for (int i = 0; i < lines.size(); i++) {
+            String[] line = lines.get(i);
+            TileDefinition definition = TileCatalog.get(i);
+            TileEdges expected = TileEdges.of(line[3].trim().replaceAll("\\s+", " "));
+
+            assertEquals(Integer.parseInt(line[0]), definition.getId());
+            assertEquals(line[1], definition.getImagePath(), "вид " + i);
+            assertEquals(expected.packed(0), definition.getEdges().packed(0), "стороны вида " + i);
+            assertEquals(expected.getRoadFlags(), definition.getEdges().getRoadFlags(), "дороги вида " + i);
+            assertEquals(expected.getType(), definition.getType(), "тип вида " + i);
+        }
+    }
+
+    @Test
+    void bagMatchesTextCatalogCounts() throws IOException {
+        List<TileDefinition> expected = new ArrayList<>();
+        for (String[] line : lines()) {
+            TileDefinition definition = TileCatalog.get(Integer.parseInt(line[0]));
+            int count = Integer.parseInt(line[2]);
+            assertEquals(count, TileCatalog.count(definition), "число в колоде " + line[1]);
+            for (int n = 0; n < count; n++) expected.add(definition);
+        }
+
+        List<TileDefinition> bag = TileCatalog.bag();
+        assertEquals(expected.size(), bag.size());
+        for (int i = 0; i < bag.size(); i++) {
+            assertSame(expected.get(i), bag.get(i), "плитка " + i);
+        }
+        // Каждый вызов дает свою копию - вызывающий ее тасует
+        bag.clear();
+        assertEquals(expected.size(), TileCatalog.bag().size());
+    }
+
+    // Строки видов: номер, картинка, число в колоде, стороны и дороги
+    private static List<String[]> lines() throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(SOURCE, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            lines.add(line.split("\\s+", 4));
+        }
+        return lines;
+    }
+}
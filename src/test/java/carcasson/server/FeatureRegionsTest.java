@@ -0,0 +1,283 @@
+package carcasson.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import carcasson.common.Board;
+import carcasson.common.Tile;
+import carcasson.common.TileCatalog;
+import carcasson.common.TileDefinition;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+// Области дорог и городов, которые FeatureRegions ведет слияниями, совпадают с тем, что находит обход поля
+// в ширину: состав, открытые стороны, миплы, развилки и соседи монастырей - после каждой плитки
+// и после каждого отката по журналу
+class FeatureRegionsTest {
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    @Test
+    void regionsMatchBreadthFirstOracle() {
+        int checks = 0;
+        for (long seed = 0; seed < 40; seed++) {
+            Random random = new Random(seed);
+            Board board = new Board();
+            FeatureRegions regions = new FeatureRegions(board);
+            UndoTrail trail = new UndoTrail();
+            regions.setTrail(trail);
+
+            Tile start = new Tile(0, TileCatalog.ROAD_STRAIGHT);
+            start.setX(7);
+            start.setY(7);
+            place(board, regions, trail, start);
+            int startMark = trail.mark();
+
+            // Несколько комплектов: одной партии мало, чтобы области успели вырасти
+            List<TileDefinition> bag = new ArrayList<>();
+            for (int set = 0; set < 5; set++) bag.addAll(TileCatalog.bag());
+            Collections.shuffle(bag, random);
+            ArrayDeque<Tile> deck = new ArrayDeque<>();
+            for (int i = 0; i < bag.size(); i++) {
+                deck.add(new Tile(i + 1, bag.get(i)));
+            }
+
+            // Отметка журнала перед каждой плиткой после стартовой
+            List<Integer> marks = new ArrayList<>();
+            placeSome(board, regions, trail, deck, marks, random, deck.size());
+            assertTrue(board.size() > 40, "seed " + seed + ": партия слишком короткая");
+            checks += marks.size();
+
+            // Откат назад по частям; иногда поверх кладутся и снова снимаются новые плитки
+            while (!marks.isEmpty()) {
+                int back = 1 + random.nextInt(Math.min(10, marks.size()));
+                int mark = marks.get(marks.size() - back);
+                trail.undoTo(mark);
+                marks.subList(marks.size() - back, marks.size()).clear();
+                assertMatchesOracle(board, regions, "seed " + seed + ", откат к " + board.size());
+                checks++;
+
+                if (random.nextInt(3) == 0) {
+                    List<Integer> redo = new ArrayList<>();
+                    placeSome(board, regions, trail, deck, redo, random, 3);
+                    trail.undoTo(redo.isEmpty() ? trail.mark() : redo.get(0));
+                    assertMatchesOracle(board, regions, "seed " + seed + ", повтор у " + board.size());
+                }
+            }
+
+            trail.undoTo(startMark);
+            assertEquals(1, board.size());
+            assertMatchesOracle(board, regions, "seed " + seed + ", только стартовая");
+        }
+        assertTrue(checks > 2000);
+    }
+
+    // Кладет до count плиток из колоды на случайные допустимые места; плитка без места уходит из колоды.
+    // Примерно на каждую третью ставится мипл случайного цвета
+    private static void placeSome(Board board, FeatureRegions regions, UndoTrail trail, ArrayDeque<Tile> deck,
+                                  List<Integer> marks, Random random, int count) {
+        for (int placed = 0; placed < count && !deck.isEmpty(); ) {
+            Tile tile = deck.poll();
+            List<int[]> options = legalPlacements(board, tile);
+            if (options.isEmpty()) continue;
+
+            int[] option = options.get(random.nextInt(options.size()));
+            marks.add(trail.mark());
+            tile.setX(option[0]);
+            tile.setY(option[1]);
+            tile.setRotation(option[2]);
+            place(board, regions, trail, tile);
+
+            if (random.nextInt(3) == 0) {
+                String previousOwner = tile.getMeepleOwner();
+                int previousIndex = tile.getMeepleOwnerIndex();
+                tile.setMeeple(Tile.MEEPLE_COLORS[random.nextInt(Tile.MEEPLE_COLORS.length)]);
+                trail.push(() -> tile.setMeepleOwnerIndex(previousIndex));
+                regions.meepleChanged(tile, previousOwner);
+            }
+            placed++;
+            assertMatchesOracle(board, regions, "плитка " + tile.getId() + " на " + option[0] + "," + option[1]);
+        }
+    }
+
+    // Так же, как движок: плитка на поле, отмена - removeLast, затем области
+    private static void place(Board board, FeatureRegions regions, UndoTrail trail, Tile tile) {
+        board.put(tile);
+        trail.push(board::removeLast);
+        regions.add(tile);
+    }
+
+    // Пустые клетки рядом с полем и повороты, при которых все стороны совпадают с соседями
+    private static List<int[]> legalPlacements(Board board, Tile tile) {
+        Set<Long> seen = new TreeSet<>();
+        List<int[]> options = new ArrayList<>();
+        for (Tile placed : board.inScanOrder()) {
+            for (int side = 0; side < 4; side++) {
+                int x = placed.getX() + DX[side];
+                int y = placed.getY() + DY[side];
+                if (!Board.inRange(x, y) || board.isOccupied(x, y) || !seen.add((long) x << 32 | (y & 0xFFFFFFFFL))) {
+                    continue;
+                }
+                for (int rotation = 0; rotation < 4; rotation++) {
+                    if (fits(board, tile, x, y, rotation)) options.add(new int[] {x, y, rotation});
+                }
+            }
+        }
+        return options;
+    }
+
+    private static boolean fits(Board board, Tile tile, int x, int y, int rotation) {
+        for (int side = 0; side < 4; side++) {
+            Tile neighbor = board.get(x + DX[side], y + DY[side]);
+            if (neighbor == null) continue;
+            if (tile.getEdges().side(side, rotation) != sideOf(neighbor, (side + 2) % 4)) return false;
+        }
+        return true;
+    }
+
+    private static void assertMatchesOracle(Board board, FeatureRegions regions, String where) {
+        assertFeature(board, regions, 'S', where + ", дороги");
+        assertFeature(board, regions, 'C', where + ", города");
+        assertMonasteries(board, regions, where);
+    }
+
+    // Компоненты обхода в ширину по сторонам feature, совпадающим у обеих соседних плиток
+    private static void assertFeature(Board board, FeatureRegions regions, char feature, String where) {
+        Map<Tile, Integer> component = new IdentityHashMap<>();
+        Map<FeatureRegions.Region, Integer> seen = new IdentityHashMap<>();
+        for (Tile first : board.tiles()) {
+            FeatureRegions.Region region = regionOf(regions, feature, first);
+            if (!isNode(first, feature)) {
+                assertNull(region, where + ": область у плитки " + first.getId());
+                continue;
+            }
+            if (component.containsKey(first)) continue;
+
+            List<Tile> tiles = new ArrayList<>();
+            ArrayDeque<Tile> queue = new ArrayDeque<>();
+            component.put(first, seen.size());
+            queue.add(first);
+            while (!queue.isEmpty()) {
+                Tile tile = queue.poll();
+                tiles.add(tile);
+                for (int side = 0; side < 4; side++) {
+                    Tile neighbor = board.get(tile.getX() + DX[side], tile.getY() + DY[side]);
+                    if (neighbor == null || !isNode(neighbor, feature) || component.containsKey(neighbor)) continue;
+                    if (sideOf(tile, side) == feature && sideOf(neighbor, (side + 2) % 4) == feature) {
+                        component.put(neighbor, seen.size());
+                        queue.add(neighbor);
+                    }
+                }
+            }
+
+            // Вся компонента - одна область, и эта область не принадлежит другой компоненте
+            assertNotNull(region, where + ": нет области у плитки " + first.getId());
+            assertEquals(null, seen.put(region, seen.size()), where + ": две компоненты в одной области");
+            for (Tile tile : tiles) {
+                assertSame(region, regionOf(regions, feature, tile), where + ": плитка " + tile.getId());
+            }
+            assertEquals(tiles.size(), region.tiles, where + ": плиток в области " + first.getId());
+            assertEquals(openEdges(board, tiles, feature), region.openEdges, where + ": открытых сторон");
+            assertEquals(Arrays.toString(meeples(tiles)), Arrays.toString(region.meeples), where + ": миплы");
+            assertEquals(meepleTiles(board, tiles), ids(region.meepleTiles), where + ": плитки с миплами");
+            assertEquals(feature == 'S' ? forks(board, tiles) : List.of(), sorted(ids(region.forks)),
+                    where + ": развилки");
+        }
+    }
+
+    private static void assertMonasteries(Board board, FeatureRegions regions, String where) {
+        List<Integer> monasteries = new ArrayList<>();
+        for (Tile tile : board.tiles()) {
+            if (!tile.getDefinition().isMonastery()) continue;
+            monasteries.add(tile.getId());
+            int neighbors = 0;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if ((dx != 0 || dy != 0) && board.isOccupied(tile.getX() + dx, tile.getY() + dy)) neighbors++;
+                }
+            }
+            assertEquals(neighbors, regions.neighbors(tile), where + ": соседи монастыря " + tile.getId());
+        }
+        assertEquals(monasteries, ids(regions.monasteries()), where + ": монастыри");
+    }
+
+    private static FeatureRegions.Region regionOf(FeatureRegions regions, char feature, Tile tile) {
+        return feature == 'S' ? regions.road(tile) : regions.city(tile);
+    }
+
+    private static boolean isNode(Tile tile, char feature) {
+        return feature == 'S' ? FeatureRegions.isRoadNode(tile) : FeatureRegions.isCityNode(tile);
+    }
+
+    private static int openEdges(Board board, List<Tile> tiles, char feature) {
+        int open = 0;
+        for (Tile tile : tiles) {
+            for (int side = 0; side < 4; side++) {
+                if (sideOf(tile, side) == feature && !board.isOccupied(tile.getX() + DX[side], tile.getY() + DY[side])) {
+                    open++;
+                }
+            }
+        }
+        return open;
+    }
+
+    private static int[] meeples(List<Tile> tiles) {
+        int[] meeples = new int[Tile.MEEPLE_COLORS.length];
+        for (Tile tile : tiles) {
+            if (tile.hasMeeple()) meeples[tile.getMeepleOwnerIndex()]++;
+        }
+        return meeples;
+    }
+
+    // Миплы ставятся вместе с плиткой, так что их порядок - порядок плиток на поле
+    private static List<Integer> meepleTiles(Board board, List<Tile> tiles) {
+        List<Integer> ids = new ArrayList<>();
+        for (Tile tile : board.tiles()) {
+            if (tile.hasMeeple() && tiles.contains(tile)) ids.add(tile.getId());
+        }
+        return ids;
+    }
+
+    // Развилки, к которым дорога области подходит стороной S
+    private static List<Integer> forks(Board board, List<Tile> tiles) {
+        Set<Integer> forks = new TreeSet<>();
+        for (Tile tile : tiles) {
+            for (int side = 0; side < 4; side++) {
+                Tile neighbor = board.get(tile.getX() + DX[side], tile.getY() + DY[side]);
+                if (neighbor != null && neighbor.isTileL() && sideOf(tile, side) == 'S'
+                        && sideOf(neighbor, (side + 2) % 4) == 'S') {
+                    forks.add(neighbor.getId());
+                }
+            }
+        }
+        return new ArrayList<>(forks);
+    }
+
+    private static List<Integer> ids(List<Tile> tiles) {
+        List<Integer> ids = new ArrayList<>();
+        for (Tile tile : tiles) ids.add(tile.getId());
+        return ids;
+    }
+
+    private static List<Integer> sorted(List<Integer> ids) {
+        List<Integer> copy = new ArrayList<>(ids);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static char sideOf(Tile tile, int side) {
+        return tile.getEdges().side(side, tile.getRotation());
+    }
+}
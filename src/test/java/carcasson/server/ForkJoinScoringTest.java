@@ -0,0 +1,110 @@
+package carcasson.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import carcasson.common.Player;
+import carcasson.common.Tile;
+import carcasson.common.TileCatalog;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+// Подсчет на пуле обязан давать тот же разбор, что и подсчет на месте: те же награды в том же порядке
+class ForkJoinScoringTest {
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void parallelMatchesInlineOnLargeBoards() {
+        for (long seed = 0; seed < 5; seed++) {
+            GameEngine engine = randomBoard(seed, 2000);
+            assertTrue(engine.getBoard().size() >= ForkJoinScoring.PARALLEL_TILES, "поле меньше порога");
+
+            ScoreBreakdown inline = new ForkJoinScoring(pool, Integer.MAX_VALUE)
+                    .score(engine.getBoard(), engine.getRegions());
+            ScoreBreakdown parallel = new ForkJoinScoring(pool, 1)
+                    .score(engine.getBoard(), engine.getRegions());
+
+            assertTrue(inline.awards().size() > 0, "подсчет без наград");
+            assertEquals(dump(inline), dump(parallel), "seed " + seed);
+            for (String color : List.of("RED", "BLUE")) {
+                assertEquals(inline.total(color), parallel.total(color), "seed " + seed + " " + color);
+            }
+        }
+    }
+
+    @Test
+    void parallelMatchesInlineOnSmallBoards() {
+        for (long seed = 0; seed < 50; seed++) {
+            GameEngine engine = randomBoard(seed, 30);
+            assertEquals(dump(new ForkJoinScoring(pool, Integer.MAX_VALUE).score(engine.getBoard(), engine.getRegions())),
+                    dump(new ForkJoinScoring(pool, 1).score(engine.getBoard(), engine.getRegions())),
+                    "seed " + seed);
+        }
+    }
+
+    // Случайное поле: плитки приставляются к уже лежащим, каждая третья получает мипла
+    private static GameEngine randomBoard(long seed, int tiles) {
+        GameEngine engine = new GameEngine(seed, new GameEvents.Silent());
+        engine.putPlayer(new Player("red", "red", "RED"));
+        engine.putPlayer(new Player("blue", "blue", "BLUE"));
+        Random random = new Random(seed);
+
+        Tile start = new Tile(1, TileCatalog.ROAD_STRAIGHT);
+        start.setX(7);
+        start.setY(7);
+        engine.putTile(start);
+        List<Tile> placed = new ArrayList<>(List.of(start));
+        int id = 2;
+        for (int attempt = 0; placed.size() < tiles && attempt < 200_000; attempt++) {
+            Tile anchor = placed.get(random.nextInt(placed.size()));
+            int side = random.nextInt(4);
+            int x = anchor.getX() + (side == 1 ? 1 : side == 3 ? -1 : 0);
+            int y = anchor.getY() + (side == 2 ? 1 : side == 0 ? -1 : 0);
+            Tile tile = new Tile(id, TileCatalog.get(random.nextInt(TileCatalog.size())));
+            tile.setRotation(random.nextInt(4));
+            if (engine.getBoard().isOccupied(x, y) || !engine.isValidPlacement(tile, x, y)) continue;
+            tile.setX(x);
+            tile.setY(y);
+            engine.putTile(tile);
+            placed.add(tile);
+            id++;
+            if (tile.canPlaceMeeple() && random.nextInt(3) == 0) {
+                engine.putMeeple(tile, random.nextBoolean() ? "RED" : "BLUE");
+            }
+        }
+        return engine;
+    }
+
+    private static String dump(ScoreBreakdown breakdown) {
+        StringBuilder out = new StringBuilder();
+        for (ScoreBreakdown.Award award : breakdown.awards()) {
+            out.append(award.feature).append(' ').append(award.size).append(' ').append(award.completed)
+                    .append(' ').append(award.alreadyScored).append(' ').append(award.shared)
+                    .append(' ').append(award.owners).append(' ').append(award.points)
+                    .append(' ').append(award.forkBonus).append(' ').append(tileIds(award.forks))
+                    .append(' ').append(tileIds(award.returned)).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static List<Integer> tileIds(List<Tile> tiles) {
+        List<Integer> ids = new ArrayList<>();
+        for (Tile tile : tiles) ids.add(tile.getId());
+        return ids;
+    }
+}
@@ -0,0 +1,161 @@
+package carcasson.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import carcasson.common.Board;
+import carcasson.common.LegalPlacements;
+import carcasson.common.Player;
+import carcasson.common.Tile;
+import carcasson.common.ZobristHash;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+// Откат поиска бота: после undoTo движок неотличим от состояния на момент mark() -
+// поле, области признаков, монастыри, хеш Зобриста, очки, миплы, руки и журнал ходов
+class GameEngineUndoTest {
+
+    @Test
+    void undoRestoresStateAfterRandomLines() {
+        int undos = 0;
+        for (long seed = 0; seed < 60; seed++) {
+            GameEngine engine = newGame(seed);
+            engine.enableUndo();
+            engine.startGame();
+            Random lines = new Random(seed * 31);
+            Random play = new Random(seed * 17);
+
+            while (!engine.isEnded()) {
+                String before = fingerprint(engine);
+                for (int k = 0; k < 3; k++) {
+                    int mark = engine.mark();
+                    int depth = lines.nextInt(8);
+                    for (int d = 0; d < depth && !engine.isEnded(); d++) {
+                        randomMove(engine, lines);
+                    }
+                    // Часть линий доходит до финального подсчета
+                    if (lines.nextBoolean() && !engine.isEnded()) engine.endGame("test");
+                    engine.undoTo(mark);
+                    undos++;
+                    assertEquals(before, fingerprint(engine), "seed " + seed + ", ход " + engine.getMoveLog().size());
+                }
+                randomMove(engine, play);
+            }
+        }
+        assertTrue(undos > 1000);
+    }
+
+    @Test
+    void gameWithUndoMatchesGameWithout() {
+        for (long seed = 0; seed < 20; seed++) {
+            GameEngine searched = newGame(seed);
+            GameEngine plain = newGame(seed);
+            searched.enableUndo();
+            searched.startGame();
+            plain.startGame();
+            Random lines = new Random(seed);
+            Random play = new Random(seed * 7);
+
+            while (!plain.isEnded()) {
+                int mark = searched.mark();
+                for (int d = 0; d < 5 && !searched.isEnded(); d++) {
+                    randomMove(searched, lines);
+                }
+                searched.undoTo(mark);
+
+                long moveSeed = play.nextLong();
+                randomMove(searched, new Random(moveSeed));
+                randomMove(plain, new Random(moveSeed));
+            }
+            assertTrue(searched.isEnded());
+            assertTrue(searched.getMoveLog().sameAs(plain.getMoveLog()), "seed " + seed);
+            assertEquals(fingerprint(plain), fingerprint(searched), "seed " + seed);
+        }
+    }
+
+    private static GameEngine newGame(long seed) {
+        GameEngine engine = new GameEngine(seed, new GameEvents.Silent());
+        engine.addPlayer("a", "red");
+        engine.addPlayer("b", "blue");
+        return engine;
+    }
+
+    // Случайный допустимый ход текущего игрока; ходы упорядочены, чтобы выбор зависел только от random
+    private static void randomMove(GameEngine engine, Random random) {
+        String player = engine.getCurrentPlayer();
+        LegalPlacements placements = engine.findLegalPlacements(engine.getHand(player));
+        List<int[]> options = new ArrayList<>();
+        for (int i = 0; i < placements.size(); i++) {
+            options.add(new int[] {placements.getX(i), placements.getY(i), placements.getRotation(i)});
+        }
+        options.sort(Comparator.<int[]>comparingInt(o -> o[0]).thenComparingInt(o -> o[1]).thenComparingInt(o -> o[2]));
+        int[] option = options.get(random.nextInt(options.size()));
+        assertTrue(engine.placeTile(player, option[0], option[1], option[2]));
+        if (!(random.nextDouble() < 0.4 && engine.placeMeeple(player))) {
+            engine.skipTurn(player);
+        }
+    }
+
+    private static String fingerprint(GameEngine engine) {
+        Board board = engine.getBoard();
+        FeatureRegions regions = engine.getRegions();
+        StringBuilder out = new StringBuilder();
+        assertEquals(ZobristHash.of(board.toArray()), engine.getBoardHash(), "хеш разошелся с полем");
+        out.append("hash ").append(engine.getBoardHash()).append(" size ").append(board.size())
+                .append(" bounds ").append(board.getMinX()).append(',').append(board.getMaxX())
+                .append(',').append(board.getMinY()).append(',').append(board.getMaxY()).append('\n');
+
+        for (Tile tile : board.tiles()) {
+            out.append(tile.getId()).append('@').append(tile.getX()).append(',').append(tile.getY())
+                    .append(" r").append(tile.getRotation()).append(" m").append(tile.getMeepleOwnerIndex());
+            region(out, " road", regions.road(tile));
+            region(out, " city", regions.city(tile));
+            if (tile.getEdges().getType().equals("MONASTERY")) {
+                out.append(" neighbors ").append(regions.neighbors(tile));
+            }
+            out.append('\n');
+        }
+        out.append("monasteries");
+        for (Tile monastery : regions.monasteries()) out.append(' ').append(monastery.getId());
+        out.append('\n');
+
+        for (Player player : engine.getPlayers()) {
+            Tile hand = engine.getHand(player.getName());
+            out.append(player).append(" hand ").append(hand == null ? "-" : hand.getId() + "r" + hand.getRotation())
+                    .append('\n');
+        }
+        out.append("current ").append(engine.getCurrentPlayer()).append(" ended ").append(engine.isEnded())
+                .append(" deck ").append(engine.getDeckSize()).append(" discarded ").append(engine.getDiscardedTiles())
+                .append(" moves ").append(engine.getMoveLog().size()).append('\n');
+
+        // Допустимые ходы руки текущего игрока зависят от фронтира поля
+        Tile hand = engine.isEnded() ? null : engine.getHand(engine.getCurrentPlayer());
+        if (hand != null) {
+            int rotation = hand.getRotation();
+            LegalPlacements placements = engine.findLegalPlacements(hand);
+            hand.setRotation(rotation);
+            List<String> moves = new ArrayList<>();
+            for (int i = 0; i < placements.size(); i++) {
+                moves.add(placements.getX(i) + "," + placements.getY(i) + "r" + placements.getRotation(i));
+            }
+            moves.sort(null);
+            out.append("legal ").append(moves).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void region(StringBuilder out, String name, FeatureRegions.Region region) {
+        if (region == null) return;
+        out.append(name).append(" [tiles ").append(region.tiles).append(" open ").append(region.openEdges)
+                .append(" completed ").append(region.completed).append(" meeples ").append(Arrays.toString(region.meeples))
+                .append(" on");
+        for (Tile tile : region.meepleTiles) out.append(' ').append(tile.getId());
+        out.append(" forks");
+        for (Tile tile : region.forks) out.append(' ').append(tile.getId());
+        out.append(']');
+    }
+}
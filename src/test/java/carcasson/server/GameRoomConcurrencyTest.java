@@ -0,0 +1,163 @@
+package carcasson.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+// Почтовый ящик комнаты и бронь мест под нагрузкой нескольких потоков
+class GameRoomConcurrencyTest {
+    private static final int PRODUCERS = 4;
+    private static final int COMMANDS = 20_000;
+
+    @Test
+    void commandsFromManyThreadsRunOnceInOrderPerProducer() throws Exception {
+        // Рабочих потоков больше одного: последовательность держит сам ящик, а не однопоточный исполнитель
+        ExecutorService worker = Executors.newFixedThreadPool(4);
+        try {
+            GameRoom room = new GameRoom(0, null, worker, 1);
+            CountDownLatch done = new CountDownLatch(PRODUCERS * COMMANDS);
+            AtomicInteger running = new AtomicInteger();
+            AtomicBoolean overlapped = new AtomicBoolean();
+            // Без синхронизации: команды одной комнаты не выполняются одновременно
+            List<int[]> applied = new ArrayList<>();
+
+            List<Thread> producers = new ArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+            for (int p = 0; p < PRODUCERS; p++) {
+                int producer = p;
+                producers.add(new Thread(() -> {
+                    awaitQuietly(start);
+                    for (int i = 0; i < COMMANDS; i++) {
+                        int sequence = i;
+                        room.execute(() -> {
+                            if (running.incrementAndGet() != 1) overlapped.set(true);
+                            applied.add(new int[] {producer, sequence});
+                            running.decrementAndGet();
+                            done.countDown();
+                        });
+                    }
+                }));
+            }
+            producers.forEach(Thread::start);
+            start.countDown();
+            for (Thread producer : producers) producer.join();
+            assertTrue(done.await(30, TimeUnit.SECONDS), "выполнены не все команды");
+
+            assertFalse(overlapped.get(), "команды комнаты шли одновременно");
+            assertEquals(PRODUCERS * COMMANDS, applied.size());
+            int[] next = new int[PRODUCERS];
+            for (int[] command : applied) {
+                assertEquals(next[command[0]], command[1], "порядок команд производителя " + command[0]);
+                next[command[0]]++;
+            }
+        } finally {
+            worker.shutdownNow();
+        }
+    }
+
+    @Test
+    void reserveSeatRacingCloseNeverSeatsIntoClosedRoom() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(3);
+        try {
+            int closedRooms = 0;
+            for (int round = 0; round < 2000; round++) {
+                GameRoom room = new GameRoom(round, null, Runnable::run, round);
+                CountDownLatch start = new CountDownLatch(1);
+                AtomicInteger seated = new AtomicInteger();
+                AtomicBoolean closed = new AtomicBoolean();
+
+                Runnable reserve = () -> {
+                    awaitQuietly(start);
+                    if (room.tryReserveSeat()) seated.incrementAndGet();
+                };
+                Runnable close = () -> {
+                    awaitQuietly(start);
+                    closed.set(room.tryClose());
+                };
+                // Порядок запуска чередуется, чтобы гонку выигрывали обе стороны
+                List<Future<?>> tasks = new ArrayList<>();
+                if (round % 2 == 0) {
+                    tasks.add(threads.submit(close));
+                    tasks.add(threads.submit(reserve));
+                    tasks.add(threads.submit(reserve));
+                } else {
+                    tasks.add(threads.submit(reserve));
+                    tasks.add(threads.submit(close));
+                    tasks.add(threads.submit(reserve));
+                }
+                start.countDown();
+                for (Future<?> task : tasks) task.get();
+
+                // Закрыть можно только комнату, в которой никто не сел, и после закрытия не садится никто
+                if (closed.get()) {
+                    closedRooms++;
+                    assertEquals(0, seated.get(), "раунд " + round + ": место в закрытой комнате");
+                    assertFalse(room.hasFreeSeat());
+                    assertFalse(room.tryReserveSeat());
+                } else {
+                    assertTrue(seated.get() > 0, "раунд " + round + ": комната не закрыта и пуста");
+                    assertFalse(room.tryClose(), "комната с игроками закрылась");
+                }
+            }
+            // Обе ветки гонки должны случаться
+            assertNotEquals(0, closedRooms);
+            assertNotEquals(2000, closedRooms);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void registryNeverHandsOutRetiredRoom() throws Exception {
+        RoomRegistry registry = new RoomRegistry(2);
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 500; round++) {
+                GameRoom room = registry.reserveSeat();
+                CountDownLatch start = new CountDownLatch(1);
+
+                // Единственный игрок уходит до начала партии, пока другой ищет комнату
+                Future<?> leave = threads.submit(() -> {
+                    awaitQuietly(start);
+                    room.playerDisconnected(null);
+                });
+                Future<GameRoom> join = threads.submit(() -> {
+                    awaitQuietly(start);
+                    return registry.reserveSeat();
+                });
+                start.countDown();
+                leave.get();
+                GameRoom got = join.get();
+
+                assertSame(got, registry.find(got.getId()), "раунд " + round + ": выдана снятая комната");
+                assertTrue(got.hasFreeSeat(), "раунд " + round + ": в выданной комнате нет места");
+                // Освобождаем место, чтобы следующий раунд начинался с пустого реестра
+                got.playerDisconnected(null);
+                assertEquals(0, registry.getRoomCount());
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package carcasson.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import carcasson.common.LegalPlacements;
+import org.junit.jupiter.api.Test;
+
+class GameRoomTest {
+
+    // Движок отказал уже после проверок комнаты: игрок не садится, а бронь снимается один раз - при отключении
+    @Test
+    void joinRejectedByEngineReleasesSeatOnDisconnect() {
+        GameEngine original = new GameEngine(11, new GameEvents.Silent());
+        original.addPlayer("p1", "anna");
+        original.addPlayer("p2", "bob");
+        original.startGame();
+        String player = original.getCurrentPlayer();
+        LegalPlacements placements = original.findLegalPlacements(original.getHand(player));
+        assertTrue(original.placeTile(player, placements.getX(0), placements.getY(0), placements.getRotation(0)));
+        original.skipTurn(player);
+
+        // Восстановленная партия уже идет, и в ней нет места для нового имени
+        RoomRegistry registry = new RoomRegistry(1);
+        GameRoom room = new GameRoom(1, registry, Runnable::run, original.getMoveLog().getSeed());
+        room.restore(original.getMoveLog());
+        assertTrue(room.tryReserveSeat());
+
+        ClientHandler handler = new ClientHandler(null);
+        assertFalse(room.addPlayer(handler, "zoe"));
+        assertEquals(0, room.getPlayerCount());
+        assertFalse(room.tryClose(), "бронь снята раньше отключения");
+
+        room.playerDisconnected(handler);
+        assertFalse(room.hasFreeSeat(), "пустая комната не закрыта");
+        assertFalse(room.tryReserveSeat());
+    }
+}
@@ -0,0 +1,229 @@
+package carcasson.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import carcasson.common.LegalPlacements;
+import carcasson.common.Player;
+import carcasson.common.Tile;
+import carcasson.common.TileCatalog;
+import carcasson.common.TileDefinition;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+// Счетчики соседей монастырей: рост с каждой плиткой и откат по undoTo, 1+8 очков при завершении
+// по ходу партии и 1+соседи за незавершенный монастырь в финальном подсчете
+class MonasteryTest {
+    // Монастырь вдали от стартовой плитки (7,7); поле вокруг кладется без проверок правил
+    private static final int MX = 7;
+    private static final int MY = 4;
+
+    private int nextId = 100;
+
+    @Test
+    void neighborCountersFollowPlacementAndUndo() {
+        GameEngine engine = newGame(1);
+        engine.enableUndo();
+        FeatureRegions regions = engine.getRegions();
+        Tile monastery = put(engine, TileCatalog.MONASTERY, MX, MY);
+        assertEquals(0, regions.neighbors(monastery));
+
+        // Соседний монастырь: каждый считает другого
+        Tile second = put(engine, TileCatalog.MONASTERY, MX + 1, MY);
+        assertEquals(1, regions.neighbors(monastery));
+        assertEquals(1, regions.neighbors(second));
+
+        // Остальные клетки квадрата 3x3, диагонали тоже; между ними - плитки за его пределами
+        int[][] ring = {{MX - 1, MY - 1}, {MX, MY - 1}, {MX + 1, MY - 1}, {MX - 1, MY}, {MX - 1, MY + 1},
+                {MX, MY + 1}, {MX + 1, MY + 1}};
+        List<Integer> marks = new ArrayList<>();
+        List<int[]> counts = new ArrayList<>();
+        for (int i = 0; i < ring.length; i++) {
+            marks.add(engine.mark());
+            counts.add(new int[] {regions.neighbors(monastery), regions.neighbors(second)});
+            int[] cell = ring[i];
+            put(engine, TileCatalog.ROAD_CURVE, cell[0], cell[1]);
+            assertEquals(2 + i, regions.neighbors(monastery), "соседей после " + cell[0] + "," + cell[1]);
+
+            marks.add(engine.mark());
+            counts.add(new int[] {regions.neighbors(monastery), regions.neighbors(second)});
+            put(engine, TileCatalog.ROAD_STRAIGHT, MX - 2, MY - 1 + i);
+            assertEquals(2 + i, regions.neighbors(monastery), "плитка за квадратом 3x3 не сосед");
+        }
+        assertEquals(FeatureRegions.MONASTERY_COMPLETE, regions.neighbors(monastery));
+        // У второго монастыря в квадрате: первый, (MX,MY-1), (MX+1,MY-1), (MX,MY+1), (MX+1,MY+1)
+        assertEquals(5, regions.neighbors(second));
+        assertEquals(List.of(monastery, second), regions.monasteries());
+
+        for (int i = marks.size() - 1; i >= 0; i--) {
+            engine.undoTo(marks.get(i));
+            assertEquals(counts.get(i)[0], regions.neighbors(monastery), "откат к отметке " + i);
+            assertEquals(counts.get(i)[1], regions.neighbors(second), "откат к отметке " + i);
+        }
+        assertEquals(1, regions.neighbors(monastery));
+        assertEquals(List.of(monastery, second), regions.monasteries());
+    }
+
+    @Test
+    void eighthNeighborCompletesMonasteryDuringPlay() {
+        // Дыра - угловая клетка квадрата; по бокам у нее два монастыря, поэтому ложится почти любая рука
+        int holeX = MX + 1;
+        int holeY = MY - 1;
+        int games = 0;
+        for (long seed = 0; seed < 20; seed++) {
+            GameEngine engine = newGame(seed);
+            engine.enableUndo();
+            engine.startGame();
+            String name = engine.getCurrentPlayer();
+            Player player = engine.getPlayer(name);
+
+            Tile monastery = put(engine, TileCatalog.MONASTERY, MX, MY);
+            engine.putMeeple(monastery, player.getColor());
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if ((dx != 0 || dy != 0) && (MX + dx != holeX || MY + dy != holeY)) {
+                        put(engine, TileCatalog.MONASTERY, MX + dx, MY + dy);
+                    }
+                }
+            }
+            assertEquals(7, engine.getRegions().neighbors(monastery));
+
+            int rotation = rotationAt(engine, engine.getHand(name), holeX, holeY);
+            if (rotation < 0) continue;
+            games++;
+
+            int score = player.getScore();
+            int meeples = player.getMeeplesLeft();
+            int mark = engine.mark();
+            assertTrue(engine.placeTile(name, holeX, holeY, rotation));
+            assertEquals(FeatureRegions.MONASTERY_COMPLETE, engine.getRegions().neighbors(monastery));
+            assertEquals(score + 1 + FeatureRegions.MONASTERY_COMPLETE, player.getScore(), "seed " + seed);
+            assertFalse(monastery.hasMeeple(), "мипл остался на завершенном монастыре");
+            assertEquals(meeples + 1, player.getMeeplesLeft(), "мипл не вернулся");
+
+            // Откат возвращает и очки, и мипла на монастырь
+            engine.undoTo(mark);
+            assertEquals(7, engine.getRegions().neighbors(monastery));
+            assertEquals(score, player.getScore());
+            assertEquals(meeples, player.getMeeplesLeft());
+            assertEquals(player.getColor(), monastery.getMeepleOwner());
+
+            // Завершенный монастырь больше не считается в конце партии
+            assertTrue(engine.placeTile(name, holeX, holeY, rotation));
+            engine.endGame("test");
+            assertEquals(score + 1 + FeatureRegions.MONASTERY_COMPLETE, player.getScore(), "seed " + seed);
+            assertTrue(monasteryAwards(engine).isEmpty());
+        }
+        assertTrue(games > 10, "рука редко ложится в дыру: " + games);
+    }
+
+    @Test
+    void meepleOnMonasteryInFullSquareCompletesAtOnce() {
+        int games = 0;
+        for (long seed = 0; seed < 200 && games < 5; seed++) {
+            GameEngine engine = newGame(seed);
+            engine.startGame();
+            String name = engine.getCurrentPlayer();
+            Tile hand = engine.getHand(name);
+            if (hand.getDefinition() != TileCatalog.MONASTERY) continue;
+            games++;
+
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if (dx != 0 || dy != 0) put(engine, TileCatalog.MONASTERY, MX + dx, MY + dy);
+                }
+            }
+            Player player = engine.getPlayer(name);
+            int score = player.getScore();
+            int meeples = player.getMeeplesLeft();
+            assertTrue(engine.placeTile(name, MX, MY, 0));
+            Tile monastery = engine.getBoard().get(MX, MY);
+            assertEquals(FeatureRegions.MONASTERY_COMPLETE, engine.getRegions().neighbors(monastery));
+
+            // Мипл ставится и тут же возвращается с 9 очками
+            assertTrue(engine.placeMeeple(name));
+            assertEquals(score + 1 + FeatureRegions.MONASTERY_COMPLETE, player.getScore(), "seed " + seed);
+            assertFalse(monastery.hasMeeple());
+            assertEquals(meeples, player.getMeeplesLeft());
+        }
+        assertEquals(5, games);
+    }
+
+    @Test
+    void unfinishedMonasteriesScoreOnePlusNeighborsAtEnd() {
+        GameEngine engine = newGame(3);
+        engine.startGame();
+        Player red = engine.getPlayer("red");
+        Player blue = engine.getPlayer("blue");
+
+        // У монастыря красных три соседа, у синих - ни одного
+        Tile redMonastery = put(engine, TileCatalog.MONASTERY, MX, MY);
+        engine.putMeeple(redMonastery, red.getColor());
+        put(engine, TileCatalog.ROAD_CURVE, MX - 1, MY - 1);
+        put(engine, TileCatalog.MONASTERY, MX + 1, MY);
+        put(engine, TileCatalog.CITY_CAP, MX, MY + 1);
+        Tile blueMonastery = put(engine, TileCatalog.MONASTERY, MX + 5, MY);
+        engine.putMeeple(blueMonastery, blue.getColor());
+
+        int redScore = red.getScore();
+        int blueScore = blue.getScore();
+        int redMeeples = red.getMeeplesLeft();
+        int blueMeeples = blue.getMeeplesLeft();
+        engine.endGame("test");
+
+        assertEquals(redScore + 1 + 3, red.getScore());
+        assertEquals(blueScore + 1, blue.getScore());
+        assertEquals(redMeeples + 1, red.getMeeplesLeft());
+        assertEquals(blueMeeples + 1, blue.getMeeplesLeft());
+        assertFalse(redMonastery.hasMeeple());
+        assertFalse(blueMonastery.hasMeeple());
+
+        // Разбор: по награде на монастырь в порядке обхода поля
+        List<ScoreBreakdown.Award> awards = monasteryAwards(engine);
+        assertEquals(2, awards.size());
+        assertEquals(List.of(red.getColor()), awards.get(0).owners);
+        assertEquals(3, awards.get(0).size);
+        assertEquals(4, awards.get(0).points);
+        assertFalse(awards.get(0).completed);
+        assertEquals(List.of(blue.getColor()), awards.get(1).owners);
+        assertEquals(0, awards.get(1).size);
+        assertEquals(1, awards.get(1).points);
+    }
+
+    private static GameEngine newGame(long seed) {
+        GameEngine engine = new GameEngine(seed, new GameEvents.Silent());
+        engine.addPlayer("a", "red");
+        engine.addPlayer("b", "blue");
+        return engine;
+    }
+
+    private Tile put(GameEngine engine, TileDefinition definition, int x, int y) {
+        Tile tile = new Tile(nextId++, definition);
+        tile.setX(x);
+        tile.setY(y);
+        engine.putTile(tile);
+        return tile;
+    }
+
+    // Первый допустимый поворот руки в клетке (x, y) или -1
+    private static int rotationAt(GameEngine engine, Tile hand, int x, int y) {
+        LegalPlacements placements = engine.findLegalPlacements(hand);
+        for (int i = 0; i < placements.size(); i++) {
+            if (placements.getX(i) == x && placements.getY(i) == y) return placements.getRotation(i);
+        }
+        return -1;
+    }
+
+    private static List<ScoreBreakdown.Award> monasteryAwards(GameEngine engine) {
+        ScoreBreakdown scores = engine.getFinalScores();
+        assertNotNull(scores);
+        List<ScoreBreakdown.Award> awards = new ArrayList<>();
+        for (ScoreBreakdown.Award award : scores.awards()) {
+            if (award.feature == ScoreBreakdown.Feature.MONASTERY) awards.add(award);
+        }
+        return awards;
+    }
+}
@@ -0,0 +1,168 @@
+package carcasson.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import carcasson.common.MessageCodec;
+import carcasson.common.MessageType;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+// Исходящая очередь: порядок полос, пороги, замена состояний поля одним снимком и отключение отставших.
+// Кадры поддельные - очередь смотрит только на их длину и код сообщения
+class OutboundQueueTest {
+    private static final int HIGH = 1000;
+    private static final int LOW = 200;
+
+    @Test
+    void gameFramesGoBeforeChat() {
+        OutboundQueue queue = new OutboundQueue(policy(10_000, 100));
+        byte[] chat1 = frame(MessageType.CHAT_MESSAGE, 50);
+        byte[] tile1 = frame(MessageType.TILE_PLACED, 50);
+        byte[] chat2 = frame(MessageType.CHAT_MESSAGE, 50);
+        byte[] delta = frame(MessageType.GAME_STATE_DELTA, 50);
+        for (byte[] frame : List.of(chat1, tile1, chat2, delta)) {
+            assertTrue(queue.offer(frame));
+        }
+
+        assertEquals(List.of(tile1, delta, chat1, chat2), drain(queue));
+        assertFalse(queue.drainTo(new ArrayList<>()), "очередь должна опустеть");
+    }
+
+    @Test
+    void watermarksSwitchOverloadOnAndOff() {
+        OutboundQueue queue = new OutboundQueue(policy(10_000, 100));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(queue.offer(frame(MessageType.TILE_PLACED, 300)));
+        }
+        // ~900 байт - ниже верхнего порога: дельта встает в очередь как обычно
+        assertTrue(queue.offer(frame(MessageType.GAME_STATE_DELTA, 50)));
+        assertEquals(4, drain(queue).size());
+
+        // ~1250 байт - выше: следующая дельта уже не ставится
+        assertTrue(queue.offer(frame(MessageType.TILE_PLACED, 300)));
+        assertTrue(queue.offer(frame(MessageType.GAME_STATE_DELTA, 50)));
+        assertEquals(1, drain(queue).size());
+
+        // Между порогами клиент еще перегружен
+        assertFalse(queue.written(900));
+        assertTrue(queue.offer(frame(MessageType.GAME_STATE_DELTA, 50)));
+        assertTrue(drain(queue).isEmpty());
+
+        // Ниже нижнего порога перегрузка снята, и клиенту нужен свежий снимок
+        assertTrue(queue.written(300));
+        assertFalse(queue.written(0), "снятие перегрузки сообщается один раз");
+        assertFalse(queue.isLagging());
+    }
+
+    @Test
+    void queuedBoardFramesAreReplacedBySnapshot() {
+        OutboundQueue queue = new OutboundQueue(policy(10_000, 100));
+        byte[] tile = frame(MessageType.TILE_PLACED, 900);
+        byte[] chat = frame(MessageType.CHAT_MESSAGE, 20);
+        assertTrue(queue.offer(frame(MessageType.GAME_STATE, 100)));
+        assertTrue(queue.offer(frame(MessageType.GAME_STATE_DELTA, 10)));
+        assertTrue(queue.offer(tile));
+        assertTrue(queue.offer(chat));
+
+        // Новый кадр поля при перегрузке выбрасывает и себя, и все стоящие в очереди состояния поля
+        assertTrue(queue.offer(frame(MessageType.GAME_STATE_DELTA, 10)));
+        assertTrue(queue.offer(frame(MessageType.GAME_STATE, 100)));
+        assertEquals(List.of(tile, chat), drain(queue));
+
+        // Догнав, клиент получает один свежий снимок вместо пропущенных
+        assertTrue(queue.written(1000));
+        byte[] snapshot = frame(MessageType.GAME_STATE, 100);
+        assertTrue(queue.offer(snapshot));
+        List<byte[]> sent = drain(queue);
+        assertEquals(1, sent.size());
+        assertSame(snapshot, sent.get(0));
+    }
+
+    @Test
+    void deltasAreSuppressedUntilSnapshot() {
+        OutboundQueue queue = new OutboundQueue(policy(10_000, 100));
+        assertTrue(queue.offer(frame(MessageType.TILE_PLACED, 1100)));
+        assertTrue(queue.offer(frame(MessageType.GAME_STATE_DELTA, 10)));
+        drain(queue);
+        assertTrue(queue.written(1100));
+
+        // Дельты к версии, которой у клиента нет, не ставятся; остальные кадры идут как обычно
+        byte[] tile = frame(MessageType.TILE_PLACED, 10);
+        byte[] chat = frame(MessageType.CHAT_MESSAGE, 10);
+        assertTrue(queue.offer(frame(MessageType.GAME_STATE_DELTA, 10)));
+        assertTrue(queue.offer(tile));
+        assertTrue(queue.offer(chat));
+        assertTrue(queue.offer(frame(MessageType.GAME_STATE_DELTA, 10)));
+        assertEquals(List.of(tile, chat), drain(queue));
+
+        // После снимка дельты снова проходят
+        byte[] snapshot = frame(MessageType.GAME_STATE, 100);
+        byte[] delta = frame(MessageType.GAME_STATE_DELTA, 10);
+        assertTrue(queue.offer(snapshot));
+        assertTrue(queue.offer(delta));
+        assertEquals(List.of(snapshot, delta), drain(queue));
+    }
+
+    @Test
+    void tooManyFramesDisconnect() {
+        OutboundQueue queue = new OutboundQueue(policy(10_000, 3));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(queue.offer(frame(MessageType.CHAT_MESSAGE, 10)));
+        }
+        assertFalse(queue.offer(frame(MessageType.TILE_PLACED, 10)));
+
+        // Разобранная очередь снова принимает кадры
+        drain(queue);
+        assertTrue(queue.offer(frame(MessageType.TILE_PLACED, 10)));
+    }
+
+    @Test
+    void clientOverloadedTooLongDisconnects() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(policy(20, 100));
+        assertTrue(queue.offer(frame(MessageType.TILE_PLACED, 1100)));
+        assertFalse(queue.isLagging());
+        Thread.sleep(60);
+
+        // Отставание видно и без новых кадров - по нему отключают писатель и IoLoop
+        assertTrue(queue.isLagging());
+        drain(queue);
+        assertFalse(queue.written(500));
+        assertTrue(queue.isLagging());
+        assertFalse(queue.offer(frame(MessageType.CHAT_MESSAGE, 10)));
+
+        // Догнавший клиент больше не считается отставшим
+        queue.written(600);
+        assertFalse(queue.isLagging());
+        assertTrue(queue.offer(frame(MessageType.CHAT_MESSAGE, 10)));
+    }
+
+    @Test
+    void closedQueueRejectsFrames() {
+        OutboundQueue queue = new OutboundQueue(policy(10_000, 100));
+        byte[] tile = frame(MessageType.TILE_PLACED, 10);
+        assertTrue(queue.offer(tile));
+        queue.close();
+        assertFalse(queue.offer(frame(MessageType.TILE_PLACED, 10)));
+        assertEquals(List.of(tile), drain(queue), "поставленные кадры дописываются");
+    }
+
+    private static BackpressurePolicy policy(long maxLagMillis, int maxFrames) {
+        return new BackpressurePolicy(HIGH, LOW, maxLagMillis, maxFrames);
+    }
+
+    private static byte[] frame(MessageType type, int size) {
+        byte[] frame = new byte[MessageCodec.HEADER_SIZE + size];
+        frame[MessageCodec.HEADER_SIZE] = type.opcode();
+        return frame;
+    }
+
+    private static List<byte[]> drain(OutboundQueue queue) {
+        List<byte[]> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        return batch;
+    }
+}
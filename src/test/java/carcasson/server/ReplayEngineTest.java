@@ -0,0 +1,161 @@
+package carcasson.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import carcasson.common.LegalPlacements;
+import carcasson.common.Player;
+import carcasson.common.Tile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Повтор по журналу ходов: тот же журнал с тем же зерном дает ту же партию - после каждой команды
+// и в конце, в том числе после записи журнала на диск и чтения обратно
+class ReplayEngineTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayMatchesOriginalAfterEveryCommand() {
+        for (long seed = 0; seed < 30; seed++) {
+            GameEngine original = new GameEngine(seed * 7919, new GameEvents.Silent());
+            original.addPlayer("p1", "red");
+            original.addPlayer("p2", "blue");
+            original.startGame();
+
+            // Состояние оригинала по длине журнала после каждого вызова движка
+            Map<Integer, String> states = new TreeMap<>();
+            states.put(0, fingerprint(original));
+            play(original, new Random(seed), states);
+
+            MoveLog log = original.getMoveLog();
+            for (Map.Entry<Integer, String> state : states.entrySet()) {
+                assertEquals(state.getValue(), fingerprint(ReplayEngine.replay(log, state.getKey())),
+                        "seed " + seed + ", команд " + state.getKey());
+            }
+
+            GameEngine replayed = ReplayEngine.replay(log, -1);
+            assertEquals(states.get(log.size()), fingerprint(replayed), "seed " + seed);
+            assertTrue(replayed.getMoveLog().sameAs(log), "повтор записал другой журнал, seed " + seed);
+            assertEquals(fingerprint(replayed), fingerprint(ReplayEngine.replay(log, -1)), "seed " + seed);
+        }
+    }
+
+    @Test
+    void savedLogReplaysTheSameGame() throws IOException {
+        for (long seed = 0; seed < 10; seed++) {
+            GameEngine original = new GameEngine(seed, new GameEvents.Silent());
+            original.addPlayer("p1", "Анна");
+            original.addPlayer("p2", "Борис");
+            original.startGame();
+            play(original, new Random(seed * 13), new TreeMap<>());
+            MoveLog log = original.getMoveLog();
+
+            // Текстовый формат
+            Path file = dir.resolve("room-" + seed + ".log");
+            log.write(file);
+            MoveLog fromText = MoveLog.read(file);
+            assertTrue(fromText.sameAs(log), "текстовый журнал, seed " + seed);
+            assertEquals(fingerprint(original), fingerprint(ReplayEngine.replay(fromText, -1)), "seed " + seed);
+
+            // Двоичный формат журнала предзаписи
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            log.writeTo(new DataOutputStream(bytes));
+            MoveLog fromBinary = MoveLog.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            assertTrue(fromBinary.sameAs(log), "двоичный журнал, seed " + seed);
+            assertEquals(fingerprint(original), fingerprint(ReplayEngine.replay(fromBinary, -1)), "seed " + seed);
+        }
+    }
+
+    @Test
+    void textFormatKeepsSeparatorsInNamesAndReason() throws IOException {
+        GameEngine original = new GameEngine(5, new GameEvents.Silent());
+        original.addPlayer("p1", "a|b");
+        original.addPlayer("p2", "c\\n|d");
+        original.startGame();
+        Random random = new Random(5);
+        for (int turn = 0; turn < 10; turn++) {
+            String player = original.getCurrentPlayer();
+            LegalPlacements placements = original.findLegalPlacements(original.getHand(player));
+            int option = random.nextInt(placements.size());
+            assertTrue(original.placeTile(player, placements.getX(option), placements.getY(option),
+                    placements.getRotation(option)));
+            original.skipTurn(player);
+        }
+        String reason = "Игра завершена: игрок a|b отключился\nc\\n|d | \\ \r конец|";
+        original.endGame(reason);
+        MoveLog log = original.getMoveLog();
+
+        Path file = dir.resolve("separators.log");
+        log.write(file);
+        MoveLog fromText = MoveLog.read(file);
+        assertTrue(fromText.sameAs(log), "журнал после текстового формата");
+        assertEquals(List.of("a|b", "c\\n|d"), fromText.getPlayers());
+        assertEquals(reason, fromText.get(fromText.size() - 1).getReason());
+        assertEquals(fingerprint(original), fingerprint(ReplayEngine.replay(fromText, -1)));
+    }
+
+    // Случайная партия; каждая третья заканчивается досрочно. После каждого вызова движка в states
+    // ложится его состояние. Вызов может записать и две команды: последний пропуск заканчивает партию
+    private static void play(GameEngine engine, Random random, Map<Integer, String> states) {
+        int stopAt = random.nextInt(3) == 0 ? 5 + random.nextInt(40) : -1;
+        for (int turn = 0; !engine.isEnded(); turn++) {
+            if (turn == stopAt) {
+                engine.endGame("досрочно");
+                record(engine, states);
+                break;
+            }
+            String player = engine.getCurrentPlayer();
+            LegalPlacements placements = engine.findLegalPlacements(engine.getHand(player));
+            List<int[]> options = new ArrayList<>();
+            for (int i = 0; i < placements.size(); i++) {
+                options.add(new int[] {placements.getX(i), placements.getY(i), placements.getRotation(i)});
+            }
+            options.sort(Comparator.<int[]>comparingInt(o -> o[0]).thenComparingInt(o -> o[1]).thenComparingInt(o -> o[2]));
+            int[] option = options.get(random.nextInt(options.size()));
+            assertTrue(engine.placeTile(player, option[0], option[1], option[2]));
+            record(engine, states);
+            if (random.nextDouble() < 0.4 && engine.placeMeeple(player)) {
+                record(engine, states);
+            } else {
+                engine.skipTurn(player);
+                record(engine, states);
+            }
+        }
+    }
+
+    private static void record(GameEngine engine, Map<Integer, String> states) {
+        states.put(engine.getMoveLog().size(), fingerprint(engine));
+    }
+
+    private static String fingerprint(GameEngine engine) {
+        StringBuilder out = new StringBuilder();
+        out.append("hash ").append(engine.getBoardHash()).append(" deck ").append(engine.getDeckSize())
+                .append(" discarded ").append(engine.getDiscardedTiles()).append(" ended ").append(engine.isEnded())
+                .append(" current ").append(engine.getCurrentPlayer()).append('\n');
+        for (Tile tile : engine.getBoard().tiles()) {
+            out.append(tile.getId()).append(' ').append(tile.getDefinition().getId()).append('@')
+                    .append(tile.getX()).append(',').append(tile.getY()).append(" r").append(tile.getRotation())
+                    .append(" m").append(tile.getMeepleOwnerIndex()).append('\n');
+        }
+        for (Player player : engine.getPlayers()) {
+            Tile hand = engine.getHand(player.getName());
+            out.append(player.getName()).append(' ').append(player.getScore()).append(' ')
+                    .append(player.getMeeplesLeft()).append(" hand ").append(hand == null ? "-" : hand.getId())
+                    .append('\n');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,266 @@
+package carcasson.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import carcasson.common.LegalPlacements;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Журнал предзаписи: после падения или остановки открываются ровно незавершенные партии,
+// каждая со всеми записанными ходами
+class WriteAheadLogTest {
+    // Сегмент, который тест не заполнит: ротации и прохода снимков нет
+    private static final int LARGE_SEGMENT = 16 << 20;
+    // Минимальный сегмент: несколько тысяч ходов вызывают много ротаций
+    private static final int SMALL_SEGMENT = 64 << 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversLiveRoomsAfterCrash() throws IOException {
+        WriteAheadLog wal = WriteAheadLog.open(dir.resolve("wal"), LARGE_SEGMENT);
+        Map<Long, MoveLog> expected = playRooms(wal, 200, 20_000, new Random(1));
+
+        // Падение процесса: файлы сегментов в том виде, в каком их оставил журнал, без close()
+        Path crashed = copySegments(dir.resolve("wal"), dir.resolve("crashed"));
+        wal.close();
+
+        WriteAheadLog reopened = WriteAheadLog.open(crashed, LARGE_SEGMENT);
+        try {
+            assertRecovered(expected, reopened.recovered());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void tornLastRecordIsDropped() throws IOException {
+        WriteAheadLog wal = WriteAheadLog.open(dir.resolve("wal"), LARGE_SEGMENT);
+        Map<Long, MoveLog> expected = playRooms(wal, 20, 500, new Random(2));
+
+        // Последней записью журнала становится ход живой комнаты; при падении она дописана не целиком
+        MoveLog room = expected.values().stream().filter(log -> !log.isEnded()).findFirst().orElseThrow();
+        int movesBefore = room.size();
+        room.skip(0);
+        Path crashed = copySegments(dir.resolve("wal"), dir.resolve("crashed"));
+        wal.close();
+        corruptLastRecord(crashed);
+
+        room.truncate(movesBefore);
+        WriteAheadLog reopened = WriteAheadLog.open(crashed, LARGE_SEGMENT);
+        try {
+            assertRecovered(expected, reopened.recovered());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void recoversAcrossSegmentRotations() throws IOException {
+        Path walDir = dir.resolve("wal");
+        WriteAheadLog wal = WriteAheadLog.open(walDir, SMALL_SEGMENT);
+        Map<Long, MoveLog> expected = playRooms(wal, 300, 60_000, new Random(3));
+        wal.close();
+        // Запасной сегмент, заготовленный потоком сброса, при закрытии удаляется
+        try (Stream<Path> files = Files.list(walDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                assertTrue(hasRecords(file), "пустой сегмент " + file);
+            }
+        }
+
+        WriteAheadLog reopened = WriteAheadLog.open(walDir, SMALL_SEGMENT);
+        try {
+            assertRecovered(expected, reopened.recovered());
+            // Старые сегменты удаляются после прохода снимков, журнал не растет без конца
+            assertFalse(Files.exists(walDir.resolve(String.format("wal-%012d.seg", 0))), "сегменты не удаляются");
+        } finally {
+            reopened.close();
+        }
+
+        // Второй перезапуск читает уже снимки, записанные при открытии
+        WriteAheadLog again = WriteAheadLog.open(walDir, SMALL_SEGMENT);
+        try {
+            assertRecovered(expected, again.recovered());
+        } finally {
+            again.close();
+        }
+    }
+
+    @Test
+    void discardedRoomIsNotRecovered() throws IOException {
+        Path walDir = dir.resolve("wal");
+        WriteAheadLog wal = WriteAheadLog.open(walDir, SMALL_SEGMENT);
+        Map<Long, MoveLog> expected = playRooms(wal, 2, 100, new Random(4));
+        assertFalse(expected.get(2L).isEnded());
+        wal.discard(1L);
+        expected.remove(1L);
+        wal.close();
+
+        wal = WriteAheadLog.open(walDir, SMALL_SEGMENT);
+        assertRecovered(expected, wal.recovered());
+
+        // Снятая комната не возвращается и после ротаций, когда её старые записи уже удалены
+        MoveLog survivor = expected.get(2L);
+        WriteAheadLog current = wal;
+        survivor.setListener(move -> current.append(2L, move));
+        for (int i = 0; i < 5_000; i++) {
+            survivor.place(i % 2, i % 50, i / 50, i % 4);
+        }
+        wal.close();
+
+        wal = WriteAheadLog.open(walDir, SMALL_SEGMENT);
+        try {
+            assertRecovered(expected, wal.recovered());
+        } finally {
+            wal.close();
+        }
+    }
+
+    @Test
+    void playerOfSeveralRestoredRoomsReturnsToEachInTurn() throws IOException {
+        Path walDir = dir.resolve("wal");
+        WriteAheadLog wal = WriteAheadLog.open(walDir, LARGE_SEGMENT);
+        // Одно имя в трех партиях: после перезапуска ни одна не должна потеряться
+        startGame(wal, 3, "anna", "b3");
+        startGame(wal, 1, "anna", "b1");
+        startGame(wal, 2, "b2", "anna");
+        wal.close();
+
+        RoomRegistry registry = new RoomRegistry(2);
+        registry.enableWal(walDir);
+        try {
+            assertEquals(3, registry.getRoomCount());
+            assertSame(registry.find(1), registry.claimResume("anna"));
+
+            // Снятая комната из очереди уходит, остальные ждут по порядку номеров
+            registry.retire(registry.find(2));
+            assertSame(registry.find(3), registry.claimResume("anna"));
+            assertNull(registry.claimResume("anna"));
+            assertNull(registry.claimResume("b2"));
+            assertSame(registry.find(1), registry.claimResume("b1"));
+            assertSame(registry.find(3), registry.claimResume("b3"));
+        } finally {
+            registry.closeWal();
+        }
+    }
+
+    // Партия на движке, чтобы восстановление повтором сошлось с журналом; несколько ходов после начала
+    private static void startGame(WriteAheadLog wal, long roomId, String first, String second) {
+        GameEngine engine = new GameEngine(roomId, new GameEvents.Silent());
+        engine.addPlayer("p1", first);
+        engine.addPlayer("p2", second);
+        engine.startGame();
+        MoveLog log = engine.getMoveLog();
+        wal.roomStarted(roomId, log);
+        log.setListener(move -> wal.append(roomId, move));
+        for (int turn = 0; turn < 4; turn++) {
+            String player = engine.getCurrentPlayer();
+            LegalPlacements placements = engine.findLegalPlacements(engine.getHand(player));
+            assertTrue(engine.placeTile(player, placements.getX(0), placements.getY(0), placements.getRotation(0)));
+            engine.skipTurn(player);
+        }
+    }
+
+    // Комнаты 1..rooms со случайными ходами; часть партий доходит до конца и из журнала уходит.
+    // Возвращает журналы всех комнат - ожидаемое состояние
+    private static Map<Long, MoveLog> playRooms(WriteAheadLog wal, int rooms, int moves, Random random) {
+        Map<Long, MoveLog> logs = new LinkedHashMap<>();
+        for (long id = 1; id <= rooms; id++) {
+            MoveLog log = new MoveLog(random.nextLong());
+            log.addPlayer("a" + id);
+            log.addPlayer("b" + id);
+            wal.roomStarted(id, log);
+            long roomId = id;
+            log.setListener(move -> wal.append(roomId, move));
+            logs.put(id, log);
+        }
+
+        List<MoveLog> all = new ArrayList<>(logs.values());
+        for (int i = 0; i < moves; i++) {
+            MoveLog log = all.get(random.nextInt(all.size()));
+            if (log.isEnded()) continue;
+            int kind = random.nextInt(1000);
+            if (kind < 600) {
+                log.place(0, random.nextInt(60) - 30, random.nextInt(60) - 30, random.nextInt(4));
+            } else if (kind < 800) {
+                log.meeple(1);
+            } else if (kind < 999) {
+                log.skip(0);
+            } else {
+                log.end("конец");
+            }
+        }
+        return logs;
+    }
+
+    private static void assertRecovered(Map<Long, MoveLog> expected, Map<Long, MoveLog> recovered) {
+        int live = 0;
+        for (Map.Entry<Long, MoveLog> entry : expected.entrySet()) {
+            MoveLog got = recovered.get(entry.getKey());
+            if (entry.getValue().isEnded()) {
+                assertFalse(recovered.containsKey(entry.getKey()), "законченная партия #" + entry.getKey());
+                continue;
+            }
+            live++;
+            assertNotNull(got, "не восстановлена комната #" + entry.getKey());
+            assertEquals(entry.getValue().size(), got.size(), "ходов в комнате #" + entry.getKey());
+            assertTrue(entry.getValue().sameAs(got), "журнал комнаты #" + entry.getKey());
+        }
+        assertEquals(live, recovered.size());
+    }
+
+    private static Path copySegments(Path from, Path to) throws IOException {
+        Files.createDirectories(to);
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+        return to;
+    }
+
+    private static boolean hasRecords(Path segment) {
+        try {
+            return ByteBuffer.wrap(Files.readAllBytes(segment)).getInt(0) > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Портит CRC последней записи последнего непустого сегмента (за ним может лежать заготовленный запасной).
+    // Запись: [длина тела][CRC32 тела][тело]
+    private static void corruptLastRecord(Path walDir) throws IOException {
+        Path last;
+        try (Stream<Path> files = Files.list(walDir)) {
+            last = files.filter(WriteAheadLogTest::hasRecords).sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(last));
+        int position = 0;
+        int lastRecord = -1;
+        while (position + 8 <= buffer.limit() && buffer.getInt(position) > 0) {
+            lastRecord = position;
+            position += 8 + buffer.getInt(position);
+        }
+        assertTrue(lastRecord >= 0, "сегмент пуст");
+        buffer.putInt(lastRecord + 4, ~buffer.getInt(lastRecord + 4));
+        Files.write(last, buffer.array());
+    }
+
+}